@@ -12,9 +12,12 @@ package com.kaching.platform.converters;
 
 import static com.google.common.base.Preconditions.checkState;
 
+import java.io.File;
 import java.lang.reflect.Type;
+import java.util.concurrent.Executor;
 
 import com.google.common.base.Function;
+import com.google.inject.Injector;
 import com.google.inject.TypeLiteral;
 
 public abstract class AbstractInstantiatorModule implements InstantiatorModule {
@@ -44,4 +47,41 @@ public abstract class AbstractInstantiatorModule implements InstantiatorModule {
     binder.register(function);
   }
 
+  protected void register(
+      Function<Type, Option<? extends Converter<?>>> function,
+      Class<?> handledType, Class<?>... moreHandledTypes) {
+    checkState(binder != null);
+    binder.register(function, handledType, moreHandledTypes);
+  }
+
+  protected void instantiateUsing(InstantiationStrategy strategy) {
+    checkState(binder != null);
+    binder.instantiateUsing(strategy);
+  }
+
+  protected void createConvertersUsing(Injector injector) {
+    checkState(binder != null);
+    binder.createConvertersUsing(injector);
+  }
+
+  protected void analyseUsing(Executor executor) {
+    checkState(binder != null);
+    binder.analyseUsing(executor);
+  }
+
+  protected void analyseEagerly() {
+    checkState(binder != null);
+    binder.analyseEagerly();
+  }
+
+  protected void cacheGeneratedClassesIn(File directory) {
+    checkState(binder != null);
+    binder.cacheGeneratedClassesIn(directory);
+  }
+
+  protected void generateAfter(int invocations) {
+    checkState(binder != null);
+    binder.generateAfter(invocations);
+  }
+
 }
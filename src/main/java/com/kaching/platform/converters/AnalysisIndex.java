@@ -0,0 +1,365 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static java.lang.String.format;
+import static java.util.Collections.unmodifiableMap;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.objectweb.asm.Type;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.kaching.platform.converters.ConstructorAnalysis.AnalysisResult;
+import com.kaching.platform.converters.ConstructorAnalysis.FormalParameter;
+
+/**
+ * Index of constructor analyses produced at build time, so that classes need
+ * not be parsed at runtime. Analyses are looked up by class and constructor,
+ * and used only if the class file has not changed since it was indexed.
+ *
+ * <p>Classes are indexed by running this class on a directory of compiled
+ * classes, which writes the index as the resource {@value #RESOURCE}:</p>
+ *
+ * <pre>
+ * java com.kaching.platform.converters.AnalysisIndex target/classes [classpath]
+ * </pre>
+ *
+ * <p>Each line of the index holds, separated by spaces, a class name, the
+ * descriptor of its constructor, the hash of the class file, the parameter
+ * names, the assignments of parameters to fields, as {@code field=index},
+ * and {@code stores} if the constructor only stores parameters into fields.
+ * Lists are separated by commas and {@code -} denotes an empty or unknown
+ * list, or a constructor doing more than storing parameters.</p>
+ */
+public final class AnalysisIndex {
+
+  static final String RESOURCE = "META-INF/instantiators.index";
+
+  private static final String NONE = "-";
+
+  private static final String STORES = "stores";
+
+  /* Indices of the resources visible from a class loader. Keys are weak, so
+   * that indices do not prevent class loaders from being unloaded.
+   */
+  private static final Cache<ClassLoader, AnalysisIndex> INDICES = CacheBuilder.newBuilder()
+      .weakKeys()
+      .build();
+
+  private static final AnalysisIndex EMPTY =
+      new AnalysisIndex(ImmutableMap.<String, IndexedAnalysis> of());
+
+  private final Map<String, IndexedAnalysis> analyses;
+
+  private AnalysisIndex(Map<String, IndexedAnalysis> analyses) {
+    this.analyses = analyses;
+  }
+
+  /**
+   * Gets the index of the resources visible from {@code classLoader}.
+   */
+  static AnalysisIndex of(final ClassLoader classLoader) throws IOException {
+    if (classLoader == null) {
+      return EMPTY;
+    }
+    try {
+      return INDICES.get(classLoader, new Callable<AnalysisIndex>() {
+        @Override
+        public AnalysisIndex call() throws IOException {
+          Map<String, IndexedAnalysis> analyses = newHashMap();
+          Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+          while (resources.hasMoreElements()) {
+            Reader in = new InputStreamReader(resources.nextElement().openStream(), UTF_8);
+            try {
+              read(in, analyses);
+            } finally {
+              in.close();
+            }
+          }
+          return analyses.isEmpty() ? EMPTY : new AnalysisIndex(analyses);
+        }
+      });
+    } catch (ExecutionException e) {
+      throw (IOException) e.getCause();
+    } catch (UncheckedExecutionException e) {
+      throw (RuntimeException) e.getCause();
+    }
+  }
+
+  /**
+   * Reads an index.
+   */
+  static AnalysisIndex read(Reader in) throws IOException {
+    Map<String, IndexedAnalysis> analyses = newHashMap();
+    read(in, analyses);
+    return new AnalysisIndex(analyses);
+  }
+
+  private static void read(Reader in, Map<String, IndexedAnalysis> analyses)
+      throws IOException {
+    BufferedReader lines = new BufferedReader(in);
+    String line;
+    while ((line = lines.readLine()) != null) {
+      String[] parts = line.split(" ");
+      if (parts.length != 5 && parts.length != 6) {
+        continue;
+      }
+      Map<String, Integer> assignments = newHashMap();
+      if (!parts[4].equals(NONE)) {
+        for (String assignment : Splitter.on(',').split(parts[4])) {
+          int equals = assignment.indexOf('=');
+          assignments.put(
+              assignment.substring(0, equals),
+              Integer.valueOf(assignment.substring(equals + 1)));
+        }
+      }
+      analyses.put(parts[0] + " " + parts[1], new IndexedAnalysis(
+          parts[2],
+          parts[3].equals(NONE) ? null : parts[3].split(","),
+          assignments,
+          parts.length == 6 && parts[5].equals(STORES)));
+    }
+  }
+
+  /**
+   * Gets the analysis of {@code constructor}, if indexed for a class file
+   * identical to {@code classBytes}, or {@code null}.
+   */
+  AnalysisResult get(Class<?> klass, Constructor<?> constructor, byte[] classBytes) {
+    if (analyses.isEmpty()) {
+      return null;
+    }
+    final IndexedAnalysis analysis = analyses.get(
+        klass.getName() + " " + Type.getConstructorDescriptor(constructor));
+    if (analysis == null || !analysis.hash.equals(hash(classBytes))) {
+      return null;
+    }
+    Class<?>[] parameterTypes = constructor.getParameterTypes();
+    final Map<String, FormalParameter> formalParameters = newHashMap();
+    for (Entry<String, Integer> assignment : analysis.assignments.entrySet()) {
+      int index = assignment.getValue();
+      if (index < 0 || parameterTypes.length <= index) {
+        return null;
+      }
+      formalParameters.put(assignment.getKey(),
+          new FormalParameter(index, parameterTypes[index]));
+    }
+    if (analysis.parameterNames != null &&
+        analysis.parameterNames.length != parameterTypes.length) {
+      return null;
+    }
+    return new AnalysisResult() {{
+      this.assignments = unmodifiableMap(formalParameters);
+      this.paramaterNames = analysis.parameterNames == null ?
+          null : analysis.parameterNames.clone();
+      this.parameterNamesRead = true;
+      this.storesOnly = analysis.storesOnly;
+    }};
+  }
+
+  /**
+   * Writes the index entry of the analysis of {@code constructor}.
+   */
+  static void write(Writer out, Class<?> klass, Constructor<?> constructor,
+      byte[] classBytes, AnalysisResult analysis) throws IOException {
+    List<String> assignments = newArrayList();
+    for (Entry<String, FormalParameter> assignment : analysis.assignments.entrySet()) {
+      assignments.add(assignment.getKey() + "=" + assignment.getValue().getIndex());
+    }
+    String[] names = analysis.paramaterNames;
+    boolean hasNames = names != null && names.length != 0;
+    for (int i = 0; hasNames && i < names.length; i++) {
+      hasNames = names[i] != null;
+    }
+    out.write(Joiner.on(' ').join(
+        klass.getName(),
+        Type.getConstructorDescriptor(constructor),
+        hash(classBytes),
+        hasNames ? Joiner.on(',').join(names) : NONE,
+        assignments.isEmpty() ? NONE : Joiner.on(',').join(assignments),
+        analysis.storesOnly ? STORES : NONE));
+    out.write('\n');
+  }
+
+  /**
+   * Indexes the classes found in {@code directory}, loading them using
+   * {@code classLoader}. Classes which cannot be loaded, whose constructor is
+   * ambiguous or illegal are skipped.
+   * @return the number of indexed constructors
+   */
+  static int write(Writer out, File directory, ClassLoader classLoader) throws IOException {
+    int count = 0;
+    for (File file : listClassFiles(directory, new ArrayList<File>())) {
+      String path = directory.toURI().relativize(file.toURI()).getPath();
+      String name = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+      if (name.endsWith("package-info") || name.endsWith("module-info")) {
+        continue;
+      }
+      Class<?> klass;
+      try {
+        klass = Class.forName(name, false, classLoader);
+      } catch (ClassNotFoundException e) {
+        continue;
+      } catch (LinkageError e) {
+        continue;
+      }
+      Constructor<?> constructor = getConstructor(klass);
+      if (constructor == null) {
+        continue;
+      }
+      byte[] classBytes = Files.toByteArray(file);
+      AnalysisResult analysis;
+      try {
+        analysis = ConstructorAnalysis.analyse(
+            new ByteArrayInputStream(classBytes),
+            klass.getName().replace('.', '/'),
+            klass.getSuperclass().getName().replace('.', '/'),
+            true,
+            constructor.getParameterTypes());
+      } catch (ConstructorAnalysis.IllegalConstructorException e) {
+        continue;
+      } catch (RuntimeException e) {
+        continue;
+      }
+      write(out, klass, constructor, classBytes, analysis);
+      count++;
+    }
+    return count;
+  }
+
+  private static List<File> listClassFiles(File directory, List<File> files) {
+    File[] children = directory.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        if (child.isDirectory()) {
+          listClassFiles(child, files);
+        } else if (child.getName().endsWith(".class")) {
+          files.add(child);
+        }
+      }
+    }
+    return files;
+  }
+
+  /* Mirrors InstantiatorImplFactory#getConstructor, without reporting errors.
+   */
+  private static Constructor<?> getConstructor(Class<?> klass) {
+    int modifiers = klass.getModifiers();
+    if (klass.isInterface() || klass.isEnum() || klass.isAnonymousClass() ||
+        klass.isLocalClass() || klass.isSynthetic() || Modifier.isAbstract(modifiers) ||
+        klass.getSuperclass() == null) {
+      return null;
+    }
+    Constructor<?>[] constructors;
+    try {
+      constructors = klass.getDeclaredConstructors();
+    } catch (LinkageError e) {
+      return null;
+    }
+    if (constructors.length == 1) {
+      return constructors[0];
+    }
+    Constructor<?> annotated = null;
+    for (Constructor<?> constructor : constructors) {
+      if (constructor.getAnnotation(Instantiate.class) != null) {
+        if (annotated != null) {
+          return null;
+        }
+        annotated = constructor;
+      }
+    }
+    return annotated;
+  }
+
+  static String hash(byte[] classBytes) {
+    return Hashing.murmur3_128().hashBytes(classBytes).toString();
+  }
+
+  /**
+   * Indexes the classes of a directory, using an optional class path to load
+   * them, into the resource {@value #RESOURCE} of that directory.
+   */
+  public static void main(String... args) throws IOException {
+    if (args.length < 1 || 2 < args.length) {
+      System.err.println(format(
+          "usage: java %s <classes directory> [<class path>]", AnalysisIndex.class.getName()));
+      System.exit(1);
+    }
+    File directory = new File(args[0]);
+    List<URL> urls = newArrayList(directory.toURI().toURL());
+    if (args.length == 2) {
+      for (String entry : Splitter.on(File.pathSeparatorChar).omitEmptyStrings().split(args[1])) {
+        urls.add(new File(entry).toURI().toURL());
+      }
+    }
+    ClassLoader classLoader = new URLClassLoader(
+        urls.toArray(new URL[urls.size()]), AnalysisIndex.class.getClassLoader());
+    File index = new File(directory, RESOURCE);
+    index.getParentFile().mkdirs();
+    Writer out = Files.newWriter(index, UTF_8);
+    int count;
+    try {
+      count = write(out, directory, classLoader);
+    } finally {
+      out.close();
+    }
+    System.out.println(format("indexed %s constructors in %s", count, index));
+  }
+
+  /**
+   * An indexed analysis, as read.
+   */
+  private static class IndexedAnalysis {
+
+    final String hash;
+    final String[] parameterNames;
+    final Map<String, Integer> assignments;
+    final boolean storesOnly;
+
+    IndexedAnalysis(String hash, String[] parameterNames, Map<String, Integer> assignments,
+        boolean storesOnly) {
+      this.hash = hash;
+      this.parameterNames = parameterNames;
+      this.assignments = assignments;
+      this.storesOnly = storesOnly;
+    }
+
+  }
+
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import java.io.IOException;
+
+/**
+ * A converter able to write the textual representation of a value straight
+ * into an {@link Appendable}, without creating a string. Instantiators use it
+ * when destantiating into an {@link Appendable}, see
+ * {@link Instantiator#fromInstance(Object, Appendable, Delimiting)}.
+ */
+public interface AppendingConverter<T> extends Converter<T> {
+
+  /**
+   * Appends the string representation of a value. This must append the same
+   * characters as {@code out.append(toString(value))}.
+   * @param value the value to convert, which is not {@code null}.
+   * @param out where to append the string representation of the value.
+   */
+  void appendTo(T value, Appendable out) throws IOException;
+
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+/**
+ * A converter able to convert part of a character sequence without first
+ * copying it into a string. Instantiators use it when instantiating from
+ * slices of an input, see
+ * {@link Instantiator#newInstance(CharSequence, int[], int[])}.
+ */
+public interface CharSequenceConverter<T> extends Converter<T> {
+
+  /**
+   * Converts the textual representation found between {@code start}
+   * (inclusive) and {@code end} (exclusive) of {@code representation} into a
+   * value. This must be equivalent to
+   * {@code fromString(representation.subSequence(start, end).toString())}.
+   * Throws an {@link IllegalArgumentException} if the value cannot be converted.
+   * @param representation the characters holding the textual representation.
+   * @param start the index of its first character.
+   * @param end the index following its last character.
+   * @return the value represented by the textual representation.
+   */
+  T fromCharSequence(CharSequence representation, int start, int end);
+
+}
@@ -10,6 +10,7 @@
  */
 package com.kaching.platform.converters;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -26,7 +27,10 @@ import com.google.inject.Provider;
  * Converter for collections of elements, provided we have a converter for
  * each individual element.
  */
-class CollectionOfElementsConverter<T extends Collection<?>> implements Converter<T> {
+class CollectionOfElementsConverter<T extends Collection<?>>
+    implements AppendingConverter<T> {
+
+  private static final Joiner JOINER = Joiner.on(",");
 
   @SuppressWarnings("rawtypes")
   static final Map<Class<?>, Provider<Collection<?>>> COLLECTION_KINDS =
@@ -60,7 +64,12 @@ class CollectionOfElementsConverter<T extends Collection<?>> implements Converte
 
   @Override
   public String toString(T value) {
-    return Joiner.on(",").join(value);
+    return JOINER.join(value);
+  }
+
+  @Override
+  public void appendTo(T value, Appendable out) throws IOException {
+    JOINER.appendTo(out, value);
   }
 
   @Override
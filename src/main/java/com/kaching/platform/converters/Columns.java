@@ -0,0 +1,107 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static java.lang.String.format;
+
+import java.lang.reflect.Array;
+
+/**
+ * Values of many instances laid out by parameter: column {@code i} holds the
+ * values of parameter {@code i} of the constructor for all rows. A column is
+ * either a {@code String[]} of textual representations or, for parameters of
+ * a primitive type, an array of that primitive type, such as a
+ * {@code long[]}. Columns which are not set hold {@code null} values.
+ */
+public final class Columns {
+
+  private final int size;
+  private final Object[] columns;
+
+  /**
+   * @param size the number of rows
+   * @param width the number of columns, which must be the number of
+   *     parameters of the constructor
+   */
+  public Columns(int size, int width) {
+    this.size = size;
+    this.columns = new Object[width];
+  }
+
+  /**
+   * Gets the number of rows.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of columns.
+   */
+  public int width() {
+    return columns.length;
+  }
+
+  /**
+   * Sets column {@code index}, which must be a {@code String[]} or an array of
+   * a primitive type holding at least {@link #size()} values.
+   */
+  public Columns set(int index, Object column) {
+    if (column != null) {
+      Class<?> type = column.getClass();
+      if (!type.equals(String[].class) &&
+          !(type.isArray() && type.getComponentType().isPrimitive())) {
+        throw new IllegalArgumentException(format(
+            "column %s must be a String[] or an array of primitives", index));
+      }
+      if (Array.getLength(column) < size) {
+        throw new IllegalArgumentException(format(
+            "column %s has less than %s values", index, size));
+      }
+    }
+    columns[index] = column;
+    return this;
+  }
+
+  /**
+   * Gets column {@code index}, a {@code String[]}, an array of a primitive type
+   * or {@code null} if it is not set.
+   */
+  public Object get(int index) {
+    return columns[index];
+  }
+
+  public String[] getStrings(int index) {
+    return get(index, String[].class);
+  }
+
+  public long[] getLongs(int index) {
+    return get(index, long[].class);
+  }
+
+  public int[] getInts(int index) {
+    return get(index, int[].class);
+  }
+
+  public double[] getDoubles(int index) {
+    return get(index, double[].class);
+  }
+
+  private <A> A get(int index, Class<A> type) {
+    Object column = columns[index];
+    if (column != null && !type.isInstance(column)) {
+      throw new IllegalArgumentException(format(
+          "column %s is a %s", index, column.getClass().getSimpleName()));
+    }
+    return type.cast(column);
+  }
+
+}
@@ -25,21 +25,30 @@ import static com.kaching.platform.converters.ConstructorAnalysis.Operation.SUB;
 import static com.kaching.platform.converters.ConstructorAnalysis.Operation.USHR;
 import static com.kaching.platform.converters.ConstructorAnalysis.Operation.XOR;
 import static java.lang.String.format;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.logging.Level.FINE;
+import static org.objectweb.asm.ClassReader.SKIP_DEBUG;
 import static org.objectweb.asm.ClassReader.SKIP_FRAMES;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
@@ -47,32 +56,135 @@ import org.objectweb.asm.commons.EmptyVisitor;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 public class ConstructorAnalysis {
   
   private static final Logger log = Logger.getLogger(ConstructorAnalysis.class.getName());
 
   /**
-   * Produces an assignment or field names to values or fails.
+   * Upper bound, in bytes, of the class files kept in {@link #CLASS_BYTES}.
+   */
+  static final long MAXIMUM_CLASS_BYTES = 4 * 1024 * 1024;
+
+  /* Class files, read at most once per class while they are cached. Keys are
+   * weak, so that caching does not prevent classes from being unloaded.
+   */
+  private static final Cache<Class<?>, byte[]> CLASS_BYTES = CacheBuilder.newBuilder()
+      .weakKeys()
+      .maximumWeight(MAXIMUM_CLASS_BYTES)
+      .weigher(new Weigher<Class<?>, byte[]>() {
+        @Override
+        public int weigh(Class<?> klass, byte[] bytes) {
+          return bytes.length;
+        }
+      })
+      .build();
+
+  /* Results of analyses, attached to the analysed class so that they do not
+   * prevent it from being unloaded.
+   */
+  private static final ClassValue<ConcurrentMap<Constructor<?>, AnalysisResult>> ANALYSES =
+      new ClassValue<ConcurrentMap<Constructor<?>, AnalysisResult>>() {
+        @Override
+        protected ConcurrentMap<Constructor<?>, AnalysisResult> computeValue(Class<?> klass) {
+          return new ConcurrentHashMap<Constructor<?>, AnalysisResult>();
+        }
+      };
+
+  /**
+   * Produces an assignment or field names to values or fails. Results are
+   * memoized per constructor.
    * @throws IllegalConstructorException
    */
   static AnalysisResult analyse(
       Class<?> klass, Constructor<?> constructor) throws IOException {
-    Class<?>[] parameterTypes = constructor.getParameterTypes();
-    InputStream in = klass.getResourceAsStream("/" + klass.getName().replace('.', '/') + ".class");
-    if (in == null) {
-      throw new IllegalArgumentException(format("can not find bytecode for %s", klass));
-    }
-    return analyse(in, klass.getName().replace('.', '/'),
-        klass.getSuperclass().getName().replace('.', '/'),
-        parameterTypes);
+    return analyse(klass, constructor, true);
+  }
+
+  /**
+   * Produces an assignment or field names to values or fails, inferring
+   * parameter names only if {@code readParameterNames}. Results are memoized
+   * per constructor, and taken from the {@link AnalysisIndex} when indexed.
+   * @throws IllegalConstructorException
+   */
+  static AnalysisResult analyse(
+      Class<?> klass, Constructor<?> constructor, boolean readParameterNames)
+      throws IOException {
+    ConcurrentMap<Constructor<?>, AnalysisResult> analyses = ANALYSES.get(klass);
+    AnalysisResult result = analyses.get(constructor);
+    if (result == null || (readParameterNames && !result.parameterNamesRead)) {
+      byte[] classBytes = getClassBytes(klass);
+      result = AnalysisIndex.of(klass.getClassLoader()).get(klass, constructor, classBytes);
+      if (result != null) {
+        analyses.put(constructor, result);
+        return result;
+      }
+      result = analyse(
+          new ByteArrayInputStream(classBytes),
+          klass.getName().replace('.', '/'),
+          klass.getSuperclass().getName().replace('.', '/'),
+          readParameterNames,
+          constructor.getParameterTypes());
+      if (readParameterNames) {
+        analyses.put(constructor, result);
+      } else {
+        AnalysisResult previous = analyses.putIfAbsent(constructor, result);
+        if (previous != null) {
+          result = previous;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the class file of {@code klass}.
+   */
+  static byte[] getClassBytes(final Class<?> klass) throws IOException {
+    try {
+      return CLASS_BYTES.get(klass, new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws IOException {
+          InputStream in = klass.getResourceAsStream(
+              "/" + klass.getName().replace('.', '/') + ".class");
+          if (in == null) {
+            throw new IllegalArgumentException(format("can not find bytecode for %s", klass));
+          }
+          try {
+            return ByteStreams.toByteArray(in);
+          } finally {
+            in.close();
+          }
+        }
+      });
+    } catch (ExecutionException e) {
+      throw (IOException) e.getCause();
+    } catch (UncheckedExecutionException e) {
+      throw (RuntimeException) e.getCause();
+    }
   }
 
   @VisibleForTesting
   static AnalysisResult analyse(InputStream classInputStream,
       String owner, String superclass,
       Class<?>... parameterTypes) throws IOException {
+    return analyse(classInputStream, owner, superclass, true, parameterTypes);
+  }
+
+  /**
+   * Analyses the constructor with parameters {@code parameterTypes} of the
+   * class read from {@code classInputStream}. Debug information is skipped,
+   * and parameter names not inferred, unless {@code readParameterNames}.
+   */
+  static AnalysisResult analyse(InputStream classInputStream,
+      String owner, String superclass, final boolean readParameterNames,
+      Class<?>... parameterTypes) throws IOException {
     Type[] types = new Type[parameterTypes.length];
     for (int i = 0; i < types.length; i++) {
       types[i] = Type.getType(parameterTypes[i]);
@@ -85,7 +197,18 @@ public class ConstructorAnalysis {
             superclass,
             parameterTypes);
     final boolean[] hasVisitedConstructor = new boolean[] { false };
-    analyse(classInputStream, new EmptyVisitor() {
+    analyse(classInputStream, readParameterNames, new EmptyVisitor() {
+      @Override
+      public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+        return null;
+      }
+
+      @Override
+      public FieldVisitor visitField(int access, String name, String desc,
+          String signature, Object value) {
+        return null;
+      }
+
       @Override
       public MethodVisitor visitMethod(int access, String name, String desc,
           String signature, String[] exceptions) {
@@ -99,13 +222,16 @@ public class ConstructorAnalysis {
                 "impossible to encounter twice a method with the same signature");
           }
         } else {
-          return this;
+          // skips the method entirely
+          return null;
         }
       }
     });
     return new AnalysisResult() {{
-      this.assignments = validateAndCast(state.assignements);
+      this.assignments = unmodifiableMap(validateAndCast(state.assignements));
       this.paramaterNames = state.parameterNames;
+      this.parameterNamesRead = readParameterNames;
+      this.storesOnly = state.storesOnly;
     }};
   }
   private static Map<String, FormalParameter> validateAndCast(
@@ -185,6 +311,10 @@ public class ConstructorAnalysis {
    */
   static class ConstructorAnalyzer implements MethodVisitor {
 
+    private static final IntLiteral[] ICONSTS = {
+        new IntLiteral(0), new IntLiteral(1), new IntLiteral(2),
+        new IntLiteral(3), new IntLiteral(4), new IntLiteral(5) };
+
     private final ConstructorExecutionState state;
 
     private ConstructorAnalyzer(ConstructorExecutionState state) {
@@ -203,7 +333,10 @@ public class ConstructorAnalysis {
 
     @Override
     public void visitAttribute(Attribute attr) {
-      throw illegalConstructor();
+      // parameter names recorded by -parameters carry no code
+      if (!attr.type.equals("MethodParameters")) {
+        throw illegalConstructor();
+      }
     }
 
     @Override
@@ -212,8 +345,11 @@ public class ConstructorAnalysis {
 
     @Override
     public void visitEnd() {
-      log.fine(format("end state:\n%s", state));
-      checkState(state.stack.isEmpty(), "stack not empty on exit");
+      if (log.isLoggable(FINE)) {
+        log.fine(format("end state:\n%s", state));
+      }
+      checkState(state.isStackEmpty(), "stack not empty on exit");
+      throw ConstructorAnalysed.INSTANCE;
     }
 
     @Override
@@ -231,12 +367,18 @@ public class ConstructorAnalysis {
           return;
 
         case 0xB5: // putfield
-          log.fine(format("putfield %s %s %s", owner, name, desc));
+          if (log.isLoggable(FINE)) {
+            log.fine(format("putfield %s %s %s", owner, name, desc));
+          }
           JavaValue value = state.stackPop();
           reference = (ObjectReference) state.stackPop();
           if (isThis(reference)) {
             state.assign(name, value);
+            if (!isFormalParameter(value)) {
+              state.storesOnly = false;
+            }
           } else {
+            state.storesOnly = false;
             /* We do not care about tracking other object's modification. We
             /* assume that API users are not trying to trick us with aliasing:
              *
@@ -257,6 +399,12 @@ public class ConstructorAnalysis {
       }
     }
 
+    private boolean isFormalParameter(JavaValue value) {
+      return value instanceof FormalParameter ||
+          (value instanceof ObjectReference &&
+              ((ObjectReference) value).value instanceof FormalParameter);
+    }
+
     private boolean isThis(ObjectReference reference) {
       return (reference.value instanceof MethodCall &&
           ((MethodCall) reference.value).object instanceof ThisPointer) ||
@@ -277,7 +425,9 @@ public class ConstructorAnalysis {
     public void visitInsn(int opcode) {
       switch (opcode) {
         case 0xB1: // return
-          log.fine("return");
+          if (log.isLoggable(FINE)) {
+            log.fine("return");
+          }
           return;
 
         case 0x01: // aconst_null
@@ -290,7 +440,7 @@ public class ConstructorAnalysis {
         case 0x06: // iconst_3
         case 0x07: // iconst_4
         case 0x08: // iconst_5
-          state.stackPushLiteral(new IntLiteral(opcode - 0x03));
+          state.stackPushLiteral(ICONSTS[opcode - 0x03]);
           return;
 
         case 0x58: // pop2
@@ -430,13 +580,16 @@ public class ConstructorAnalysis {
         case 0xB7: // invokespecial
         case 0xB9: // invokeinterface
         case 0xB8: // invokestatic
-          log.fine(format("invoke___ %s %s %s", owner, name, desc));
+          if (log.isLoggable(FINE)) {
+            log.fine(format("invoke___ %s %s %s", owner, name, desc));
+          }
           if (owner.equals(state.superclass) && name.equals("<init>")) { // super(...);
             if (!desc.equals("()V")) {
               throw new IllegalConstructorException(
                   "can not call super constructor with argument(s)");
             }
-          } else if (owner.equals(state.owner) && name.equals("<init>")) { // this(...);
+          }
+          if (owner.equals(state.owner) && name.equals("<init>")) { // this(...);
             throw new IllegalConstructorException(
                 "can not delegate to another constructor");
           }
@@ -453,8 +606,12 @@ public class ConstructorAnalysis {
           JavaValue returnValue;
           if (opcode == 0xB8) {
             returnValue = new StaticCall(owner, name, arguments);
+            state.storesOnly = false;
           } else {
             ObjectReference reference = (ObjectReference) state.stackPop();
+            if (!(isThis(reference) && owner.equals("java/lang/Object") && name.equals("<init>"))) {
+              state.storesOnly = false;
+            }
             reference.updateReference(
                 new MethodCall(reference.value, name, arguments));
             returnValue = reference;
@@ -515,8 +672,10 @@ public class ConstructorAnalysis {
         case 0x17: // fload
         case 0x18: // dload
         case 0x19: // aload
-          log.fine(format("_load %s", var));
-          state.stackPushLiteral(state.locals.get(var));
+          if (log.isLoggable(FINE)) {
+            log.fine(format("_load %s", var));
+          }
+          state.stackPushLiteral(state.load(var));
           return;
 
         default: unknown(opcode);
@@ -536,6 +695,13 @@ public class ConstructorAnalysis {
   static class AnalysisResult {
     Map<String, FormalParameter> assignments;
     String[] paramaterNames;
+    boolean parameterNamesRead;
+    /**
+     * Whether the constructor only calls {@code Object}'s constructor and
+     * stores parameters, as they are, into fields of the instance. Such
+     * constructors can be bypassed by storing into the fields directly.
+     */
+    boolean storesOnly;
   }
 
   /**
@@ -547,40 +713,50 @@ public class ConstructorAnalysis {
     private final String owner;
     private final String superclass;
     private final int parameterNums;
-    private final List<JavaValue> locals = newArrayList();
-    private final LinkedList<JavaValue> stack = new LinkedList<JavaValue>();
+    private final JavaValue[] locals;
+    private JavaValue[] stack = new JavaValue[8];
+    private int stackSize = 0;
     private final Map<String, JavaValue> assignements = newHashMap();
-    private final List<Integer> parameterNameRewrite;
+    private final int[] parameterNameRewrite;
     private String[] parameterNames;
+    private boolean storesOnly = true;
 
     ConstructorExecutionState(String owner, String superclass, Class<?>[] parameterTypes) {
       this.owner = owner;
       this.superclass = superclass;
-      locals.add(new ObjectReference(new ThisPointer()));
       this.parameterNums = parameterTypes.length;
-      this.parameterNameRewrite = newArrayList();
+      int slots = 1;
+      for (Class<?> parameterType : parameterTypes) {
+        slots += parameterType.equals(Long.TYPE) || parameterType.equals(Double.TYPE) ? 2 : 1;
+      }
+      this.locals = new JavaValue[slots];
+      this.parameterNameRewrite = new int[slots - 1];
+      locals[0] = new ObjectReference(new ThisPointer());
+      int slot = 1;
       for (int i = 0; i < parameterNums; i++) {
         Class<?> parameterType = parameterTypes[i];
         JavaValue formalParameter = new FormalParameter(i, parameterType);
         if (!parameterType.isPrimitive()) {
           formalParameter = new ObjectReference(formalParameter);
         }
-        locals.add(formalParameter);
-        parameterNameRewrite.add(i);
+        locals[slot] = formalParameter;
+        parameterNameRewrite[slot - 1] = i;
+        slot++;
         if (parameterType.equals(Long.TYPE) ||
             parameterType.equals(Double.TYPE)) {
-          locals.add(formalParameter);
-          parameterNameRewrite.add(i);
+          locals[slot] = formalParameter;
+          parameterNameRewrite[slot - 1] = i;
+          slot++;
         }
       }
     }
 
     void recordParameterName(int index, String name) {
-      if (index > 0) {
+      if (index > 0 && index < locals.length) {
         if (parameterNames == null) {
           parameterNames = new String[parameterNums];
         }
-        parameterNames[parameterNameRewrite.get(index - 1)] = name;
+        parameterNames[parameterNameRewrite[index - 1]] = name;
       }
     }
 
@@ -594,33 +770,49 @@ public class ConstructorAnalysis {
 
     @Override
     public String toString() {
+      List<JavaValue> stackFromTop = newArrayList();
+      for (int i = stackSize - 1; 0 <= i; i--) {
+        stackFromTop.add(stack[i]);
+      }
       return Joiner.on("\n").join(
-          format("locals: %s", locals), format("stack : %s", stack),
+          format("locals: %s", Arrays.asList(locals)), format("stack : %s", stackFromTop),
           format("assign: %s", assignements));
     }
 
+    JavaValue load(int var) {
+      return locals[var];
+    }
+
     boolean isStackEmpty() {
-      return stack.isEmpty();
+      return stackSize == 0;
     }
 
     void stackPushLiteral(JavaValue value) {
-      stack.push(value);
+      if (stackSize == stack.length) {
+        stack = Arrays.copyOf(stack, stackSize * 2);
+      }
+      stack[stackSize++] = value;
     }
 
     void stackPush(String desc, JavaValue value) {
       if (desc.charAt(0) == 'L' && !(value instanceof ObjectReference)) {
-        stack.push(new ObjectReference(value));
+        stackPushLiteral(new ObjectReference(value));
       } else {
-        stack.push(value);
+        stackPushLiteral(value);
       }
     }
 
     JavaValue stackPop() {
-      return stack.poll();
+      if (stackSize == 0) {
+        return null;
+      }
+      JavaValue value = stack[--stackSize];
+      stack[stackSize] = null;
+      return value;
     }
 
     JavaValue stackPeek() {
-      return stack.peek();
+      return stackSize == 0 ? null : stack[stackSize - 1];
     }
 
   }
@@ -863,13 +1055,32 @@ public class ConstructorAnalysis {
   }
 
   private static void analyse(InputStream classFileIn,
-      ClassVisitor visitor) throws IOException {
+      boolean readDebugInformation, ClassVisitor visitor) throws IOException {
     try {
       ClassReader reader = new ClassReader(classFileIn);
-      reader.accept(visitor, SKIP_FRAMES);
+      reader.accept(visitor, readDebugInformation ? SKIP_FRAMES : SKIP_FRAMES | SKIP_DEBUG);
+    } catch (ConstructorAnalysed e) {
+      // the rest of the class is of no interest
     } finally {
       classFileIn.close();
     }
   }
 
+  /**
+   * Thrown once the analysed constructor has been visited, to stop reading
+   * the class.
+   */
+  private static class ConstructorAnalysed extends RuntimeException {
+
+    private static final long serialVersionUID = 5183960431256209754L;
+
+    private static final ConstructorAnalysed INSTANCE = new ConstructorAnalysed();
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+
+  }
+
 }
@@ -10,9 +10,12 @@
  */
 package com.kaching.platform.converters;
 
+import java.io.File;
 import java.lang.reflect.Type;
+import java.util.concurrent.Executor;
 
 import com.google.common.base.Function;
+import com.google.inject.Injector;
 import com.google.inject.TypeLiteral;
 
 /**
@@ -37,4 +40,63 @@ public interface ConverterBinder {
    */
   void register(Function<Type, Option<? extends Converter<?>>> function);
 
+  /**
+   * Registers a function that might know how to create converters for types
+   * whose raw class is, or is a subtype of, one of {@code handledTypes}. The
+   * function is not invoked for other types. As with
+   * {@link #register(Function)}, if more than one function can create a
+   * converter for a specific type, instantiation fails.
+   */
+  void register(
+      Function<Type, Option<? extends Converter<?>>> function,
+      Class<?> handledType, Class<?>... moreHandledTypes);
+
+  /**
+   * Specifies how instances are created. Defaults to
+   * {@link InstantiationStrategy#REFLECTION}.
+   */
+  void instantiateUsing(InstantiationStrategy strategy);
+
+  /**
+   * Creates converters, those bound to types by class or specified using
+   * {@link ConvertedBy}, using {@code injector}. By default, converters are
+   * created by calling their no argument constructor. Either way, a single
+   * converter is created per class.
+   */
+  void createConvertersUsing(Injector injector);
+
+  /**
+   * Analyses constructors, to find which fields destantiate instances, in the
+   * background using {@code executor}. By default, constructors are analysed
+   * when the first instance is destantiated.
+   */
+  void analyseUsing(Executor executor);
+
+  /**
+   * Analyses constructors while creating instantiators, so that illegal
+   * constructors fail instantiation instead of the first destantiation.
+   * Constructors are always analysed eagerly when using
+   * {@link InstantiationStrategy#BYTECODE}.
+   */
+  void analyseEagerly();
+
+  /**
+   * Keeps the classes generated when using
+   * {@link InstantiationStrategy#BYTECODE} in {@code directory}, so that they
+   * are loaded from it rather than generated again when the virtual machine
+   * is restarted. Classes are kept by the hash of the instantiated class's
+   * class file and of everything else they are generated from, and are
+   * therefore never used once stale.
+   */
+  void cacheGeneratedClassesIn(File directory);
+
+  /**
+   * Generates code for instantiators using
+   * {@link InstantiationStrategy#TIERED} once they have been invoked
+   * {@code invocations} times. Defaults to
+   * {@link TieredInstantiator#DEFAULT_THRESHOLD}. Code is generated using the
+   * executor given to {@link #analyseUsing(Executor)} if any.
+   */
+  void generateAfter(int invocations);
+
 }
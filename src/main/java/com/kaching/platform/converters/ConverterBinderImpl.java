@@ -10,24 +10,92 @@
  */
 package com.kaching.platform.converters;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Lists.transform;
 import static com.google.common.collect.Maps.newHashMap;
+import static com.kaching.platform.converters.InstantiatorErrors.conflictingCacheDirectories;
+import static com.kaching.platform.converters.InstantiatorErrors.conflictingExecutors;
+import static com.kaching.platform.converters.InstantiatorErrors.conflictingGenerationThresholds;
+import static com.kaching.platform.converters.InstantiatorErrors.conflictingInjectors;
+import static com.kaching.platform.converters.InstantiatorErrors.conflictingInstantiationStrategies;
 import static com.kaching.platform.converters.InstantiatorErrors.duplicateConverterBindingForType;
+import static java.util.Arrays.asList;
 
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.inject.Injector;
 import com.google.inject.TypeLiteral;
 
 class ConverterBinderImpl implements ConverterBinder {
 
+  /* Fingerprints converter instances and functions, see fingerprint(). */
+  private static final Function<Object, Object> FINGERPRINT = new Function<Object, Object>() {
+    @Override
+    public Object apply(Object object) {
+      Class<?> klass = object.getClass();
+      try {
+        if (!klass.getMethod("equals", Object.class).getDeclaringClass().equals(Object.class)) {
+          return object;
+        }
+      } catch (NoSuchMethodException e) {
+        throw Throwables.propagate(e);
+      }
+      List<Object> fingerprint = newArrayList();
+      fingerprint.add(klass);
+      for (Class<?> c = klass; !c.equals(Object.class); c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          if (Modifier.isStatic(field.getModifiers())) {
+            continue;
+          }
+          if (!(field.isSynthetic() && InstantiatorModule.class.isAssignableFrom(field.getType()))) {
+            return object;
+          }
+          // the enclosing module's state may be read, so it is fingerprinted too
+          try {
+            field.setAccessible(true);
+            Object module = field.get(object);
+            fingerprint.add(module == null ? null : apply(module));
+          } catch (IllegalAccessException e) {
+            return object;
+          }
+        }
+      }
+      return fingerprint.size() == 1 ? klass : fingerprint;
+    }
+  };
+
   private final Errors errors;
   private final Map<TypeLiteral<?>, Converter<?>> instances = newHashMap();
   @SuppressWarnings("rawtypes")
   private final Map<TypeLiteral<?>, Class<? extends Converter>> bindings = newHashMap();
   private final List<Function<Type, Option<? extends Converter<?>>>> functions = newArrayList();
+  private final List<Set<Class<?>>> handledTypes = newArrayList();
+  private InstantiationStrategy strategy;
+  private ConverterRegistrations registrations;
+  private Injector injector;
+  private Executor executor;
+  private boolean analyseEagerly;
+  private File cacheDirectory;
+  private Integer generationThreshold;
+  private final ConcurrentMap<Class<?>, FutureTask<Converter<?>>> converters =
+      new ConcurrentHashMap<Class<?>, FutureTask<Converter<?>>>();
 
   ConverterBinderImpl(Errors errors) {
     this.errors = errors;
@@ -46,6 +114,66 @@ class ConverterBinderImpl implements ConverterBinder {
   @Override
   public void register(Function<Type, Option<? extends Converter<?>>> function) {
     functions.add(function);
+    handledTypes.add(ImmutableSet.<Class<?>> of());
+    registrations = null;
+  }
+
+  @Override
+  public void register(
+      Function<Type, Option<? extends Converter<?>>> function,
+      Class<?> handledType, Class<?>... moreHandledTypes) {
+    functions.add(function);
+    handledTypes.add(ImmutableSet.<Class<?>> builder()
+        .add(handledType)
+        .add(moreHandledTypes)
+        .build());
+    registrations = null;
+  }
+
+  @Override
+  public void instantiateUsing(InstantiationStrategy strategy) {
+    if (this.strategy != null && !this.strategy.equals(strategy)) {
+      conflictingInstantiationStrategies(errors, this.strategy, strategy);
+    }
+    this.strategy = strategy;
+  }
+
+  @Override
+  public void createConvertersUsing(Injector injector) {
+    if (this.injector != null && this.injector != injector) {
+      conflictingInjectors(errors);
+    }
+    this.injector = injector;
+  }
+
+  @Override
+  public void analyseUsing(Executor executor) {
+    if (this.executor != null && this.executor != executor) {
+      conflictingExecutors(errors);
+    }
+    this.executor = executor;
+  }
+
+  @Override
+  public void analyseEagerly() {
+    analyseEagerly = true;
+  }
+
+  @Override
+  public void cacheGeneratedClassesIn(File directory) {
+    if (cacheDirectory != null && !cacheDirectory.equals(directory)) {
+      conflictingCacheDirectories(errors, cacheDirectory, directory);
+    }
+    cacheDirectory = directory;
+  }
+
+  @Override
+  public void generateAfter(int invocations) {
+    checkArgument(invocations > 0, "invocations must be positive");
+    if (generationThreshold != null && generationThreshold != invocations) {
+      conflictingGenerationThresholds(errors, generationThreshold, invocations);
+    }
+    generationThreshold = invocations;
   }
 
   Map<TypeLiteral<?>, Converter<?>> getInstances() {
@@ -61,6 +189,99 @@ class ConverterBinderImpl implements ConverterBinder {
     return functions;
   }
 
+  /**
+   * Returns, for each function, the types it handles; an empty set means all
+   * types.
+   */
+  List<Set<Class<?>>> getHandledTypes() {
+    return handledTypes;
+  }
+
+  /**
+   * Returns an indexed snapshot of the registrations made so far. The
+   * snapshot is taken once and retaken only if registrations change.
+   */
+  ConverterRegistrations getRegistrations() {
+    if (registrations == null) {
+      registrations = new ConverterRegistrations(
+          getInstances(), getBindings(), getFunctions(), getHandledTypes());
+    }
+    return registrations;
+  }
+
+  InstantiationStrategy getInstantiationStrategy() {
+    return strategy == null ? InstantiationStrategy.REFLECTION : strategy;
+  }
+
+  Option<Injector> getInjector() {
+    return injector == null ? Option.<Injector> none() : Option.some(injector);
+  }
+
+  Option<Executor> getExecutor() {
+    return executor == null ? Option.<Executor> none() : Option.some(executor);
+  }
+
+  boolean isAnalysingEagerly() {
+    return analyseEagerly;
+  }
+
+  Option<File> getCacheDirectory() {
+    return cacheDirectory == null ? Option.<File> none() : Option.some(cacheDirectory);
+  }
+
+  int getGenerationThreshold() {
+    return generationThreshold == null ?
+        TieredInstantiator.DEFAULT_THRESHOLD : generationThreshold;
+  }
+
+  /**
+   * Returns a value equal to the fingerprint of any other binder configured
+   * the same way. Converter instances and functions are compared using their
+   * {@code equals} if their class defines it, or else by class if their class
+   * holds no state, references to an enclosing module aside, in which case the
+   * enclosing modules are compared the same way; other converter instances and
+   * functions, as well as injectors and executors, are compared by identity.
+   */
+  Object fingerprint() {
+    return asList(
+        getInstantiationStrategy(),
+        injector,
+        executor,
+        analyseEagerly,
+        cacheDirectory,
+        getGenerationThreshold(),
+        newHashMap(bindings),
+        newHashMap(Maps.transformValues(instances, FINGERPRINT)),
+        newArrayList(transform(functions, FINGERPRINT)),
+        newArrayList(handledTypes));
+  }
+
+  /**
+   * Returns the converter of class {@code converterClass}, created by
+   * {@code creation} unless it was created before through this binder.
+   * Concurrent callers wait for a single creation, which runs outside of any
+   * lock. A failed creation is not kept, so that it is attempted again.
+   */
+  Converter<?> getConverter(Class<? extends Converter<?>> converterClass,
+      Callable<Converter<?>> creation) throws Exception {
+    FutureTask<Converter<?>> task = new FutureTask<Converter<?>>(creation);
+    FutureTask<Converter<?>> existing = converters.putIfAbsent(converterClass, task);
+    if (existing == null) {
+      existing = task;
+      task.run();
+    }
+    try {
+      return existing.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      converters.remove(converterClass, existing);
+      Throwables.propagateIfInstanceOf(e.getCause(), Exception.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
   class ConverterSpecifierImpl<T> implements ConverterSpecifier<T> {
 
     private final TypeLiteral<T> key;
@@ -76,11 +297,13 @@ class ConverterBinderImpl implements ConverterBinder {
     @SuppressWarnings("rawtypes")
     public void converter(Class<? extends Converter> type) {
       bindings.put(key, type);
+      registrations = null;
     }
 
     @Override
     public void converter(Converter<? extends T> converter) {
       instances.put(key, converter);
+      registrations = null;
     }
 
   }
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static com.kaching.platform.converters.InstantiatorErrors.unableToCreateInstantiator;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.TypeLiteral;
+
+/**
+ * Modules configured once, from which instantiators and converters are
+ * created. Instantiators created from the same environment share converter
+ * instances and converter resolution, which makes creating instantiators for
+ * many classes much cheaper than calling
+ * {@link Instantiators#createInstantiator(Class, InstantiatorModule...)} for
+ * each of them.
+ *
+ * <p>Environments are immutable and can be used from multiple threads. They
+ * are created using {@link Instantiators#createEnvironment}.</p>
+ */
+public final class ConverterEnvironment {
+
+  private final ConverterBinderImpl binder;
+
+  ConverterEnvironment(Errors errors, InstantiatorModule... modules) {
+    binder = new ConverterBinderImpl(errors);
+    for (InstantiatorModule module : modules) {
+      module.configure(binder);
+    }
+    // the snapshot is taken eagerly so that it is safely published
+    binder.getRegistrations();
+  }
+
+  /**
+   * Creates an instantiator for {@code klass}.
+   */
+  public <T> Instantiator<T> createInstantiator(Class<T> klass) {
+    Errors errors = new Errors();
+    for (Instantiator<T> instantiator : createInstantiator(errors, klass)) {
+      return instantiator;
+    }
+    errors.throwIfHasErrors();
+    throw new IllegalStateException();
+  }
+
+  /**
+   * Creates an instantiator for {@code klass} if possible and aggregates
+   * errors.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public <T> Option<Instantiator<T>> createInstantiator(Errors errors, Class<T> klass) {
+    return (Option) factoryFor(errors, klass).create();
+  }
+
+  /**
+   * Creates instantiators for all {@code classes}, building them concurrently
+   * on {@code executor}. The instantiators are returned in the iteration order
+   * of {@code classes}, each class once even if it is repeated; if any of them
+   * cannot be created, the errors of all classes are reported at once.
+   */
+  public Map<Class<?>, Instantiator<?>> createInstantiators(
+      Collection<? extends Class<?>> classes, Executor executor) {
+    Errors errors = new Errors();
+    Map<Class<?>, Instantiator<?>> instantiators =
+        createInstantiators(errors, classes, executor);
+    errors.throwIfHasErrors();
+    return instantiators;
+  }
+
+  /**
+   * Creates instantiators for {@code classes} concurrently on
+   * {@code executor} and aggregates errors. Only the classes for which an
+   * instantiator could be created are present in the returned map.
+   */
+  public Map<Class<?>, Instantiator<?>> createInstantiators(
+      Errors errors, Collection<? extends Class<?>> classes, Executor executor) {
+    Set<Class<?>> distinct = ImmutableSet.copyOf(classes);
+    List<Build> builds = newArrayListWithCapacity(distinct.size());
+    for (Class<?> klass : distinct) {
+      Build build = new Build(klass);
+      builds.add(build);
+      try {
+        executor.execute(build);
+      } catch (RejectedExecutionException e) {
+        build.run();
+      }
+    }
+    ImmutableMap.Builder<Class<?>, Instantiator<?>> instantiators = ImmutableMap.builder();
+    for (Build build : builds) {
+      for (Instantiator<?> instantiator : build.await()) {
+        instantiators.put(build.klass, instantiator);
+      }
+      errors.addErrors(build.errors);
+    }
+    return instantiators.build();
+  }
+
+  /**
+   * Creates a converter for {@code klass}.
+   */
+  public <T> Converter<T> createConverter(Class<T> klass) {
+    return createConverterForType(klass);
+  }
+
+  /**
+   * Creates a converter for {@code typeLiteral}.
+   */
+  public <T> Converter<T> createConverter(TypeLiteral<T> typeLiteral) {
+    return createConverterForType(typeLiteral.getType());
+  }
+
+  private <T> InstantiatorImplFactory<T> factoryFor(Errors errors, Class<T> klass) {
+    return InstantiatorImplFactory.createFactory(errors, klass, binder);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> Converter<T> createConverterForType(Type type) {
+    Errors errors = new Errors();
+    Option<? extends Converter<?>> converter =
+        factoryFor(errors, null).createConverter(type);
+    errors.throwIfHasErrors();
+    return (Converter<T>) converter.getOrThrow();
+  }
+
+  /**
+   * The creation of one instantiator. Each creation aggregates its own errors,
+   * including what it unexpectedly threw, which are merged, in order, once
+   * all creations are done.
+   */
+  private class Build extends FutureTask<Option<? extends Instantiator<?>>> {
+
+    private final Class<?> klass;
+    private final Errors errors;
+
+    Build(Class<?> klass) {
+      this(klass, new Errors());
+    }
+
+    private Build(final Class<?> klass, final Errors errors) {
+      super(new Callable<Option<? extends Instantiator<?>>>() {
+        @Override
+        public Option<? extends Instantiator<?>> call() {
+          try {
+            return factoryFor(errors, klass).create();
+          } catch (RuntimeException e) {
+            unableToCreateInstantiator(errors, klass, e);
+            return Option.none();
+          }
+        }
+      });
+      this.klass = klass;
+      this.errors = errors;
+    }
+
+    Option<? extends Instantiator<?>> await() {
+      try {
+        return get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+
+  }
+
+}
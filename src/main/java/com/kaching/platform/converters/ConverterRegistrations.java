@@ -0,0 +1,259 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.inject.TypeLiteral;
+
+/**
+ * An immutable snapshot of the registrations of a {@link ConverterBinderImpl},
+ * indexed for lookup. Registrations whose type is fully known are found by
+ * hashing; generic ones are grouped by raw class so that only candidates
+ * sharing the target's raw class are checked using
+ * {@link TypesUtil#isInstance(Type, Type)}. Functions registered with
+ * handled types are indexed by those types, and only offered target types
+ * whose raw class is a subtype of one of them. Converters resolved for a type
+ * are memoized.
+ */
+class ConverterRegistrations {
+
+  private final TypeRelations relations = new TypeRelations();
+  private final TypeIndex<Converter<?>> instances;
+  private final TypeIndex<Class<? extends Converter<?>>> bindings;
+  private final List<Function<Type, Option<? extends Converter<?>>>> functions;
+  private final BitSet unrestrictedFunctions = new BitSet();
+  private final List<Function<Type, Option<? extends Converter<?>>>> unrestricted;
+  private final ImmutableListMultimap<Class<?>, Integer> functionsByHandledType;
+  private final ConcurrentMap<Class<?>, List<Function<Type, Option<? extends Converter<?>>>>>
+      functionsByRawType =
+          new ConcurrentHashMap<Class<?>, List<Function<Type, Option<? extends Converter<?>>>>>();
+  private final ConcurrentMap<TypeLiteral<?>, Converter<?>> resolved =
+      new ConcurrentHashMap<TypeLiteral<?>, Converter<?>>();
+
+  ConverterRegistrations(
+      Map<TypeLiteral<?>, Converter<?>> instances,
+      Map<TypeLiteral<?>, Class<? extends Converter<?>>> bindings,
+      List<Function<Type, Option<? extends Converter<?>>>> functions,
+      List<Set<Class<?>>> handledTypes) {
+    checkArgument(functions.size() == handledTypes.size());
+    this.instances = new TypeIndex<Converter<?>>(relations, instances);
+    this.bindings = new TypeIndex<Class<? extends Converter<?>>>(relations, bindings);
+    this.functions = ImmutableList.copyOf(functions);
+    ImmutableListMultimap.Builder<Class<?>, Integer> functionsByHandledType =
+        ImmutableListMultimap.builder();
+    for (int i = 0; i < handledTypes.size(); i++) {
+      if (handledTypes.get(i).isEmpty()) {
+        unrestrictedFunctions.set(i);
+      }
+      for (Class<?> handledType : handledTypes.get(i)) {
+        functionsByHandledType.put(handledType, i);
+      }
+    }
+    this.functionsByHandledType = functionsByHandledType.build();
+    this.unrestricted = select(unrestrictedFunctions);
+  }
+
+  /**
+   * Returns the instances registered for a type scheme {@code targetType} is
+   * an instance of, exact registrations first.
+   */
+  List<Converter<?>> getInstances(Type targetType) {
+    return instances.get(targetType);
+  }
+
+  /**
+   * Returns the converter classes registered for a type scheme
+   * {@code targetType} is an instance of, exact registrations first.
+   */
+  List<Class<? extends Converter<?>>> getBindings(Type targetType) {
+    return bindings.get(targetType);
+  }
+
+  /**
+   * Returns the functions which may create a converter for
+   * {@code targetType}, in registration order.
+   */
+  List<Function<Type, Option<? extends Converter<?>>>> getFunctions(Type targetType) {
+    if (functionsByHandledType.isEmpty()) {
+      return functions;
+    }
+    Class<?> rawType = targetType instanceof Class<?> ? (Class<?>) targetType :
+        targetType instanceof ParameterizedType ?
+            (Class<?>) ((ParameterizedType) targetType).getRawType() :
+        null;
+    if (rawType == null) {
+      return unrestricted;
+    }
+    List<Function<Type, Option<? extends Converter<?>>>> candidates =
+        functionsByRawType.get(rawType);
+    if (candidates == null) {
+      BitSet selected = (BitSet) unrestrictedFunctions.clone();
+      selectHandling(selected, rawType, new HashSet<Class<?>>());
+      candidates = select(selected);
+      functionsByRawType.putIfAbsent(rawType, candidates);
+    }
+    return candidates;
+  }
+
+  private void selectHandling(BitSet selected, Class<?> type, Set<Class<?>> visited) {
+    if (type == null || !visited.add(type)) {
+      return;
+    }
+    for (int i : functionsByHandledType.get(type)) {
+      selected.set(i);
+    }
+    selectHandling(selected, type.getSuperclass(), visited);
+    for (Class<?> implemented : type.getInterfaces()) {
+      selectHandling(selected, implemented, visited);
+    }
+  }
+
+  private List<Function<Type, Option<? extends Converter<?>>>> select(BitSet selected) {
+    ImmutableList.Builder<Function<Type, Option<? extends Converter<?>>>> builder =
+        ImmutableList.builder();
+    for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+      builder.add(functions.get(i));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Memoized {@link TypesUtil#isInstance(Type, Type)}.
+   */
+  boolean isInstance(Type a, Type b) {
+    return relations.isInstance(a, b);
+  }
+
+  /**
+   * Returns the converter previously resolved for {@code targetType}, or
+   * {@code null}.
+   */
+  Converter<?> getResolved(Type targetType) {
+    return resolved.get(TypeLiteral.get(targetType));
+  }
+
+  /**
+   * Memoizes the converter resolved for {@code targetType}. If another
+   * converter was resolved concurrently, it is kept and returned.
+   */
+  Converter<?> putResolved(Type targetType, Converter<?> converter) {
+    Converter<?> previous = resolved.putIfAbsent(TypeLiteral.get(targetType), converter);
+    return previous == null ? converter : previous;
+  }
+
+  /**
+   * Whether {@code type} only matches itself, i.e. is free of type variables
+   * and wildcards, in which case {@link TypesUtil#isInstance(Type, Type)}
+   * amounts to equality.
+   */
+  static boolean isExact(Type type) {
+    if (type instanceof Class<?>) {
+      return true;
+    } else if (type instanceof GenericArrayType) {
+      return isExact(((GenericArrayType) type).getGenericComponentType());
+    } else if (type instanceof ParameterizedType) {
+      ParameterizedType parameterizedType = (ParameterizedType) type;
+      Type ownerType = parameterizedType.getOwnerType();
+      if (ownerType != null && !(ownerType instanceof Class<?>)) {
+        return false;
+      }
+      for (Type argument : parameterizedType.getActualTypeArguments()) {
+        if (!isExact(argument)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  static class TypeIndex<V> {
+
+    private final TypeRelations relations;
+    private final ImmutableMap<TypeLiteral<?>, V> exact;
+    private final ImmutableListMultimap<Class<?>, Entry<Type, V>> byRawType;
+    private final ImmutableList<Entry<Type, V>> others;
+
+    TypeIndex(TypeRelations relations, Map<TypeLiteral<?>, ? extends V> registrations) {
+      this.relations = relations;
+      Map<TypeLiteral<?>, V> exact = newHashMap();
+      ImmutableListMultimap.Builder<Class<?>, Entry<Type, V>> byRawType =
+          ImmutableListMultimap.builder();
+      List<Entry<Type, V>> others = newArrayList();
+      for (Entry<TypeLiteral<?>, ? extends V> entry : registrations.entrySet()) {
+        Type type = entry.getKey().getType();
+        V value = entry.getValue();
+        if (isExact(type)) {
+          exact.put(entry.getKey(), value);
+        } else if (type instanceof ParameterizedType) {
+          byRawType.put(
+              (Class<?>) ((ParameterizedType) type).getRawType(),
+              Maps.<Type, V> immutableEntry(type, value));
+        } else {
+          others.add(Maps.<Type, V> immutableEntry(type, value));
+        }
+      }
+      this.exact = ImmutableMap.copyOf(exact);
+      this.byRawType = byRawType.build();
+      this.others = ImmutableList.copyOf(others);
+    }
+
+    List<V> get(Type targetType) {
+      V exactMatch = exact.isEmpty() ? null : exact.get(TypeLiteral.get(targetType));
+      List<Entry<Type, V>> sameRawType = targetType instanceof ParameterizedType ?
+          byRawType.get((Class<?>) ((ParameterizedType) targetType).getRawType()) :
+          Collections.<Entry<Type, V>> emptyList();
+      if (sameRawType.isEmpty() && others.isEmpty()) {
+        return exactMatch == null ?
+            Collections.<V> emptyList() : Collections.singletonList(exactMatch);
+      }
+      List<V> matches = newArrayList();
+      if (exactMatch != null) {
+        matches.add(exactMatch);
+      }
+      addMatches(matches, sameRawType, targetType);
+      addMatches(matches, others, targetType);
+      return matches;
+    }
+
+    private void addMatches(
+        List<V> matches, List<Entry<Type, V>> candidates, Type targetType) {
+      for (Entry<Type, V> candidate : candidates) {
+        if (relations.isInstance(candidate.getKey(), targetType)) {
+          matches.add(candidate.getValue());
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+/**
+ * Describes how destantiated values are laid out when appended one after the
+ * other: the separator written between values and the text written for
+ * {@code null} values. Values are not escaped, and therefore should not
+ * contain the separator.
+ */
+public final class Delimiting {
+
+  private final String separator;
+  private final String nullValue;
+
+  private Delimiting(String separator, String nullValue) {
+    this.separator = checkNotNull(separator);
+    this.nullValue = checkNotNull(nullValue);
+  }
+
+  /**
+   * Values separated by {@code separator}, with {@code null} values written
+   * as nothing.
+   */
+  public static Delimiting by(String separator) {
+    return new Delimiting(separator, "");
+  }
+
+  /**
+   * Values separated by {@code separator}, with {@code null} values written
+   * as nothing.
+   */
+  public static Delimiting by(char separator) {
+    return by(String.valueOf(separator));
+  }
+
+  /**
+   * The same delimiting, writing {@code null} values as {@code nullValue}.
+   */
+  public Delimiting withNullAs(String nullValue) {
+    return new Delimiting(separator, nullValue);
+  }
+
+  public String getSeparator() {
+    return separator;
+  }
+
+  public String getNullValue() {
+    return nullValue;
+  }
+
+  void appendSeparator(Appendable out) throws IOException {
+    out.append(separator);
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  void append(Converter converter, Object value, Appendable out) throws IOException {
+    if (value == null) {
+      out.append(nullValue);
+    } else if (converter instanceof AppendingConverter) {
+      ((AppendingConverter) converter).appendTo(value, out);
+    } else {
+      out.append(converter.toString(value));
+    }
+  }
+
+}
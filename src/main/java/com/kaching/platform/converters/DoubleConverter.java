@@ -0,0 +1,45 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import java.io.IOException;
+
+/**
+ * A converter for {@code double} values which does not box them. Instantiators
+ * using {@link InstantiationStrategy#BYTECODE} call these methods for
+ * {@code double} parameters and fields.
+ */
+public interface DoubleConverter extends Converter<Double> {
+
+  /**
+   * Converts a value to a string representation.
+   * @param value the value to convert.
+   * @return the string representation of the value.
+   */
+  String toString(double value);
+
+  /**
+   * Appends the string representation of a value. This must append the same
+   * characters as {@code out.append(toString(value))}.
+   * @param value the value to convert.
+   * @param out where to append the string representation of the value.
+   */
+  void appendTo(double value, Appendable out) throws IOException;
+
+  /**
+   * Converts a textual representation into a value.
+   * Throws an {@link IllegalArgumentException} if the value cannot be converted.
+   * @param representation the textual representation to convert.
+   * @return the value represented by the textual representation.
+   */
+  double fromStringAsDouble(String representation);
+
+}
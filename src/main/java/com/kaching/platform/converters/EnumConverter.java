@@ -12,15 +12,50 @@ package com.kaching.platform.converters;
 
 import static com.google.common.collect.Maps.newHashMapWithExpectedSize;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
  * A converter for enumerations.
  */
-public class EnumConverter<E extends Enum<E>> extends FiniteConverter<E> {
+public class EnumConverter<E extends Enum<E>> extends FiniteConverter<E>
+    implements CharSequenceConverter<E>, AppendingConverter<E> {
+
+  private final E[] values;
+  private final String[] names;
 
   public EnumConverter(Class<E> clazz) {
     super(enumMap(clazz));
+    this.values = clazz.getEnumConstants();
+    this.names = new String[values.length];
+    for (int i = 0; i < values.length; i++) {
+      names[i] = normalizeName(values[i].name());
+    }
+  }
+
+  /**
+   * Finds the value by comparing names character by character, which is
+   * faster than hashing for the small enumerations seen in practice.
+   */
+  @Override
+  public E fromCharSequence(CharSequence representation, int start, int end) {
+    if (representation == null) {
+      return null;
+    }
+    next_name: for (int i = 0; i < names.length; i++) {
+      String name = names[i];
+      if (name.length() != end - start) {
+        continue;
+      }
+      for (int j = 0; j < name.length(); j++) {
+        if (Character.toUpperCase(representation.charAt(start + j)) != name.charAt(j)) {
+          continue next_name;
+        }
+      }
+      return values[i];
+    }
+    // locale specific upper casing may change lengths, leave it to fromString
+    return fromString(representation.subSequence(start, end).toString());
   }
 
   @Override
@@ -28,6 +63,22 @@ public class EnumConverter<E extends Enum<E>> extends FiniteConverter<E> {
     return super.fromNonNullableString(normalizeName(representation));
   }
 
+  @Override
+  public void appendTo(E value, Appendable out) throws IOException {
+    out.append(toString(value));
+  }
+
+  /**
+   * Gets the length of the longest representation.
+   */
+  int maxLength() {
+    int maxLength = 0;
+    for (String name : names) {
+      maxLength = Math.max(maxLength, name.length());
+    }
+    return maxLength;
+  }
+
   private static String normalizeName(String name) {
     return name.toUpperCase();
   }
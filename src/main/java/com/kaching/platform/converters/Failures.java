@@ -0,0 +1,52 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static java.util.Collections.unmodifiableSortedMap;
+
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Failures of bulk operations, indexed by the position of the record which
+ * could not be processed. Failures can be collected concurrently.
+ */
+public final class Failures {
+
+  private final ConcurrentSkipListMap<Integer, RuntimeException> failures =
+      new ConcurrentSkipListMap<Integer, RuntimeException>();
+
+  void add(int index, RuntimeException e) {
+    failures.put(index, e);
+  }
+
+  public boolean isEmpty() {
+    return failures.isEmpty();
+  }
+
+  public int size() {
+    return failures.size();
+  }
+
+  /**
+   * Gets the failures by position of the record which could not be
+   * processed.
+   */
+  public SortedMap<Integer, RuntimeException> asMap() {
+    return unmodifiableSortedMap(failures);
+  }
+
+  @Override
+  public String toString() {
+    return failures.toString();
+  }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+import com.kaching.platform.converters.ConstructorAnalysis.AnalysisResult;
+
+/**
+ * Stores which replace a constructor, for constructors which the analysis
+ * proves only store each parameter, as is, into a field of the instance and
+ * whose class directly extends {@code Object}. Instances can then be
+ * allocated without calling the constructor, and parameters stored straight
+ * into their fields, with no observable difference.
+ *
+ * <p>Stores are emitted by {@link InstantiatorGenerator}, using
+ * {@code sun.misc.Unsafe} and the offsets of the fields, followed by a store
+ * fence which, like the end of a constructor, orders them before the
+ * instance is published.</p>
+ */
+class FieldStores {
+
+  private final long[] offsets;
+
+  private FieldStores(long[] offsets) {
+    this.offsets = offsets;
+  }
+
+  /**
+   * Creates the stores replacing {@code constructor}, whose analysis is
+   * {@code analysis} and which assigns parameter {@code i} to
+   * {@code fields[i]}, or returns {@link Option#none()} if the constructor
+   * cannot be replaced.
+   */
+  static Option<FieldStores> create(
+      Constructor<?> constructor, Field[] fields, AnalysisResult analysis) {
+    Class<?> klass = constructor.getDeclaringClass();
+    Class<?>[] parameterTypes = constructor.getParameterTypes();
+    if (!UnsafeHolder.isAvailable() ||
+        !analysis.storesOnly ||
+        !Object.class.equals(klass.getSuperclass()) ||
+        (fields == null && parameterTypes.length != 0)) {
+      return Option.none();
+    }
+    long[] offsets = new long[parameterTypes.length];
+    int stores = 0;
+    for (int i = 0; i < parameterTypes.length; i++) {
+      Field field = fields[i];
+      if (field == null) {
+        offsets[i] = -1;
+        continue;
+      }
+      // a byte can be stored into an int field without conversion
+      if (!field.getDeclaringClass().equals(klass) ||
+          Modifier.isStatic(field.getModifiers()) ||
+          (parameterTypes[i].isPrimitive() && !parameterTypes[i].equals(field.getType()))) {
+        return Option.none();
+      }
+      offsets[i] = UnsafeHolder.objectFieldOffset(field);
+      stores++;
+    }
+    // every assignment must be accounted for, e.g. a parameter assigned to
+    // two fields is not
+    if (stores != analysis.assignments.size()) {
+      return Option.none();
+    }
+    return Option.some(new FieldStores(offsets));
+  }
+
+  /**
+   * Returns whether parameter {@code i} is stored.
+   */
+  boolean isStored(int i) {
+    return offsets[i] != -1;
+  }
+
+  /**
+   * Returns the offset of the field parameter {@code i} is stored into.
+   */
+  long offsetOf(int i) {
+    return offsets[i];
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(offsets);
+  }
+
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Directory of class files generated by {@link InstantiatorGenerator}, kept
+ * across restarts of the virtual machine. Class files are named after the
+ * generated class, whose name ends with a key covering the class file of the
+ * instantiated class, the shape of the generated code and the version of the
+ * generator. A class file is therefore only found while it is up to date.
+ *
+ * <p>Failing to read or write the directory is not an error: classes are
+ * then generated as if they were not cached.</p>
+ */
+class GeneratedClassCache {
+
+  private static final Logger log = Logger.getLogger(GeneratedClassCache.class.getName());
+
+  /* Hash of the classes generating code, so that classes generated by another
+   * version of the library are not used.
+   */
+  private static final Supplier<String> GENERATOR_VERSION = Suppliers.memoize(
+      new Supplier<String>() {
+        @Override
+        public String get() {
+          Hasher hasher = Hashing.murmur3_128().newHasher();
+          try {
+            hasher.putBytes(ConstructorAnalysis.getClassBytes(InstantiatorGenerator.class));
+            hasher.putBytes(ConstructorAnalysis.getClassBytes(GeneratedInstantiator.class));
+            for (Class<?> nested : InstantiatorGenerator.class.getDeclaredClasses()) {
+              hasher.putBytes(ConstructorAnalysis.getClassBytes(nested));
+            }
+          } catch (IOException e) {
+            throw new IllegalStateException("should be able to access the generator", e);
+          }
+          return hasher.hash().toString();
+        }
+      });
+
+  private final File directory;
+
+  GeneratedClassCache(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the key of the class generated for {@code klass} with
+   * {@code shape}, which describes everything the generated code depends on
+   * besides the class file of {@code klass}.
+   */
+  static String key(Class<?> klass, String shape) throws IOException {
+    return Hashing.murmur3_128().newHasher()
+        .putBytes(ConstructorAnalysis.getClassBytes(klass))
+        .putString(GENERATOR_VERSION.get())
+        .putBytes(shape.getBytes(UTF_8))
+        .hash()
+        .toString();
+  }
+
+  /**
+   * Returns the class file of the generated class named {@code internalName}
+   * or {@code null} if it is not cached.
+   */
+  byte[] get(String internalName) {
+    File file = fileOf(internalName);
+    if (!file.isFile()) {
+      return null;
+    }
+    try {
+      return Files.toByteArray(file);
+    } catch (IOException e) {
+      log.fine(format("unable to read %s: %s", file, e));
+      return null;
+    }
+  }
+
+  /**
+   * Keeps the class file of the generated class named {@code internalName}.
+   * The class file is written aside and then renamed, so that concurrent
+   * readers never see a partially written one.
+   */
+  void put(String internalName, byte[] bytes) {
+    File file = fileOf(internalName);
+    File temporary = null;
+    try {
+      directory.mkdirs();
+      temporary = File.createTempFile(file.getName(), ".tmp", directory);
+      Files.write(bytes, temporary);
+      if (!temporary.renameTo(file)) {
+        temporary.delete();
+      }
+    } catch (IOException e) {
+      log.fine(format("unable to write %s: %s", file, e));
+      if (temporary != null) {
+        temporary.delete();
+      }
+    }
+  }
+
+  /**
+   * Removes the class file of the generated class named
+   * {@code internalName}, for instance because it cannot be defined.
+   */
+  void remove(String internalName) {
+    fileOf(internalName).delete();
+  }
+
+  private File fileOf(String internalName) {
+    return new File(directory, internalName.replace('/', '.') + ".class");
+  }
+
+}
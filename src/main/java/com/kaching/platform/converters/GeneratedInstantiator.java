@@ -0,0 +1,154 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Iterator;
+
+/**
+ * Base class of generated instantiators, whether generated at runtime by
+ * {@link InstantiatorGenerator} or at compile time by
+ * {@link InstantiatorProcessor}. It is public only so that classes generated
+ * in the package of the instantiated class can extend it.
+ */
+public abstract class GeneratedInstantiator<T> {
+
+  /**
+   * Suffix of the name of instantiators generated at compile time, e.g.
+   * {@code Outer$Inner$$Instantiator} for {@code Outer.Inner}.
+   */
+  static final String SUFFIX = "$$Instantiator";
+
+  /**
+   * Name of the static field of instantiators generated at compile time
+   * holding the names of the parameters of the constructor.
+   */
+  static final String PARAMETER_NAMES = "PARAMETER_NAMES";
+
+  /**
+   * Name of the static field of instantiators generated at compile time
+   * holding, for each parameter, the name of the field it is assigned to, or
+   * {@code null}.
+   */
+  static final String FIELD_NAMES = "FIELD_NAMES";
+
+  protected GeneratedInstantiator() {
+  }
+
+  /**
+   * Creates a fresh instance of T using the provided values.
+   */
+  public abstract T newInstance(Iterator<String> values);
+
+  /**
+   * Creates a fresh instance of T using the provided values, which are
+   * only read.
+   */
+  public abstract T newInstance(String[] values);
+
+  /**
+   * Creates a fresh instance of T using values which are slices of
+   * {@code input}. Value {@code i} starts at {@code offsets[i]} and has
+   * length {@code lengths[i]}, or is {@code null} if its offset is negative.
+   */
+  public abstract T newInstance(CharSequence input, int[] offsets, int[] lengths);
+
+  /**
+   * Creates a fresh instance of T from row {@code row} of {@code columns}.
+   * Column {@code i} is an array of the type of parameter {@code i}, such as
+   * a {@code long[]}, or an {@code Object[]} of converted values if that type
+   * is not primitive.
+   */
+  public abstract T newInstance(Object[] columns, int row);
+
+  /**
+   * Destantiates an instance.
+   */
+  public abstract String[] fromInstance(T instance);
+
+  /**
+   * Destantiates an instance into {@code out}.
+   */
+  public abstract void fromInstance(T instance, Appendable out, Delimiting delimiting)
+      throws IOException;
+
+  protected static void append(Converter<?> converter, Object value,
+      Appendable out, Delimiting delimiting) throws IOException {
+    delimiting.append(converter, value, out);
+  }
+
+  protected static void appendSeparator(Appendable out, Delimiting delimiting)
+      throws IOException {
+    delimiting.appendSeparator(out);
+  }
+
+  protected static Object convert(Converter<?> converter, String value) {
+    Object converted = converter.fromString(value);
+    if (converted == null) {
+      throw producedNullValue(converter);
+    }
+    return converted;
+  }
+
+  protected static Object convert(
+      Converter<?> converter, CharSequence input, int start, int end) {
+    if (!(converter instanceof CharSequenceConverter)) {
+      return convert(converter, input.subSequence(start, end).toString());
+    }
+    Object converted =
+        ((CharSequenceConverter<?>) converter).fromCharSequence(input, start, end);
+    if (converted == null) {
+      throw producedNullValue(converter);
+    }
+    return converted;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected static String toString(Converter<?> converter, Object value) {
+    return value == null ? null : ((Converter<Object>) converter).toString(value);
+  }
+
+  protected static Object get(Field field, Object instance) {
+    try {
+      return field.get(instance);
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Wraps what the constructor threw as reflective instantiation does, in an
+   * {@link InvocationTargetException} within a {@link RuntimeException}.
+   */
+  protected static RuntimeException constructorFailure(Throwable cause) {
+    return new RuntimeException(new InvocationTargetException(cause));
+  }
+
+  protected static IllegalStateException producedNullValue(Converter<?> converter) {
+    return new IllegalStateException(format(
+        "converter %s produced a null value", converter.getClass()));
+  }
+
+  protected static IllegalArgumentException notOptional(int parameterNum) {
+    return new IllegalArgumentException(format(
+        "parameter %s is not optional but null was provided",
+        parameterNum));
+  }
+
+  protected static IllegalArgumentException wrongNumberOfArguments() {
+    return new IllegalArgumentException("wrong number of arguments");
+  }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+/**
+ * Strategies used by instantiators to create instances.
+ */
+public enum InstantiationStrategy {
+
+  /**
+   * Calls the constructor reflectively. This is the default.
+   */
+  REFLECTION,
+
+  /**
+   * Generates, at runtime, code calling the constructor directly. Falls back
+   * to {@link #REFLECTION} when code cannot be generated for a class, for
+   * instance when its constructor is private.
+   */
+  BYTECODE,
+
+  /**
+   * Calls the constructor reflectively at first and, once an instantiator
+   * has been invoked a number of times, generates code as with
+   * {@link #BYTECODE}. Instantiators are {@link TieredInstantiator}s.
+   *
+   * @see ConverterBinder#generateAfter(int)
+   */
+  TIERED,
+
+  /**
+   * Generates code as with {@link #BYTECODE} which, when analysing the
+   * constructor proves it only assigns its parameters to fields, allocates
+   * instances without calling it and stores parameters straight into these
+   * fields; such constructors may be private. Otherwise, for instance when
+   * the constructor checks or transforms its parameters or when the class has
+   * a superclass other than {@code Object}, calls the constructor as with
+   * {@link #BYTECODE}.
+   */
+  FIELD_STORES,
+
+}
@@ -10,9 +10,13 @@
  */
 package com.kaching.platform.converters;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Object used to instantiate and destantiate objects.
@@ -29,6 +33,47 @@ public interface Instantiator<T> {
    */
   T newInstance(Iterable<String> values);
 
+  /**
+   * Lazily creates fresh instances of T, one per record of values. Failing to
+   * instantiate a record throws when it is reached.
+   */
+  Iterator<T> newInstances(Iterator<? extends Iterable<String>> records);
+
+  /**
+   * Lazily creates fresh instances of T, one per record of values. Records
+   * which cannot be instantiated are skipped and added to {@code failures},
+   * indexed by their position in {@code records}.
+   */
+  Iterator<T> newInstances(
+      Iterator<? extends Iterable<String>> records, Failures failures);
+
+  /**
+   * Creates fresh instances of T from the next records, filling
+   * {@code instances} from its start until it is full or there are no more
+   * records. Records which cannot be instantiated leave a {@code null} and are
+   * added to {@code failures}, indexed by their position in
+   * {@code instances}.
+   * @return the number of records consumed
+   */
+  int newInstances(
+      Iterator<? extends Iterable<String>> records, T[] instances, Failures failures);
+
+  /**
+   * Creates fresh instances of T, one per record of values, splitting the
+   * work across the workers of {@code pool}. Instances are in the order of
+   * their records. Records which cannot be instantiated leave a {@code null}
+   * and are added to {@code failures}, indexed by position.
+   */
+  List<T> newInstancesParallel(
+      List<? extends Iterable<String>> records, ForkJoinPool pool, Failures failures);
+
+  /**
+   * Creates fresh instances of T, one per row of {@code columns}. Rows which
+   * cannot be instantiated leave a {@code null} and are added to
+   * {@code failures}, indexed by row.
+   */
+  T[] newInstances(Columns columns, Failures failures);
+
   /**
    * Creates a fresh instance of T using the provided names values. A value name
    * is the name which is used as parameter name in the constructor used for
@@ -39,11 +84,69 @@ public interface Instantiator<T> {
    */
   T newInstance(Map<String, String> namedValues);
 
+  /**
+   * Creates an empty row to be filled with values and passed to
+   * {@link #newInstance(Row)}.
+   */
+  Row newRow();
+
+  /**
+   * Creates a fresh instance of T using the values of a row created by this
+   * instantiator. Neither hashing nor intermediate collections are involved.
+   */
+  T newInstance(Row row);
+
+  /**
+   * Creates a fresh instance of T using values which are slices of
+   * {@code input}. Value {@code i} starts at {@code offsets[i]} and has length
+   * {@code lengths[i]}, or is {@code null} if its offset is negative. Values
+   * are converted straight from the input by converters implementing
+   * {@link CharSequenceConverter}.
+   */
+  T newInstance(CharSequence input, int[] offsets, int[] lengths);
+
   /**
    * Destantiates an instance.
    */
   List<String> fromInstance(T instance);
 
+  /**
+   * Destantiates instances, splitting the work across the workers of
+   * {@code pool}. Values are in the order of their instances. Instances which
+   * cannot be destantiated leave a {@code null} and are added to
+   * {@code failures}, indexed by position.
+   */
+  List<List<String>> fromInstancesParallel(
+      List<? extends T> instances, ForkJoinPool pool, Failures failures);
+
+  /**
+   * Destantiates instances into columns, one per parameter. Parameters
+   * assigned to fields of a primitive type produce arrays of that type, the
+   * others a {@code String[]}.
+   */
+  Columns fromInstances(Collection<? extends T> instances);
+
+  /**
+   * Destantiates an instance by appending its values, delimited as described
+   * by {@code delimiting}, to {@code out}. Values are written straight into
+   * {@code out} by converters implementing {@link AppendingConverter}.
+   */
+  void fromInstance(T instance, Appendable out, Delimiting delimiting) throws IOException;
+
+  /**
+   * Destantiates an instance by appending its values, delimited as described
+   * by {@code delimiting}, to {@code out}.
+   * @return {@code out}
+   */
+  StringBuilder fromInstance(T instance, StringBuilder out, Delimiting delimiting);
+
+  /**
+   * Estimates the number of characters used to destantiate an instance with
+   * {@link #fromInstance(Object, Appendable, Delimiting)}, for instance to
+   * presize buffers.
+   */
+  int estimateLength(Delimiting delimiting);
+
   /**
    * Gets the underlying constructor used to instantiate and destantiate.
    */
@@ -12,6 +12,7 @@ package com.kaching.platform.converters;
 
 import static java.lang.String.format;
 
+import java.io.File;
 import java.lang.reflect.Type;
 
 /**
@@ -102,6 +103,49 @@ class InstantiatorErrors {
         type);
   }
 
+  static Errors conflictingInstantiationStrategies(
+      Errors errors, InstantiationStrategy strategy1, InstantiationStrategy strategy2) {
+    return errors.addMessage(
+        "conflicting instantiation strategies %s and %s",
+        strategy1, strategy2);
+  }
+
+  static Errors conflictingInjectors(Errors errors) {
+    return errors.addMessage(
+        "conflicting injectors to create converters");
+  }
+
+  static Errors conflictingExecutors(Errors errors) {
+    return errors.addMessage(
+        "conflicting executors to analyse constructors");
+  }
+
+  static Errors conflictingCacheDirectories(Errors errors, File first, File second) {
+    return errors.addMessage(
+        "conflicting directories to cache generated classes: %s and %s",
+        first, second);
+  }
+
+  static Errors conflictingGenerationThresholds(Errors errors, int first, int second) {
+    return errors.addMessage(
+        "conflicting numbers of invocations after which to generate code: %s and %s",
+        first, second);
+  }
+
+  static Errors unableToInject(Errors errors, Class<?> klass, RuntimeException e) {
+    return errors.addMessage(
+        "unable to create %s using the injector due to %s",
+        klass,
+        e.getMessage());
+  }
+
+  static Errors unableToCreateInstantiator(Errors errors, Class<?> klass, RuntimeException e) {
+    return errors.addMessage(
+        "unable to create an instantiator for %s due to %s",
+        klass,
+        e);
+  }
+
   static Errors incorrectDefaultValue(Errors errors, String value, RuntimeException e) {
     return errors.addMessage(
         "%s: For default value \"%s\"",
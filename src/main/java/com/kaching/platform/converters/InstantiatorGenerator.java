@@ -0,0 +1,1077 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static java.lang.String.format;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.AASTORE;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ANEWARRAY;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ARRAYLENGTH;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DCONST_0;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.FCONST_0;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFGE;
+import static org.objectweb.asm.Opcodes.IFNONNULL;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.IF_ICMPGE;
+import static org.objectweb.asm.Opcodes.IF_ICMPLE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.LCONST_0;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.PUTSTATIC;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.SWAP;
+import static org.objectweb.asm.Opcodes.V1_5;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.ProtectionDomain;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Primitives;
+
+/**
+ * Generates instantiators specialized for a constructor. The generated code
+ * calls the constructor directly rather than reflectively, handles each
+ * parameter's optionality inline and calls each converter from its own call
+ * site. Destantiation reads fields directly, except for fields which are not
+ * accessible from the generated class, such as private fields, which are read
+ * through their {@link Field}'s typed getters. Primitive parameters and fields
+ * whose converter is specialized for their type, such as an
+ * {@link IntConverter} for an {@code int}, are converted without boxing.
+ *
+ * <p>Generated classes are defined in the package, and by the class loader, of
+ * the instantiated class. Generation is therefore not possible for private
+ * constructors, for parameter types which are not accessible from that
+ * package, or when the class loader cannot be extended. In these cases,
+ * {@link #generate} returns {@link Option#none()} and callers should fall back
+ * to reflection. Since defined classes are never unloaded while their class
+ * loader lives, instantiators generating the same code share their class.</p>
+ */
+class InstantiatorGenerator {
+
+  private static final Logger log = Logger.getLogger(InstantiatorGenerator.class.getName());
+
+  /* Classes defined so far for each instantiated class, by shape, so that
+   * equivalent instantiators share their generated class.
+   */
+  private static final ClassValue<ConcurrentMap<String, Class<?>>> defined =
+      new ClassValue<ConcurrentMap<String, Class<?>>>() {
+        @Override
+        protected ConcurrentMap<String, Class<?>> computeValue(Class<?> klass) {
+          return new ConcurrentHashMap<String, Class<?>>();
+        }
+      };
+
+  private static final String BASE = Type.getInternalName(GeneratedInstantiator.class);
+  private static final String CONVERTER = Type.getInternalName(Converter.class);
+  private static final String OPTION = Type.getInternalName(Option.class);
+  private static final String ITERATOR = Type.getInternalName(Iterator.class);
+  private static final String CHAR_SEQUENCE_CONVERTER =
+      Type.getInternalName(CharSequenceConverter.class);
+  private static final String CHAR_SEQUENCE = Type.getInternalName(CharSequence.class);
+  private static final String CONVERTER_DESC = Type.getDescriptor(Converter.class);
+  private static final String CHAR_SEQUENCE_DESC = Type.getDescriptor(CharSequence.class);
+  private static final String STRING_DESC = Type.getDescriptor(String.class);
+  private static final String OBJECT_DESC = Type.getDescriptor(Object.class);
+  private static final String FIELD_DESC = Type.getDescriptor(Field.class);
+  private static final String UNSAFE = "sun/misc/Unsafe";
+  private static final String UNSAFE_DESC = "L" + UNSAFE + ";";
+
+  private static final Map<Class<?>, Class<?>> PRIMITIVE_CONVERTERS =
+      ImmutableMap.<Class<?>, Class<?>> builder()
+      .put(Boolean.TYPE, BooleanConverter.class)
+      .put(Byte.TYPE, ByteConverter.class)
+      .put(Character.TYPE, CharConverter.class)
+      .put(Double.TYPE, DoubleConverter.class)
+      .put(Float.TYPE, FloatConverter.class)
+      .put(Integer.TYPE, IntConverter.class)
+      .put(Long.TYPE, LongConverter.class)
+      .put(Short.TYPE, ShortConverter.class)
+      .build();
+
+  private InstantiatorGenerator() {}
+
+  /**
+   * Generates an instantiator calling {@code constructor} or returns
+   * {@link Option#none()} if code cannot be generated for it.
+   */
+  static <T> Option<GeneratedInstantiator<T>> generate(
+      Constructor<T> constructor,
+      Converter<?>[] converters,
+      Field[] fields,
+      BitSet optionality,
+      BitSet wrapInOption,
+      String[] defaultValues,
+      Object[] defaultConstants) {
+    return generate(Option.<GeneratedClassCache> none(), Option.<FieldStores> none(),
+        constructor, converters, fields, optionality, wrapInOption,
+        defaultValues, defaultConstants);
+  }
+
+  /**
+   * Generates an instantiator calling {@code constructor}, or replacing it
+   * with {@code stores} if there are some, using the class kept in
+   * {@code cache} if there is one, or returns {@link Option#none()} if code
+   * cannot be generated for it.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> Option<GeneratedInstantiator<T>> generate(
+      Option<GeneratedClassCache> cache,
+      Option<FieldStores> stores,
+      Constructor<T> constructor,
+      Converter<?>[] converters,
+      Field[] fields,
+      BitSet optionality,
+      BitSet wrapInOption,
+      String[] defaultValues,
+      Object[] defaultConstants) {
+    Class<T> klass = constructor.getDeclaringClass();
+    if (!canGenerate(constructor, stores.isDefined())) {
+      return Option.none();
+    }
+    Emitter emitter = new Emitter(constructor, converters, fields, optionality,
+        wrapInOption, defaultValues, defaultConstants, stores.getOrElse(null));
+    try {
+      ConcurrentMap<String, Class<?>> definedForClass = defined.get(klass);
+      String shape = emitter.shape();
+      Class<?> generated = definedForClass.get(shape);
+      if (generated == null) {
+        generated = define(klass, emitter, shape, cache);
+        Class<?> previous = definedForClass.putIfAbsent(shape, generated);
+        if (previous != null) {
+          generated = previous;
+        }
+      }
+      return Option.some((GeneratedInstantiator<T>) generated
+          .getConstructor(Converter[].class, Field[].class, String[].class, Object[].class)
+          .newInstance(converters, fields, defaultValues, defaultConstants));
+    } catch (Exception e) {
+      log.fine(format("unable to generate instantiator for %s: %s", klass, e));
+      return Option.none();
+    } catch (LinkageError e) {
+      log.fine(format("unable to generate instantiator for %s: %s", klass, e));
+      return Option.none();
+    }
+  }
+
+  private static boolean canGenerate(Constructor<?> constructor, boolean bypassed) {
+    Class<?> klass = constructor.getDeclaringClass();
+    ClassLoader classLoader = klass.getClassLoader();
+    if (classLoader == null ||
+        (Modifier.isPrivate(constructor.getModifiers()) && !bypassed) ||
+        Modifier.isAbstract(klass.getModifiers()) ||
+        !isVisibleFrom(classLoader)) {
+      return false;
+    }
+    for (Class<?> parameterType : constructor.getParameterTypes()) {
+      if (!isAccessibleFrom(parameterType, klass)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isVisibleFrom(ClassLoader classLoader) {
+    try {
+      return GeneratedInstantiator.class.equals(
+          Class.forName(GeneratedInstantiator.class.getName(), false, classLoader));
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  /* Access to nested classes is checked by the virtual machine using the flags
+   * of their class file, in which protected members are public and private
+   * members have package access.
+   */
+  static boolean isAccessibleFrom(Class<?> type, Class<?> klass) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    int modifiers = type.getModifiers();
+    return type.isPrimitive() ||
+        Modifier.isPublic(modifiers) ||
+        Modifier.isProtected(modifiers) ||
+        (type.getClassLoader() == klass.getClassLoader() &&
+            packageOf(type).equals(packageOf(klass)));
+  }
+
+  /**
+   * Returns the converter interface specialized for {@code type}, if
+   * {@code converter} implements it, or {@code null}.
+   */
+  static Class<?> getPrimitiveConverter(Class<?> type, Converter<?> converter) {
+    Class<?> primitiveConverter = PRIMITIVE_CONVERTERS.get(type);
+    return primitiveConverter != null && primitiveConverter.isInstance(converter) ?
+        primitiveConverter : null;
+  }
+
+  /* Fields are read from the generated class, which is in the package of
+   * klass.
+   */
+  static boolean isAccessibleFrom(Field field, Class<?> klass) {
+    Class<?> declaringClass = field.getDeclaringClass();
+    int modifiers = field.getModifiers();
+    return !Modifier.isPrivate(modifiers) &&
+        isAccessibleFrom(declaringClass, klass) &&
+        (Modifier.isPublic(modifiers) ||
+            (declaringClass.getClassLoader() == klass.getClassLoader() &&
+                packageOf(declaringClass).equals(packageOf(klass))));
+  }
+
+  private static String packageOf(Class<?> klass) {
+    String name = klass.getName();
+    int lastDot = name.lastIndexOf('.');
+    return lastDot == -1 ? "" : name.substring(0, lastDot);
+  }
+
+  /* Generated classes are named after their key. Since a class with the same
+   * key may already have been defined by the class loader, for instance
+   * concurrently, it is looked up first.
+   */
+  private static Class<?> define(Class<?> klass, Emitter emitter, String shape,
+      Option<GeneratedClassCache> cache) throws Exception {
+    String name = format("%s$$Instantiator$$%s",
+        Type.getInternalName(klass), GeneratedClassCache.key(klass, shape));
+    Class<?> generated = findDefined(klass, name.replace('/', '.'));
+    if (generated != null) {
+      return generated;
+    }
+    byte[] bytes = null;
+    for (GeneratedClassCache c : cache) {
+      bytes = c.get(name);
+    }
+    boolean cached = bytes != null;
+    if (!cached) {
+      bytes = emitter.emit(name);
+    }
+    try {
+      generated = define(klass, name.replace('/', '.'), bytes);
+    } catch (InvocationTargetException e) {
+      // either defined concurrently, or the cached class file is corrupt
+      generated = findDefined(klass, name.replace('/', '.'));
+      if (generated == null) {
+        if (cached) {
+          cache.getOrThrow().remove(name);
+        }
+        throw e;
+      }
+      return generated;
+    }
+    for (GeneratedClassCache c : cache) {
+      if (!cached) {
+        c.put(name, bytes);
+      }
+    }
+    return generated;
+  }
+
+  private static Class<?> findDefined(Class<?> klass, String name) {
+    try {
+      return Class.forName(name, false, klass.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+  }
+
+  private static Class<?> define(Class<?> klass, String name, byte[] bytes)
+      throws Exception {
+    Method defineClass;
+    Object lookup;
+    try {
+      Method privateLookupIn = MethodHandles.class.getMethod(
+          "privateLookupIn", Class.class, MethodHandles.Lookup.class);
+      defineClass = MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+      lookup = privateLookupIn.invoke(null, klass, MethodHandles.lookup());
+    } catch (NoSuchMethodException e) {
+      // Before Java 9, the only way in is the class loader's defineClass.
+      defineClass = ClassLoader.class.getDeclaredMethod("defineClass",
+          String.class, byte[].class, int.class, int.class, ProtectionDomain.class);
+      defineClass.setAccessible(true);
+      return (Class<?>) defineClass.invoke(klass.getClassLoader(),
+          name, bytes, 0, bytes.length, klass.getProtectionDomain());
+    }
+    return (Class<?>) defineClass.invoke(lookup, (Object) bytes);
+  }
+
+  /**
+   * Emits the class file of a generated instantiator. Parameter {@code i} of
+   * the constructor uses the fields {@code c<i>} (its converter, typed as its
+   * primitive converter interface if it has one),
+   * {@code f<i>} (the field it is assigned to, if it must be read
+   * reflectively), {@code d<i>} (its default value, if any) and {@code k<i>}
+   * (its default constant, if any). When the constructor is replaced by
+   * field stores, the static field {@code unsafe} holds the {@code sun.misc.Unsafe}
+   * used to allocate instances and store into their fields.
+   */
+  private static class Emitter {
+
+    /* Where newInstance gets its values from. */
+    private enum Source {
+      ITERATOR("(" + Type.getDescriptor(Iterator.class) + ")" + OBJECT_DESC),
+      ARRAY("([" + STRING_DESC + ")" + OBJECT_DESC),
+      SLICES("(" + CHAR_SEQUENCE_DESC + "[I[I)" + OBJECT_DESC);
+
+      private final String descriptor;
+
+      private Source(String descriptor) {
+        this.descriptor = descriptor;
+      }
+    }
+
+    private String name;
+    private final Constructor<?> constructor;
+    private final Class<?>[] parameterTypes;
+    private final Class<?>[] primitiveConverters;
+    private final BitSet sliceable;
+    private final Field[] fields;
+    private final BitSet optionality;
+    private final BitSet wrapInOption;
+    private final String[] defaultValues;
+    private final Object[] defaultConstants;
+    private final FieldStores stores;
+
+    Emitter(Constructor<?> constructor, Converter<?>[] converters,
+        Field[] fields, BitSet optionality, BitSet wrapInOption,
+        String[] defaultValues, Object[] defaultConstants, FieldStores stores) {
+      this.constructor = constructor;
+      this.parameterTypes = constructor.getParameterTypes();
+      this.primitiveConverters = new Class<?>[parameterTypes.length];
+      this.sliceable = new BitSet();
+      for (int i = 0; i < parameterTypes.length; i++) {
+        primitiveConverters[i] = getPrimitiveConverter(parameterTypes[i], converters[i]);
+        if (converters[i] instanceof CharSequenceConverter) {
+          sliceable.set(i);
+        }
+      }
+      this.fields = fields;
+      this.optionality = optionality;
+      this.wrapInOption = wrapInOption;
+      this.defaultValues = defaultValues;
+      this.defaultConstants = defaultConstants;
+      this.stores = stores;
+    }
+
+    /**
+     * Describes everything the emitted code depends on besides the class file
+     * of the instantiated class and its name: converter instances, fields,
+     * default values and default constants are given to the constructor of
+     * the generated class, only their kind matters. Field stores depend on
+     * the layout of the instantiated class, hence their offsets.
+     */
+    String shape() {
+      StringBuilder shape = new StringBuilder(Type.getConstructorDescriptor(constructor));
+      for (int i = 0; i < parameterTypes.length; i++) {
+        shape.append(' ').append(i)
+            .append(' ').append(converterDesc(i))
+            .append(' ').append(sliceable.get(i))
+            .append(' ').append(optionality.get(i))
+            .append(' ').append(wrapInOption.get(i))
+            .append(' ').append(hasDefaultValue(i))
+            .append(' ').append(hasDefaultConstant(i));
+        if (fields[i] != null) {
+          shape.append(' ').append(Type.getInternalName(fields[i].getDeclaringClass()))
+              .append('.').append(fields[i].getName())
+              .append(' ').append(Type.getDescriptor(fields[i].getType()))
+              .append(' ').append(isReadReflectively(i));
+        }
+      }
+      if (stores != null) {
+        shape.append(" stores ").append(stores);
+      }
+      return shape.toString();
+    }
+
+    /**
+     * Emits the class file of the generated class named {@code name}.
+     */
+    byte[] emit(String name) {
+      this.name = name;
+      ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+      cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC,
+          name, null, BASE, null);
+      for (int i = 0; i < parameterTypes.length; i++) {
+        cw.visitField(ACC_PRIVATE | ACC_FINAL, "c" + i, converterDesc(i), null, null).visitEnd();
+        if (isReadReflectively(i)) {
+          cw.visitField(ACC_PRIVATE | ACC_FINAL, "f" + i, FIELD_DESC, null, null).visitEnd();
+        }
+        if (hasDefaultValue(i)) {
+          cw.visitField(ACC_PRIVATE | ACC_FINAL, "d" + i, STRING_DESC, null, null).visitEnd();
+        }
+        if (hasDefaultConstant(i)) {
+          cw.visitField(ACC_PRIVATE | ACC_FINAL, "k" + i, OBJECT_DESC, null, null).visitEnd();
+        }
+      }
+      if (stores != null) {
+        cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "unsafe", UNSAFE_DESC, null, null)
+            .visitEnd();
+        emitStaticInitializer(cw);
+      }
+      emitConstructor(cw);
+      emitNewInstance(cw, Source.ITERATOR);
+      emitNewInstance(cw, Source.ARRAY);
+      emitNewInstance(cw, Source.SLICES);
+      emitNewInstanceFromColumns(cw);
+      emitFromInstance(cw);
+      emitFromInstanceToAppendable(cw);
+      cw.visitEnd();
+      return cw.toByteArray();
+    }
+
+    private String converterDesc(int i) {
+      return primitiveConverters[i] == null ?
+          CONVERTER_DESC : Type.getDescriptor(primitiveConverters[i]);
+    }
+
+    private boolean isReadReflectively(int i) {
+      return fields[i] != null &&
+          !isAccessibleFrom(fields[i], constructor.getDeclaringClass());
+    }
+
+    private boolean hasDefaultValue(int i) {
+      return defaultValues != null && defaultValues[i] != null;
+    }
+
+    private boolean hasDefaultConstant(int i) {
+      return defaultConstants != null && defaultConstants[i] != null;
+    }
+
+    /* <init>(Converter[] converters, Field[] fields, String[] defaultValues,
+     *     Object[] defaultConstants)
+     */
+    private void emitConstructor(ClassWriter cw) {
+      MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>",
+          "([" + CONVERTER_DESC + "[" + FIELD_DESC + "[" + STRING_DESC +
+          "[" + OBJECT_DESC + ")V",
+          null, null);
+      mv.visitCode();
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitMethodInsn(INVOKESPECIAL, BASE, "<init>", "()V");
+      for (int i = 0; i < parameterTypes.length; i++) {
+        initField(mv, 1, i, "c" + i, converterDesc(i));
+        if (isReadReflectively(i)) {
+          initField(mv, 2, i, "f" + i, FIELD_DESC);
+        }
+        if (hasDefaultValue(i)) {
+          initField(mv, 3, i, "d" + i, STRING_DESC);
+        }
+        if (hasDefaultConstant(i)) {
+          initField(mv, 4, i, "k" + i, OBJECT_DESC);
+        }
+      }
+      mv.visitInsn(RETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+
+    /* static {
+     *   Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+     *   theUnsafe.setAccessible(true);
+     *   unsafe = (Unsafe) theUnsafe.get(null);
+     * }
+     */
+    private void emitStaticInitializer(ClassWriter cw) {
+      String field = Type.getInternalName(Field.class);
+      MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+      mv.visitCode();
+      mv.visitLdcInsn(Type.getObjectType(UNSAFE));
+      mv.visitLdcInsn("theUnsafe");
+      mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Class.class),
+          "getDeclaredField", "(" + STRING_DESC + ")" + FIELD_DESC);
+      mv.visitInsn(DUP);
+      push(mv, 1);
+      mv.visitMethodInsn(INVOKEVIRTUAL, field, "setAccessible", "(Z)V");
+      mv.visitInsn(ACONST_NULL);
+      mv.visitMethodInsn(INVOKEVIRTUAL, field, "get", "(" + OBJECT_DESC + ")" + OBJECT_DESC);
+      mv.visitTypeInsn(CHECKCAST, UNSAFE);
+      mv.visitFieldInsn(PUTSTATIC, name, "unsafe", UNSAFE_DESC);
+      mv.visitInsn(RETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+
+    private void initField(MethodVisitor mv, int array, int index,
+        String field, String desc) {
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, array);
+      push(mv, index);
+      mv.visitInsn(AALOAD);
+      Type type = Type.getType(desc);
+      if (!type.equals(Type.getType(Object.class))) {
+        mv.visitTypeInsn(CHECKCAST, type.getInternalName());
+      }
+      mv.visitFieldInsn(PUTFIELD, name, field, desc);
+    }
+
+    /* Object newInstance(Iterator values),
+     * Object newInstance(String[] values) or
+     * Object newInstance(CharSequence input, int[] offsets, int[] lengths)
+     *
+     * Locals are this (0), the values (1), the current value (2) followed by
+     * the converted parameters; or this (0), the input (1), the offsets (2),
+     * the lengths (3) followed by the converted parameters.
+     */
+    private void emitNewInstance(ClassWriter cw, Source source) {
+      MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "newInstance",
+          source.descriptor, null, null);
+      mv.visitCode();
+      int[] slots = new int[parameterTypes.length];
+      int slot = source == Source.SLICES ? 4 : 3;
+      for (int i = 0; i < parameterTypes.length; i++) {
+        slots[i] = slot;
+        slot += Type.getType(parameterTypes[i]).getSize();
+        emitParameter(mv, i, slots[i], source);
+      }
+      if (parameterTypes.length != 0) {
+        Label done = new Label();
+        if (source != Source.ITERATOR) {
+          // values.length <= parameters count, or offsets.length
+          mv.visitVarInsn(ALOAD, source == Source.SLICES ? 2 : 1);
+          mv.visitInsn(ARRAYLENGTH);
+          push(mv, parameterTypes.length);
+          mv.visitJumpInsn(IF_ICMPLE, done);
+        } else {
+          mv.visitVarInsn(ALOAD, 1);
+          mv.visitMethodInsn(INVOKEINTERFACE, ITERATOR, "hasNext", "()Z");
+          mv.visitJumpInsn(IFEQ, done);
+        }
+        mv.visitMethodInsn(INVOKESTATIC, BASE, "wrongNumberOfArguments",
+            "()" + Type.getDescriptor(IllegalArgumentException.class));
+        mv.visitInsn(ATHROW);
+        mv.visitLabel(done);
+      }
+      emitConstruction(mv, slots, slot);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+
+    /* Object newInstance(Object[] columns, int row)
+     *
+     * Locals are this (0), the columns (1), the row (2) followed by the
+     * parameters, read from column i cast to an array of the type of
+     * parameter i, or to an Object[] for reference types.
+     */
+    private void emitNewInstanceFromColumns(ClassWriter cw) {
+      MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "newInstance",
+          "([" + OBJECT_DESC + "I)" + OBJECT_DESC, null, null);
+      mv.visitCode();
+      int[] slots = new int[parameterTypes.length];
+      int slot = 3;
+      for (int i = 0; i < parameterTypes.length; i++) {
+        Type type = Type.getType(parameterTypes[i]);
+        slots[i] = slot;
+        slot += type.getSize();
+        mv.visitVarInsn(ALOAD, 1);
+        push(mv, i);
+        mv.visitInsn(AALOAD);
+        if (parameterTypes[i].isPrimitive()) {
+          mv.visitTypeInsn(CHECKCAST, "[" + type.getDescriptor());
+          mv.visitVarInsn(ILOAD, 2);
+          mv.visitInsn(type.getOpcode(IALOAD));
+        } else {
+          mv.visitTypeInsn(CHECKCAST, "[" + OBJECT_DESC);
+          mv.visitVarInsn(ILOAD, 2);
+          mv.visitInsn(AALOAD);
+          if (!parameterTypes[i].equals(Object.class)) {
+            mv.visitTypeInsn(CHECKCAST, type.getInternalName());
+          }
+        }
+        mv.visitVarInsn(type.getOpcode(ISTORE), slots[i]);
+      }
+      emitConstruction(mv, slots, slot);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+
+    /* return new <class>(<parameters>), wrapping what the constructor throws,
+     * or the stores replacing the constructor. The parameters are in slots,
+     * followed by free locals from slot free.
+     */
+    private void emitConstruction(MethodVisitor mv, int[] slots, int free) {
+      if (stores != null) {
+        emitStores(mv, slots, free);
+        return;
+      }
+      String owner = Type.getInternalName(constructor.getDeclaringClass());
+      Label start = new Label();
+      Label end = new Label();
+      Label handler = new Label();
+      mv.visitTryCatchBlock(start, end, handler, Type.getInternalName(Throwable.class));
+      mv.visitTypeInsn(NEW, owner);
+      mv.visitInsn(DUP);
+      for (int i = 0; i < parameterTypes.length; i++) {
+        mv.visitVarInsn(Type.getType(parameterTypes[i]).getOpcode(ILOAD), slots[i]);
+      }
+      mv.visitLabel(start);
+      mv.visitMethodInsn(INVOKESPECIAL, owner, "<init>",
+          Type.getConstructorDescriptor(constructor));
+      mv.visitLabel(end);
+      mv.visitInsn(ARETURN);
+      // what the constructor throws is wrapped as reflection would
+      mv.visitLabel(handler);
+      mv.visitMethodInsn(INVOKESTATIC, BASE, "constructorFailure",
+          "(" + Type.getDescriptor(Throwable.class) + ")"
+              + Type.getDescriptor(RuntimeException.class));
+      mv.visitInsn(ATHROW);
+    }
+
+    /* Object instance = unsafe.allocateInstance(<class>);
+     * unsafe.put<Type>(instance, <offset>, <parameter>);
+     * ...
+     * unsafe.storeFence();
+     * return instance;
+     */
+    private void emitStores(MethodVisitor mv, int[] slots, int instance) {
+      mv.visitFieldInsn(GETSTATIC, name, "unsafe", UNSAFE_DESC);
+      mv.visitLdcInsn(Type.getType(constructor.getDeclaringClass()));
+      mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "allocateInstance",
+          "(" + Type.getDescriptor(Class.class) + ")" + OBJECT_DESC);
+      mv.visitVarInsn(ASTORE, instance);
+      for (int i = 0; i < parameterTypes.length; i++) {
+        if (!stores.isStored(i)) {
+          continue;
+        }
+        Type type = Type.getType(parameterTypes[i]);
+        mv.visitFieldInsn(GETSTATIC, name, "unsafe", UNSAFE_DESC);
+        mv.visitVarInsn(ALOAD, instance);
+        mv.visitLdcInsn(stores.offsetOf(i));
+        mv.visitVarInsn(type.getOpcode(ILOAD), slots[i]);
+        if (parameterTypes[i].isPrimitive()) {
+          mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "put" + capitalize(type.getClassName()),
+              "(" + OBJECT_DESC + "J" + type.getDescriptor() + ")V");
+        } else {
+          mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "putObject",
+              "(" + OBJECT_DESC + "J" + OBJECT_DESC + ")V");
+        }
+      }
+      mv.visitFieldInsn(GETSTATIC, name, "unsafe", UNSAFE_DESC);
+      mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "storeFence", "()V");
+      mv.visitVarInsn(ALOAD, instance);
+      mv.visitInsn(ARETURN);
+    }
+
+    private void emitParameter(MethodVisitor mv, int i, int slot, Source source) {
+      Class<?> parameterType = parameterTypes[i];
+      Label noValue = new Label();
+      Label hasValue = new Label();
+      Label convert = new Label();
+      Label store = new Label();
+
+      if (source == Source.SLICES) {
+        // if (i < offsets.length && offsets[i] >= 0) convert
+        push(mv, i);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitInsn(ARRAYLENGTH);
+        mv.visitJumpInsn(IF_ICMPGE, noValue);
+        mv.visitVarInsn(ALOAD, 2);
+        push(mv, i);
+        mv.visitInsn(IALOAD);
+        mv.visitJumpInsn(IFGE, convert);
+        mv.visitLabel(noValue);
+      } else if (source == Source.ARRAY) {
+        // String value = i < values.length ? values[i] : null;
+        push(mv, i);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitInsn(ARRAYLENGTH);
+        mv.visitJumpInsn(IF_ICMPGE, noValue);
+        mv.visitVarInsn(ALOAD, 1);
+        push(mv, i);
+        mv.visitInsn(AALOAD);
+      } else {
+        // String value = values.hasNext() ? (String) values.next() : null;
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEINTERFACE, ITERATOR, "hasNext", "()Z");
+        mv.visitJumpInsn(IFEQ, noValue);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEINTERFACE, ITERATOR, "next", "()" + OBJECT_DESC);
+        mv.visitTypeInsn(CHECKCAST, Type.getInternalName(String.class));
+      }
+      if (source != Source.SLICES) {
+        mv.visitVarInsn(ASTORE, 2);
+        mv.visitJumpInsn(GOTO, hasValue);
+        mv.visitLabel(noValue);
+        mv.visitInsn(ACONST_NULL);
+        mv.visitVarInsn(ASTORE, 2);
+        mv.visitLabel(hasValue);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitJumpInsn(IFNONNULL, convert);
+      }
+
+      // value == null
+      if (wrapInOption.get(i)) {
+        mv.visitMethodInsn(INVOKESTATIC, OPTION, "none", "()L" + OPTION + ";");
+      } else if (optionality.get(i)) {
+        if (hasDefaultValue(i)) {
+          mv.visitVarInsn(ALOAD, 0);
+          mv.visitFieldInsn(GETFIELD, name, "d" + i, STRING_DESC);
+          emitConversionToParameterType(mv, i);
+        } else if (hasDefaultConstant(i)) {
+          mv.visitVarInsn(ALOAD, 0);
+          mv.visitFieldInsn(GETFIELD, name, "k" + i, OBJECT_DESC);
+          emitCast(mv, parameterType);
+        } else {
+          emitZero(mv, parameterType);
+        }
+      } else {
+        push(mv, i + 1);
+        mv.visitMethodInsn(INVOKESTATIC, BASE, "notOptional",
+            "(I)" + Type.getDescriptor(IllegalArgumentException.class));
+        mv.visitInsn(ATHROW);
+      }
+      mv.visitJumpInsn(GOTO, store);
+
+      // value != null
+      mv.visitLabel(convert);
+      if (source == Source.SLICES && sliceable.get(i)) {
+        emitSliceConversion(mv, i);
+        if (wrapInOption.get(i)) {
+          mv.visitMethodInsn(INVOKESTATIC, OPTION, "some",
+              "(" + OBJECT_DESC + ")L" + OPTION + ";");
+        } else {
+          emitCast(mv, parameterType);
+        }
+        mv.visitLabel(store);
+        mv.visitVarInsn(Type.getType(parameterType).getOpcode(ISTORE), slot);
+        return;
+      }
+      if (source == Source.SLICES) {
+        emitSlice(mv, i);
+      } else {
+        mv.visitVarInsn(ALOAD, 2);
+      }
+      if (wrapInOption.get(i)) {
+        emitConversion(mv, i);
+        mv.visitMethodInsn(INVOKESTATIC, OPTION, "some",
+            "(" + OBJECT_DESC + ")L" + OPTION + ";");
+      } else {
+        emitConversionToParameterType(mv, i);
+      }
+
+      mv.visitLabel(store);
+      mv.visitVarInsn(Type.getType(parameterType).getOpcode(ISTORE), slot);
+    }
+
+    /* String[] fromInstance(Object instance)
+     *
+     * Locals are this (0), the instance (1) and the values (2).
+     */
+    private void emitFromInstance(ClassWriter cw) {
+      MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "fromInstance",
+          "(" + OBJECT_DESC + ")[" + STRING_DESC, null, null);
+      mv.visitCode();
+      push(mv, parameterTypes.length);
+      mv.visitTypeInsn(ANEWARRAY, Type.getInternalName(String.class));
+      mv.visitVarInsn(ASTORE, 2);
+      for (int i = 0; i < parameterTypes.length; i++) {
+        Field field = fields[i];
+        if (field == null) {
+          continue;
+        }
+        Label isNull = new Label();
+        Label store = new Label();
+        Class<?> fieldType = field.getType();
+        mv.visitVarInsn(ALOAD, 2);
+        push(mv, i);
+        if (primitiveConverters[i] != null && fieldType.equals(parameterTypes[i])) {
+          // c<i>.toString(instance.field)
+          mv.visitVarInsn(ALOAD, 0);
+          mv.visitFieldInsn(GETFIELD, name, "c" + i, converterDesc(i));
+          emitGetField(mv, i);
+          mv.visitMethodInsn(INVOKEINTERFACE, Type.getInternalName(primitiveConverters[i]),
+              "toString", "(" + Type.getDescriptor(fieldType) + ")" + STRING_DESC);
+          mv.visitInsn(AASTORE);
+          continue;
+        }
+        emitGetField(mv, i);
+        if (fieldType.isPrimitive()) {
+          emitBox(mv, fieldType);
+        }
+        if (wrapInOption.get(i)) {
+          mv.visitTypeInsn(CHECKCAST, OPTION);
+          mv.visitInsn(ACONST_NULL);
+          mv.visitMethodInsn(INVOKEVIRTUAL, OPTION, "getOrElse",
+              "(" + OBJECT_DESC + ")" + OBJECT_DESC);
+        }
+        mv.visitInsn(DUP);
+        mv.visitJumpInsn(IFNULL, isNull);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, name, "c" + i, converterDesc(i));
+        mv.visitInsn(SWAP);
+        mv.visitMethodInsn(INVOKEINTERFACE, CONVERTER, "toString",
+            "(" + OBJECT_DESC + ")" + STRING_DESC);
+        mv.visitJumpInsn(GOTO, store);
+        mv.visitLabel(isNull);
+        mv.visitInsn(POP);
+        mv.visitInsn(ACONST_NULL);
+        mv.visitLabel(store);
+        mv.visitInsn(AASTORE);
+      }
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitInsn(ARETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+
+    /* void fromInstance(Object instance, Appendable out, Delimiting delimiting)
+     *
+     * Locals are this (0), the instance (1), out (2) and the delimiting (3).
+     */
+    private void emitFromInstanceToAppendable(ClassWriter cw) {
+      String appendableDesc = Type.getDescriptor(Appendable.class);
+      String delimitingDesc = Type.getDescriptor(Delimiting.class);
+      MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "fromInstance",
+          "(" + OBJECT_DESC + appendableDesc + delimitingDesc + ")V",
+          null, new String[] { Type.getInternalName(IOException.class) });
+      mv.visitCode();
+      for (int i = 0; i < parameterTypes.length; i++) {
+        if (i != 0) {
+          mv.visitVarInsn(ALOAD, 2);
+          mv.visitVarInsn(ALOAD, 3);
+          mv.visitMethodInsn(INVOKESTATIC, BASE, "appendSeparator",
+              "(" + appendableDesc + delimitingDesc + ")V");
+        }
+        Field field = fields[i];
+        if (field != null && primitiveConverters[i] != null &&
+            field.getType().equals(parameterTypes[i])) {
+          // c<i>.appendTo(instance.field, out)
+          mv.visitVarInsn(ALOAD, 0);
+          mv.visitFieldInsn(GETFIELD, name, "c" + i, converterDesc(i));
+          emitGetField(mv, i);
+          mv.visitVarInsn(ALOAD, 2);
+          mv.visitMethodInsn(INVOKEINTERFACE, Type.getInternalName(primitiveConverters[i]),
+              "appendTo", "(" + Type.getDescriptor(field.getType()) + appendableDesc + ")V");
+          continue;
+        }
+        // append(c<i>, instance.field, out, delimiting)
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, name, "c" + i, converterDesc(i));
+        if (field == null) {
+          mv.visitInsn(ACONST_NULL);
+        } else {
+          emitGetField(mv, i);
+          if (field.getType().isPrimitive()) {
+            emitBox(mv, field.getType());
+          }
+          if (wrapInOption.get(i)) {
+            mv.visitTypeInsn(CHECKCAST, OPTION);
+            mv.visitInsn(ACONST_NULL);
+            mv.visitMethodInsn(INVOKEVIRTUAL, OPTION, "getOrElse",
+                "(" + OBJECT_DESC + ")" + OBJECT_DESC);
+          }
+        }
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitMethodInsn(INVOKESTATIC, BASE, "append",
+            "(" + CONVERTER_DESC + OBJECT_DESC + appendableDesc + delimitingDesc + ")V");
+      }
+      mv.visitInsn(RETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+
+    /* Pushes the value of the field assigned parameter i of the instance in
+     * local 1.
+     */
+    private void emitGetField(MethodVisitor mv, int i) {
+      Field field = fields[i];
+      Class<?> fieldType = field.getType();
+      if (isReadReflectively(i)) {
+        // f<i>.get(instance), f<i>.getInt(instance), ...
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, name, "f" + i, FIELD_DESC);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(Field.class),
+            fieldType.isPrimitive() ? "get" + capitalize(fieldType.getName()) : "get",
+            "(" + OBJECT_DESC + ")" +
+                (fieldType.isPrimitive() ? Type.getDescriptor(fieldType) : OBJECT_DESC));
+      } else {
+        String owner = Type.getInternalName(constructor.getDeclaringClass());
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitTypeInsn(CHECKCAST, owner);
+        mv.visitFieldInsn(GETFIELD, owner, field.getName(), Type.getDescriptor(fieldType));
+      }
+    }
+
+    /* Converts the string on top of the stack using the converter c<i>,
+     * failing if it produces null.
+     */
+    private void emitConversion(MethodVisitor mv, int i) {
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, name, "c" + i, converterDesc(i));
+      mv.visitInsn(SWAP);
+      mv.visitMethodInsn(INVOKEINTERFACE, CONVERTER, "fromString",
+          "(" + STRING_DESC + ")" + OBJECT_DESC);
+      emitNullCheck(mv, i);
+    }
+
+    /* Converts slice i of the input to a value, using the converter's
+     * CharSequenceConverter#fromCharSequence.
+     */
+    private void emitSliceConversion(MethodVisitor mv, int i) {
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, name, "c" + i, converterDesc(i));
+      mv.visitTypeInsn(CHECKCAST, CHAR_SEQUENCE_CONVERTER);
+      emitSliceBounds(mv, i);
+      mv.visitMethodInsn(INVOKEINTERFACE, CHAR_SEQUENCE_CONVERTER, "fromCharSequence",
+          "(" + CHAR_SEQUENCE_DESC + "II)" + OBJECT_DESC);
+      emitNullCheck(mv, i);
+    }
+
+    /* Pushes slice i of the input as a string.
+     */
+    private void emitSlice(MethodVisitor mv, int i) {
+      emitSliceBounds(mv, i);
+      mv.visitMethodInsn(INVOKEINTERFACE, CHAR_SEQUENCE, "subSequence",
+          "(II)" + CHAR_SEQUENCE_DESC);
+      mv.visitMethodInsn(INVOKEINTERFACE, CHAR_SEQUENCE, "toString",
+          "()" + STRING_DESC);
+    }
+
+    /* Pushes input, offsets[i] and offsets[i] + lengths[i].
+     */
+    private void emitSliceBounds(MethodVisitor mv, int i) {
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitVarInsn(ALOAD, 2);
+      push(mv, i);
+      mv.visitInsn(IALOAD);
+      mv.visitInsn(DUP);
+      mv.visitVarInsn(ALOAD, 3);
+      push(mv, i);
+      mv.visitInsn(IALOAD);
+      mv.visitInsn(IADD);
+    }
+
+    /* Throws if the value on top of the stack, converted by converter i, is
+     * null.
+     */
+    private void emitNullCheck(MethodVisitor mv, int i) {
+      Label nonNull = new Label();
+      mv.visitInsn(DUP);
+      mv.visitJumpInsn(IFNONNULL, nonNull);
+      mv.visitInsn(POP);
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitFieldInsn(GETFIELD, name, "c" + i, converterDesc(i));
+      mv.visitMethodInsn(INVOKESTATIC, BASE, "producedNullValue",
+          "(" + CONVERTER_DESC + ")" + Type.getDescriptor(IllegalStateException.class));
+      mv.visitInsn(ATHROW);
+      mv.visitLabel(nonNull);
+    }
+
+    /* Converts the string on top of the stack to a value of the type of
+     * parameter i.
+     */
+    private void emitConversionToParameterType(MethodVisitor mv, int i) {
+      Class<?> parameterType = parameterTypes[i];
+      if (primitiveConverters[i] != null) {
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, name, "c" + i, converterDesc(i));
+        mv.visitInsn(SWAP);
+        mv.visitMethodInsn(INVOKEINTERFACE, Type.getInternalName(primitiveConverters[i]),
+            "fromStringAs" + capitalize(parameterType.getName()),
+            "(" + STRING_DESC + ")" + Type.getDescriptor(parameterType));
+      } else {
+        emitConversion(mv, i);
+        emitCast(mv, parameterType);
+      }
+    }
+
+    private void emitCast(MethodVisitor mv, Class<?> type) {
+      if (type.isPrimitive()) {
+        String wrapper = Type.getInternalName(Primitives.wrap(type));
+        mv.visitTypeInsn(CHECKCAST, wrapper);
+        mv.visitMethodInsn(INVOKEVIRTUAL, wrapper, type.getName() + "Value",
+            "()" + Type.getDescriptor(type));
+      } else if (!type.equals(Object.class)) {
+        mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+      }
+    }
+
+    private void emitBox(MethodVisitor mv, Class<?> type) {
+      String wrapper = Type.getInternalName(Primitives.wrap(type));
+      mv.visitMethodInsn(INVOKESTATIC, wrapper, "valueOf",
+          "(" + Type.getDescriptor(type) + ")L" + wrapper + ";");
+    }
+
+    private void emitZero(MethodVisitor mv, Class<?> type) {
+      switch (Type.getType(type).getSort()) {
+        case Type.LONG: mv.visitInsn(LCONST_0); return;
+        case Type.FLOAT: mv.visitInsn(FCONST_0); return;
+        case Type.DOUBLE: mv.visitInsn(DCONST_0); return;
+        case Type.OBJECT:
+        case Type.ARRAY: mv.visitInsn(ACONST_NULL); return;
+        default: mv.visitInsn(ICONST_0);
+      }
+    }
+
+  }
+
+  private static String capitalize(String name) {
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  static void push(MethodVisitor mv, int value) {
+    if (-1 <= value && value <= 5) {
+      mv.visitInsn(ICONST_0 + value);
+    } else if (Byte.MIN_VALUE <= value && value <= Byte.MAX_VALUE) {
+      mv.visitIntInsn(BIPUSH, value);
+    } else if (Short.MIN_VALUE <= value && value <= Short.MAX_VALUE) {
+      mv.visitIntInsn(SIPUSH, value);
+    } else {
+      mv.visitLdcInsn(value);
+    }
+  }
+
+}
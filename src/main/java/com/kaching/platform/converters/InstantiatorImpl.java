@@ -10,30 +10,69 @@
  */
 package com.kaching.platform.converters;
 
-import static com.google.common.collect.Lists.newArrayList;
+import static com.kaching.platform.converters.NativeConverters.C_BOOLEAN;
+import static com.kaching.platform.converters.NativeConverters.C_BYTE;
+import static com.kaching.platform.converters.NativeConverters.C_CHAR;
+import static com.kaching.platform.converters.NativeConverters.C_DOUBLE;
+import static com.kaching.platform.converters.NativeConverters.C_FLOAT;
+import static com.kaching.platform.converters.NativeConverters.C_INT;
+import static com.kaching.platform.converters.NativeConverters.C_LONG;
+import static com.kaching.platform.converters.NativeConverters.C_SHORT;
+import static com.kaching.platform.converters.NativeConverters.C_STRING;
 import static java.lang.String.format;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.UnmodifiableIterator;
+import com.google.common.primitives.Primitives;
 
 class InstantiatorImpl<T> implements Instantiator<T> {
 
+  private static final int DEFAULT_ESTIMATED_LENGTH = 16;
+
+  private static final int MIN_CHUNK_SIZE = 256;
+
+  private static final Map<Converter<?>, Integer> ESTIMATED_LENGTHS =
+      ImmutableMap.<Converter<?>, Integer> builder()
+      .put(C_BOOLEAN, 5)
+      .put(C_BYTE, 4)
+      .put(C_CHAR, 1)
+      .put(C_SHORT, 6)
+      .put(C_INT, 11)
+      .put(C_LONG, 20)
+      .put(C_FLOAT, 15)
+      .put(C_DOUBLE, 24)
+      .put(C_STRING, DEFAULT_ESTIMATED_LENGTH)
+      .build();
+
   private final Constructor<T> constructor;
-  private final Field[] fields;
+  private final Supplier<Field[]> fields;
   @SuppressWarnings("rawtypes")
   private final Converter[] converters;
   private final BitSet optionality;
   private final BitSet wrapInOption;
   private final String[] defaultValues;
   private final Object[] defaultConstants;
-  private final String[] parameterNames;
+  private final Supplier<NameIndex> names;
+  private final GeneratedInstantiator<T> generated;
+  private final int estimatedLength;
 
   InstantiatorImpl(
       Constructor<T> constructor,
@@ -44,6 +83,47 @@ class InstantiatorImpl<T> implements Instantiator<T> {
       String[] defaultValues,
       Object[] defaultConstants,
       String[] parameterNames) {
+    this(constructor, converters, fields, optionality, wrapInOption,
+        defaultValues, defaultConstants, parameterNames, null);
+  }
+
+  /**
+   * @param generated if not {@code null}, the generated instantiator to
+   *     delegate instantiation to
+   */
+  InstantiatorImpl(
+      Constructor<T> constructor,
+      Converter<?>[] converters,
+      Field[] fields,
+      BitSet optionality,
+      BitSet wrapInOption,
+      String[] defaultValues,
+      Object[] defaultConstants,
+      String[] parameterNames,
+      GeneratedInstantiator<T> generated) {
+    this(constructor, converters, Suppliers.ofInstance(fields), optionality, wrapInOption,
+        defaultValues, defaultConstants,
+        Suppliers.ofInstance(parameterNames == null ? null : new NameIndex(parameterNames)),
+        generated);
+  }
+
+  /**
+   * @param fields supplies the fields, one per parameter, read to destantiate;
+   *     it is only called when destantiating and must be thread-safe
+   * @param names supplies the index of the names of the parameters, or
+   *     {@code null} if they are unknown; it is only called when instantiating
+   *     by name and must be thread-safe
+   */
+  InstantiatorImpl(
+      Constructor<T> constructor,
+      Converter<?>[] converters,
+      Supplier<Field[]> fields,
+      BitSet optionality,
+      BitSet wrapInOption,
+      String[] defaultValues,
+      Object[] defaultConstants,
+      Supplier<NameIndex> names,
+      GeneratedInstantiator<T> generated) {
     this.constructor = constructor;
     this.converters = converters;
     this.fields = fields;
@@ -51,64 +131,479 @@ class InstantiatorImpl<T> implements Instantiator<T> {
     this.wrapInOption = wrapInOption;
     this.defaultValues = defaultValues;
     this.defaultConstants = defaultConstants;
-    this.parameterNames = parameterNames;
+    this.names = names;
+    this.generated = generated;
+    int estimatedLength = 0;
+    if (converters != null) {
+      for (Converter<?> converter : converters) {
+        estimatedLength += estimateLength(converter);
+      }
+    }
+    this.estimatedLength = estimatedLength;
+  }
+
+  @VisibleForTesting
+  boolean isGenerated() {
+    return generated != null;
   }
 
   @Override
   public T newInstance(String... values) {
-    return newInstance(Arrays.asList(values));
+    return instantiate(values);
   }
 
   @Override
   public T newInstance(Map<String, String> namedValues) {
-    if (parameterNames == null) {
+    NameIndex names = this.names.get();
+    if (names == null) {
       throw new UnsupportedOperationException();
     }
-    List<String> values = newArrayList();
-    for (String paramaterName : parameterNames) {
-      values.add(namedValues.get(paramaterName));
+    String[] parameterNames = names.names();
+    String[] values = new String[parameterNames.length];
+    for (int i = 0; i < parameterNames.length; i++) {
+      values[i] = parameterNames[i] == null ? null : namedValues.get(parameterNames[i]);
     }
-    return newInstance(values);
+    return instantiate(values);
+  }
+
+  @Override
+  public Row newRow() {
+    return new Row(names.get(), converters == null ? 0 : converters.length);
+  }
+
+  @Override
+  public T newInstance(Row row) {
+    return instantiate(row.values());
   }
 
   @Override
   public T newInstance(Iterable<String> values) {
+    return newInstance(values, newScratch());
+  }
+
+  @Override
+  public Iterator<T> newInstances(final Iterator<? extends Iterable<String>> records) {
+    return new UnmodifiableIterator<T>() {
+      private final Object[] scratch = newScratch();
+      @Override
+      public boolean hasNext() {
+        return records.hasNext();
+      }
+      @Override
+      public T next() {
+        return newInstance(records.next(), scratch);
+      }
+    };
+  }
+
+  @Override
+  public Iterator<T> newInstances(
+      final Iterator<? extends Iterable<String>> records, final Failures failures) {
+    return new AbstractIterator<T>() {
+      private final Object[] scratch = newScratch();
+      private int index = 0;
+      @Override
+      protected T computeNext() {
+        while (records.hasNext()) {
+          Iterable<String> record = records.next();
+          try {
+            return newInstance(record, scratch);
+          } catch (RuntimeException e) {
+            failures.add(index, e);
+          } finally {
+            index++;
+          }
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  @Override
+  public int newInstances(
+      Iterator<? extends Iterable<String>> records, T[] instances, Failures failures) {
+    Object[] scratch = newScratch();
+    int count = 0;
+    while (count < instances.length && records.hasNext()) {
+      Iterable<String> record = records.next();
+      try {
+        instances[count] = newInstance(record, scratch);
+      } catch (RuntimeException e) {
+        instances[count] = null;
+        failures.add(count, e);
+      }
+      count++;
+    }
+    return count;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<T> newInstancesParallel(final List<? extends Iterable<String>> records,
+      ForkJoinPool pool, final Failures failures) {
+    final Object[] instances = new Object[records.size()];
+    pool.invoke(new Chunk(new Work() {
+      @Override
+      public void run(int from, int to) {
+        Object[] scratch = newScratch();
+        for (int i = from; i < to; i++) {
+          try {
+            instances[i] = newInstance(records.get(i), scratch);
+          } catch (RuntimeException e) {
+            failures.add(i, e);
+          }
+        }
+      }
+    }, 0, instances.length, chunkSize(instances.length, pool)));
+    return (List<T>) Arrays.asList(instances);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<List<String>> fromInstancesParallel(final List<? extends T> instances,
+      ForkJoinPool pool, final Failures failures) {
+    final Object[] values = new Object[instances.size()];
+    pool.invoke(new Chunk(new Work() {
+      @Override
+      public void run(int from, int to) {
+        for (int i = from; i < to; i++) {
+          try {
+            values[i] = fromInstance(instances.get(i));
+          } catch (RuntimeException e) {
+            failures.add(i, e);
+          }
+        }
+      }
+    }, 0, values.length, chunkSize(values.length, pool)));
+    return (List<List<String>>) (List<?>) Arrays.asList(values);
+  }
+
+  /**
+   * Splits work in about eight chunks per worker, for load balancing, while
+   * keeping chunks large enough for the splitting to be cheap.
+   */
+  private static int chunkSize(int size, ForkJoinPool pool) {
+    return Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 8));
+  }
+
+  /**
+   * Work on the indices from {@code from} (inclusive) to {@code to}
+   * (exclusive).
+   */
+  private interface Work {
+    void run(int from, int to);
+  }
+
+  /**
+   * Splits indices in halves until they fit in a chunk, on which the work
+   * is then run.
+   */
+  private static class Chunk extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Work work;
+    private final int from;
+    private final int to;
+    private final int chunkSize;
+
+    Chunk(Work work, int from, int to, int chunkSize) {
+      this.work = work;
+      this.from = from;
+      this.to = to;
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= chunkSize) {
+        work.run(from, to);
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(
+            new Chunk(work, from, middle, chunkSize),
+            new Chunk(work, middle, to, chunkSize));
+      }
+    }
+
+  }
+
+  /**
+   * Converts one column at a time, so that a single converter is used in each
+   * loop, into a column of parameters. Columns of primitives are used as they
+   * are for parameters of their type. Instances are then created row by row,
+   * by the generated instantiator if there is one.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public T[] newInstances(Columns columns, Failures failures) {
+    int size = columns.size();
+    int width = converters == null ? 0 : converters.length;
+    if (columns.width() != width) {
+      throw new IllegalArgumentException("wrong number of arguments");
+    }
+    Class<?>[] parameterTypes = constructor.getParameterTypes();
+    Object[] parameters = new Object[width];
+    BitSet failed = new BitSet();
+    for (int i = 0; i < width; i++) {
+      parameters[i] = toParameters(
+          i, parameterTypes[i], columns.get(i), size, failed, failures);
+    }
+    T[] instances = (T[]) Array.newInstance(constructor.getDeclaringClass(), size);
+    if (generated != null) {
+      for (int row = 0; row < size; row++) {
+        if (!failed.get(row)) {
+          try {
+            instances[row] = generated.newInstance(parameters, row);
+          } catch (RuntimeException e) {
+            failures.add(row, e);
+          }
+        }
+      }
+      return instances;
+    }
+    Object[][] rows = new Object[size][width];
+    for (int i = 0; i < width; i++) {
+      Object column = parameters[i];
+      if (column instanceof Object[]) {
+        Object[] values = (Object[]) column;
+        for (int row = 0; row < size; row++) {
+          rows[row][i] = values[row];
+        }
+      } else if (column instanceof long[]) {
+        long[] values = (long[]) column;
+        for (int row = 0; row < size; row++) {
+          rows[row][i] = values[row];
+        }
+      } else if (column instanceof int[]) {
+        int[] values = (int[]) column;
+        for (int row = 0; row < size; row++) {
+          rows[row][i] = values[row];
+        }
+      } else if (column instanceof double[]) {
+        double[] values = (double[]) column;
+        for (int row = 0; row < size; row++) {
+          rows[row][i] = values[row];
+        }
+      } else {
+        for (int row = 0; row < size; row++) {
+          rows[row][i] = Array.get(column, row);
+        }
+      }
+    }
+    for (int row = 0; row < size; row++) {
+      if (!failed.get(row)) {
+        try {
+          instances[row] = constructor.newInstance(rows[row]);
+        } catch (RuntimeException e) {
+          failures.add(row, e);
+        } catch (Exception e) {
+          failures.add(row, new RuntimeException(e));
+        }
+      }
+    }
+    return instances;
+  }
+
+  /**
+   * Converts {@code column} into the parameters {@code i} of the first
+   * {@code size} rows: an array of the type of the parameter if it is
+   * primitive, or else an {@code Object[]}. Rows which cannot be converted
+   * are marked as {@code failed}.
+   */
+  private Object toParameters(int i, Class<?> parameterType, Object column, int size,
+      BitSet failed, Failures failures) {
+    if (column == null || column instanceof String[]) {
+      String[] values = (String[]) column;
+      Object parameters = parameterType.isPrimitive() ?
+          Array.newInstance(parameterType, size) : new Object[size];
+      for (int row = 0; row < size; row++) {
+        if (!failed.get(row)) {
+          try {
+            Object parameter = toParameter(i, values == null ? null : values[row]);
+            if (parameters instanceof Object[]) {
+              ((Object[]) parameters)[row] = parameter;
+            } else {
+              Array.set(parameters, row, parameter);
+            }
+          } catch (RuntimeException e) {
+            failed.set(row);
+            failures.add(row, e);
+          }
+        }
+      }
+      return parameters;
+    }
+    Class<?> componentType = column.getClass().getComponentType();
+    if (!wrapInOption.get(i) &&
+        !Primitives.wrap(parameterType).equals(Primitives.wrap(componentType))) {
+      throw new IllegalArgumentException(format(
+          "column %s of %s cannot be used for parameter of type %s",
+          i, componentType, parameterType));
+    }
+    if (parameterType.isPrimitive()) {
+      return column;
+    }
+    Object[] parameters = new Object[size];
+    if (column instanceof long[]) {
+      long[] values = (long[]) column;
+      for (int row = 0; row < size; row++) {
+        parameters[row] = values[row];
+      }
+    } else if (column instanceof int[]) {
+      int[] values = (int[]) column;
+      for (int row = 0; row < size; row++) {
+        parameters[row] = values[row];
+      }
+    } else if (column instanceof double[]) {
+      double[] values = (double[]) column;
+      for (int row = 0; row < size; row++) {
+        parameters[row] = values[row];
+      }
+    } else {
+      for (int row = 0; row < size; row++) {
+        parameters[row] = Array.get(column, row);
+      }
+    }
+    if (wrapInOption.get(i)) {
+      for (int row = 0; row < size; row++) {
+        parameters[row] = Option.some(parameters[row]);
+      }
+    }
+    return parameters;
+  }
+
+  /**
+   * Reads one field at a time. Primitive fields of the type of their
+   * parameter are read into arrays of that type and others are converted to
+   * strings.
+   */
+  @Override
+  public Columns fromInstances(Collection<? extends T> instances) {
+    Object[] rows = instances.toArray();
+    Class<?>[] parameterTypes = constructor.getParameterTypes();
+    Field[] fields = this.fields.get();
+    Columns columns = new Columns(rows.length, fields.length);
+    for (int i = 0; i < fields.length; i++) {
+      Field field = fields[i];
+      Class<?> fieldType = field == null || field.getType() != parameterTypes[i] ?
+          null : field.getType();
+      try {
+        if (fieldType == Long.TYPE) {
+          long[] column = new long[rows.length];
+          for (int row = 0; row < rows.length; row++) {
+            column[row] = field.getLong(rows[row]);
+          }
+          columns.set(i, column);
+        } else if (fieldType == Integer.TYPE) {
+          int[] column = new int[rows.length];
+          for (int row = 0; row < rows.length; row++) {
+            column[row] = field.getInt(rows[row]);
+          }
+          columns.set(i, column);
+        } else if (fieldType == Double.TYPE) {
+          double[] column = new double[rows.length];
+          for (int row = 0; row < rows.length; row++) {
+            column[row] = field.getDouble(rows[row]);
+          }
+          columns.set(i, column);
+        } else if (fieldType != null && fieldType.isPrimitive()) {
+          Object column = Array.newInstance(fieldType, rows.length);
+          for (int row = 0; row < rows.length; row++) {
+            Array.set(column, row, field.get(rows[row]));
+          }
+          columns.set(i, column);
+        } else {
+          String[] column = new String[rows.length];
+          for (int row = 0; row < rows.length; row++) {
+            @SuppressWarnings("unchecked")
+            Object value = getValue(i, (T) rows[row]);
+            column[row] = value == null ? null : converters[i].toString(value);
+          }
+          columns.set(i, column);
+        }
+      } catch (IllegalAccessException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * Creates the array holding the parameters of the constructor, which can be
+   * reused from one instantiation to the next.
+   */
+  private Object[] newScratch() {
+    return generated == null && converters != null ? new Object[converters.length] : null;
+  }
+
+  private T newInstance(Iterable<String> values, Object[] parameters) {
     try {
-      if (converters != null) {
-        Object[] parameters = new Object[converters.length];
+      if (generated != null) {
+        return generated.newInstance(values.iterator());
+      } else if (converters != null) {
         Iterator<String> valuesIterator = values.iterator();
         for (int i = 0; i < converters.length; i++) {
-          String value = valuesIterator.hasNext() ? valuesIterator.next() : null;
-          Converter<?> converter = converters[i];
-          // TODO(pascal): properly handle predicates.
-          Object parameter;
-          if (value == null) {
-            if (wrapInOption.get(i)) {
-               parameter = Option.none();
-            } else if (optionality.get(i)) {
-              if (defaultValues != null && defaultValues[i] != null) {
-                parameter = convert(converter, defaultValues[i]);
-              } else {
-                if (defaultConstants != null && defaultConstants[i] != null) {
-                  parameter = defaultConstants[i];
-                } else {
-                  parameter = null;
-                }
-              }
-            } else {
-              throw new IllegalArgumentException(format(
-                  "parameter %s is not optional but null was provided",
-                  i + 1));
-            }
+          parameters[i] = toParameter(i,
+              valuesIterator.hasNext() ? valuesIterator.next() : null);
+        }
+        if (valuesIterator.hasNext()) {
+          throw new IllegalArgumentException("wrong number of arguments");
+        }
+        return constructor.newInstance(parameters);
+      } else {
+        return constructor.newInstance();
+      }
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      // do proper exception handling including de-wrapping exceptions
+      throw new RuntimeException(e);
+    }
+  }
+
+  private T instantiate(String[] values) {
+    try {
+      if (generated != null) {
+        return generated.newInstance(values);
+      } else if (converters != null) {
+        Object[] parameters = new Object[converters.length];
+        for (int i = 0; i < converters.length; i++) {
+          parameters[i] = toParameter(i, i < values.length ? values[i] : null);
+        }
+        if (values.length > converters.length) {
+          throw new IllegalArgumentException("wrong number of arguments");
+        }
+        return constructor.newInstance(parameters);
+      } else {
+        return constructor.newInstance();
+      }
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      // do proper exception handling including de-wrapping exceptions
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public T newInstance(CharSequence input, int[] offsets, int[] lengths) {
+    if (offsets.length != lengths.length) {
+      throw new IllegalArgumentException("offsets and lengths differ in length");
+    }
+    try {
+      if (generated != null) {
+        return generated.newInstance(input, offsets, lengths);
+      } else if (converters != null) {
+        Object[] parameters = new Object[converters.length];
+        for (int i = 0; i < converters.length; i++) {
+          if (i < offsets.length && offsets[i] >= 0) {
+            parameters[i] = toParameter(i, input, offsets[i], offsets[i] + lengths[i]);
           } else {
-            parameter = convert(converter, value);
-            if (wrapInOption.get(i)) {
-              parameter = Option.some(parameter);
-            }
+            parameters[i] = toParameter(i, null);
           }
-          parameters[i] = parameter;
         }
-        if (valuesIterator.hasNext()) {
+        if (offsets.length > converters.length) {
           throw new IllegalArgumentException("wrong number of arguments");
         }
         return constructor.newInstance(parameters);
@@ -123,36 +618,135 @@ class InstantiatorImpl<T> implements Instantiator<T> {
     }
   }
 
+  private Object toParameter(int i, CharSequence input, int start, int end) {
+    Converter<?> converter = converters[i];
+    Object parameter;
+    if (converter instanceof CharSequenceConverter) {
+      parameter = checkConverted(converter,
+          ((CharSequenceConverter<?>) converter).fromCharSequence(input, start, end));
+    } else {
+      parameter = convert(converter, input.subSequence(start, end).toString());
+    }
+    return wrapInOption.get(i) ? Option.some(parameter) : parameter;
+  }
+
+  private Object toParameter(int i, String value) {
+    Converter<?> converter = converters[i];
+    // TODO(pascal): properly handle predicates.
+    Object parameter;
+    if (value == null) {
+      if (wrapInOption.get(i)) {
+         parameter = Option.none();
+      } else if (optionality.get(i)) {
+        if (defaultValues != null && defaultValues[i] != null) {
+          parameter = convert(converter, defaultValues[i]);
+        } else {
+          if (defaultConstants != null && defaultConstants[i] != null) {
+            parameter = defaultConstants[i];
+          } else {
+            parameter = null;
+          }
+        }
+      } else {
+        throw new IllegalArgumentException(format(
+            "parameter %s is not optional but null was provided",
+            i + 1));
+      }
+    } else {
+      parameter = convert(converter, value);
+      if (wrapInOption.get(i)) {
+        parameter = Option.some(parameter);
+      }
+    }
+    return parameter;
+  }
+
+  @Override
+  public void fromInstance(T instance, Appendable out, Delimiting delimiting)
+      throws IOException {
+    if (generated != null) {
+      generated.fromInstance(instance, out, delimiting);
+      return;
+    }
+    Field[] fields = this.fields.get();
+    for (int i = 0; i < fields.length; i++) {
+      if (i != 0) {
+        delimiting.appendSeparator(out);
+      }
+      delimiting.append(converters[i], getValue(i, instance), out);
+    }
+  }
+
+  @Override
+  public StringBuilder fromInstance(T instance, StringBuilder out, Delimiting delimiting) {
+    try {
+      fromInstance(instance, (Appendable) out, delimiting);
+    } catch (IOException e) {
+      // StringBuilder does not throw
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  @Override
+  public int estimateLength(Delimiting delimiting) {
+    return converters == null ? 0 :
+        estimatedLength + (converters.length - 1) * delimiting.getSeparator().length();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object getValue(int i, T instance) {
+    Field field = fields.get()[i];
+    if (field == null) {
+      return null;
+    }
+    try {
+      Object value = field.get(instance);
+      if (wrapInOption.get(i)) {
+        value = ((Option<Object>) value).getOrElse((Object) null);
+      }
+      return value;
+    } catch (IllegalArgumentException e) {
+      throw new RuntimeException(e);
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   public List<String> fromInstance(T instance) {
-    // TODO(pascal): Rewrite this naive implementation. The goal is to show
-    // the skeleton a full example of destantiating.
+    if (generated != null) {
+      return Arrays.asList(generated.fromInstance(instance));
+    }
+    Field[] fields = this.fields.get();
     List<String> parameters = Lists.newArrayListWithCapacity(fields.length);
     for (int i = 0; i < fields.length; i++) {
-      try {
-        Field field = fields[i];
-        String parameterAsString;
-        if (field != null) {
-          Object value = field.get(instance);
-          if (wrapInOption.get(i)) {
-            value = ((Option<Object>) value).getOrElse((Object) null);
-          }
-          parameterAsString = value == null ? null : converters[i].toString(value);
-        } else {
-          parameterAsString = null;
-        }
-        parameters.add(parameterAsString);
-      } catch (IllegalArgumentException e) {
-        throw new RuntimeException(e);
-      } catch (IllegalAccessException e) {
-        throw new RuntimeException(e);
-      }
+      Object value = getValue(i, instance);
+      parameters.add(value == null ? null : converters[i].toString(value));
     }
     return parameters;
   }
 
+  /**
+   * Estimates the length of the values produced by a converter, which is
+   * exact for most native types.
+   */
+  private static int estimateLength(Converter<?> converter) {
+    Integer length = ESTIMATED_LENGTHS.get(converter);
+    if (length != null) {
+      return length;
+    } else if (converter instanceof EnumConverter) {
+      return ((EnumConverter<?>) converter).maxLength();
+    } else {
+      return DEFAULT_ESTIMATED_LENGTH;
+    }
+  }
+
   private Object convert(Converter<?> converter, String value) {
-    Object parameter = converter.fromString(value);
+    return checkConverted(converter, converter.fromString(value));
+  }
+
+  private Object checkConverted(Converter<?> converter, Object parameter) {
     if (parameter == null) {
       throw new IllegalStateException(format(
           "converter %s produced a null value", converter.getClass()));
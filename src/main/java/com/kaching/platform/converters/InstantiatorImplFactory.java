@@ -10,6 +10,7 @@
  */
 package com.kaching.platform.converters;
 
+import static com.google.common.collect.Maps.newHashMap;
 import static com.kaching.platform.converters.CollectionOfElementsConverter.COLLECTION_KINDS;
 import static com.kaching.platform.converters.InstantiatorErrors.cannotAnnotateOptionWithOptional;
 import static com.kaching.platform.converters.InstantiatorErrors.cannotSpecifyDefaultValueAndConstant;
@@ -26,6 +27,7 @@ import static com.kaching.platform.converters.InstantiatorErrors.noConverterForT
 import static com.kaching.platform.converters.InstantiatorErrors.noSuchField;
 import static com.kaching.platform.converters.InstantiatorErrors.optionalLiteralParameterMustHaveDefault;
 import static com.kaching.platform.converters.InstantiatorErrors.unableToGetField;
+import static com.kaching.platform.converters.InstantiatorErrors.unableToInject;
 import static com.kaching.platform.converters.InstantiatorErrors.unableToInstantiate;
 import static com.kaching.platform.converters.InstantiatorErrors.unableToResolveConstant;
 import static com.kaching.platform.converters.InstantiatorErrors.unableToResolveFullyQualifiedConstant;
@@ -41,23 +43,33 @@ import static com.kaching.platform.converters.NativeConverters.C_STRING;
 import static com.kaching.platform.converters.Optional.VALUE_DEFAULT;
 import static java.lang.String.format;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.BitSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
-import com.google.inject.TypeLiteral;
+import com.google.inject.ConfigurationException;
+import com.google.inject.Injector;
+import com.google.inject.ProvisionException;
 import com.kaching.platform.converters.ConstructorAnalysis.AnalysisResult;
 import com.kaching.platform.converters.ConstructorAnalysis.FormalParameter;
 
@@ -76,25 +88,82 @@ class InstantiatorImplFactory<T> {
       .put(Short.TYPE, C_SHORT)
       .build();
 
+  private static final Logger log =
+      Logger.getLogger(InstantiatorImplFactory.class.getName());
+
+  /**
+   * Instantiators generated at compile time, by instantiated class.
+   */
+  private static final ClassValue<Option<Class<?>>> PRECOMPILED =
+      new ClassValue<Option<Class<?>>>() {
+        @Override
+        protected Option<Class<?>> computeValue(Class<?> type) {
+          try {
+            Class<?> precompiled = Class.forName(
+                type.getName() + GeneratedInstantiator.SUFFIX, true, type.getClassLoader());
+            return GeneratedInstantiator.class.isAssignableFrom(precompiled) ?
+                Option.<Class<?>> some(precompiled) : Option.<Class<?>> none();
+          } catch (ClassNotFoundException e) {
+            return Option.none();
+          } catch (LinkageError e) {
+            return Option.none();
+          }
+        }
+      };
+
   private final Errors errors;
   private final ConverterBinderImpl binder;
   private final Class<T> klass;
 
-  private InstantiatorImplFactory(Errors errors, Class<T> klass) {
+  private InstantiatorImplFactory(
+      Errors errors, Class<T> klass, ConverterBinderImpl binder) {
     this.errors = errors;
     this.klass = klass;
-    this.binder = new ConverterBinderImpl(errors);
+    this.binder = binder;
   }
 
   static <T> InstantiatorImplFactory<T> createFactory(Errors errors, Class<T> klass) {
-    return new InstantiatorImplFactory<T>(errors, klass);
+    return new InstantiatorImplFactory<T>(errors, klass, new ConverterBinderImpl(errors));
+  }
+
+  /**
+   * Creates a factory using a binder which has already been configured, and
+   * may be shared with other factories.
+   */
+  static <T> InstantiatorImplFactory<T> createFactory(
+      Errors errors, Class<T> klass, ConverterBinderImpl binder) {
+    return new InstantiatorImplFactory<T>(errors, klass, binder);
   }
 
   ConverterBinder binder() {
     return binder;
   }
 
+  /**
+   * Creates the instantiator, wrapped in a {@link TieredInstantiator} when
+   * using {@link InstantiationStrategy#TIERED} unless it was generated at
+   * compile time.
+   */
+  Option<? extends Instantiator<T>> create() {
+    Option<InstantiatorImpl<T>> instantiator = build();
+    if (binder.getInstantiationStrategy() != InstantiationStrategy.TIERED) {
+      return instantiator;
+    }
+    for (InstantiatorImpl<T> reflective : instantiator) {
+      if (!reflective.isGenerated()) {
+        return Option.some(new TieredInstantiator<T>(
+            reflective, new Generator(), binder.getGenerationThreshold(),
+            binder.getExecutor()));
+      }
+    }
+    return instantiator;
+  }
+
   Option<InstantiatorImpl<T>> build() {
+    return build(binder.getInstantiationStrategy());
+  }
+
+  private Option<InstantiatorImpl<T>> build(InstantiationStrategy strategy) {
     // 1. find constructor
     for (Constructor<T> constructor : getConstructor()) {
       constructor.setAccessible(true);
@@ -214,7 +283,56 @@ class InstantiatorImplFactory<T> {
           }
         }
       }
-      // 3. reverse mapping (fields to parameters)
+      // 3. reverse mapping (fields to parameters), known without analysis if
+      // the instantiator was generated at compile time, otherwise deferred
+      // until instances are destantiated unless code is generated or asked to
+      // analyse eagerly
+      for (Class<?> precompiled : PRECOMPILED.get(klass)) {
+        if (errors.hasErrors()) {
+          return Option.none();
+        }
+        Option<InstantiatorImpl<T>> instantiator = createPrecompiled(
+            precompiled, constructor, converters, optionality, wrapInOption,
+            defaultValues, defaultConstants);
+        if (instantiator.isDefined() || errors.hasErrors()) {
+          return instantiator;
+        }
+      }
+      boolean storeFields = strategy == InstantiationStrategy.FIELD_STORES;
+      boolean generate = strategy == InstantiationStrategy.BYTECODE || storeFields;
+      if (!generate && !binder.isAnalysingEagerly()) {
+        if (errors.hasErrors()) {
+          return Option.none();
+        }
+        Option<String[]> reflectedParameterNames = getReflectedParameterNames(constructor);
+        Supplier<AnalysisResult> analysis = Suppliers.memoize(new DeferredAnalysis(
+            klass, constructor, reflectedParameterNames.isEmpty()));
+        final Supplier<Field[]> fields = Suppliers.memoize(new DeferredFields(
+            klass, parametersCount, analysis));
+        // names known now are indexed now, others once analysed
+        Supplier<NameIndex> names = reflectedParameterNames.isDefined() ?
+            Suppliers.ofInstance(new NameIndex(reflectedParameterNames.getOrThrow())) :
+            Suppliers.memoize(Suppliers.compose(NAME_INDEX, analysis));
+        for (Executor executor : binder.getExecutor()) {
+          try {
+            executor.execute(new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  fields.get();
+                } catch (RuntimeException e) {
+                  // reported again when destantiating
+                }
+              }
+            });
+          } catch (RejectedExecutionException e) {
+            // analysed when destantiating
+          }
+        }
+        return Option.some(new InstantiatorImpl<T>(
+            constructor, converters, fields, optionality, wrapInOption,
+            defaultValues, defaultConstants, names, null));
+      }
       Field[] fields = null;
       AnalysisResult analysisResult = null;
       try {
@@ -226,11 +344,28 @@ class InstantiatorImplFactory<T> {
       } catch (ConstructorAnalysis.IllegalConstructorException e) {
         illegalConstructor(errors, klass, e.getMessage());
       }
-      // 4. done
+      // 4. generate code, if asked to, bypassing the constructor if asked to
+      // and proven possible
+      GeneratedInstantiator<T> generated = null;
+      if (!errors.hasErrors() && generate) {
+        Option<GeneratedClassCache> cache = Option.none();
+        for (File directory : binder.getCacheDirectory()) {
+          cache = Option.some(new GeneratedClassCache(directory));
+        }
+        Option<FieldStores> stores = storeFields ?
+            FieldStores.create(constructor, fields, analysisResult) :
+            Option.<FieldStores> none();
+        generated = InstantiatorGenerator.generate(
+            cache, stores, constructor, converters, fields, optionality, wrapInOption,
+            defaultValues, defaultConstants).getOrNull();
+      }
+      // 5. done
       if (!errors.hasErrors()) {
         return Option.some(new InstantiatorImpl<T>(
             constructor, converters, fields, optionality, wrapInOption, defaultValues,
-            defaultConstants, analysisResult.paramaterNames));
+            defaultConstants,
+            getReflectedParameterNames(constructor).getOrElse(analysisResult.paramaterNames),
+            generated));
       } else {
         return Option.none();
       }
@@ -238,6 +373,158 @@ class InstantiatorImplFactory<T> {
     return Option.none();
   }
 
+  /**
+   * Creates an instantiator using {@code precompiled}, generated at compile
+   * time by {@link InstantiatorProcessor}, or returns {@link Option#none()} if
+   * it was generated for another constructor or cannot be used.
+   */
+  @SuppressWarnings("unchecked")
+  private Option<InstantiatorImpl<T>> createPrecompiled(
+      Class<?> precompiled,
+      Constructor<T> constructor,
+      Converter<?>[] converters,
+      BitSet optionality,
+      BitSet wrapInOption,
+      String[] defaultValues,
+      Object[] defaultConstants) {
+    Class<?>[] parameterTypes = constructor.getParameterTypes();
+    String[] parameterNames;
+    String[] fieldNames;
+    GeneratedInstantiator<T> generated;
+    try {
+      parameterNames = ((String[]) precompiled
+          .getField(GeneratedInstantiator.PARAMETER_NAMES).get(null)).clone();
+      fieldNames = (String[]) precompiled
+          .getField(GeneratedInstantiator.FIELD_NAMES).get(null);
+      if (parameterNames.length != parameterTypes.length ||
+          fieldNames.length != parameterTypes.length) {
+        return Option.none();
+      }
+      Map<String, FormalParameter> assignments = newHashMap();
+      for (int i = 0; i < fieldNames.length; i++) {
+        if (fieldNames[i] != null) {
+          assignments.put(fieldNames[i], new FormalParameter(i, parameterTypes[i]));
+        }
+      }
+      Field[] fields = retrieveFieldsFromAssignment(parameterTypes.length, assignments);
+      if (errors.hasErrors()) {
+        return Option.none();
+      }
+      generated = (GeneratedInstantiator<T>) precompiled
+          .getConstructor(Converter[].class, Field[].class, String[].class, Object[].class)
+          .newInstance(converters, fields, defaultValues, defaultConstants);
+      return Option.some(new InstantiatorImpl<T>(
+          constructor, converters, fields, optionality, wrapInOption,
+          defaultValues, defaultConstants, parameterNames, generated));
+    } catch (Exception e) {
+      log.fine(format("unable to use %s: %s", precompiled, e));
+      return Option.none();
+    }
+  }
+
+  /**
+   * Gets the names of the parameters of {@code constructor} if they are
+   * available through reflection, i.e. if its class was compiled with
+   * {@code -parameters}.
+   */
+  @VisibleForTesting
+  static Option<String[]> getReflectedParameterNames(Constructor<?> constructor) {
+    Parameter[] parameters = constructor.getParameters();
+    String[] names = new String[parameters.length];
+    for (int i = 0; i < parameters.length; i++) {
+      if (!parameters[i].isNamePresent()) {
+        return Option.none();
+      }
+      names[i] = parameters[i].getName();
+    }
+    return Option.some(names);
+  }
+
+  private static final Function<AnalysisResult, NameIndex> NAME_INDEX =
+      new Function<AnalysisResult, NameIndex>() {
+        @Override
+        public NameIndex apply(AnalysisResult analysis) {
+          return analysis.paramaterNames == null ?
+              null : new NameIndex(analysis.paramaterNames);
+        }
+      };
+
+  /**
+   * Generates code for a tiered instantiator. Converters and analyses are
+   * shared with the reflective instantiator through the binder and memos.
+   */
+  private class Generator implements Supplier<Option<InstantiatorImpl<T>>> {
+    @Override
+    public Option<InstantiatorImpl<T>> get() {
+      Errors errors = new Errors();
+      Option<InstantiatorImpl<T>> generated =
+          createFactory(errors, klass, binder).build(InstantiationStrategy.BYTECODE);
+      errors.throwIfHasErrors();
+      for (InstantiatorImpl<T> instantiator : generated) {
+        if (instantiator.isGenerated()) {
+          return generated;
+        }
+      }
+      return Option.none();
+    }
+  }
+
+  /**
+   * Analyses a constructor on first use. Failures are thrown since they can
+   * no longer be reported while building.
+   */
+  private static class DeferredAnalysis implements Supplier<AnalysisResult> {
+
+    private final Class<?> klass;
+    private final Constructor<?> constructor;
+    private final boolean readParameterNames;
+
+    DeferredAnalysis(Class<?> klass, Constructor<?> constructor, boolean readParameterNames) {
+      this.klass = klass;
+      this.constructor = constructor;
+      this.readParameterNames = readParameterNames;
+    }
+
+    @Override
+    public AnalysisResult get() {
+      try {
+        return ConstructorAnalysis.analyse(klass, constructor, readParameterNames);
+      } catch (IOException e) {
+        throw new IllegalStateException("should be able to access the class");
+      } catch (ConstructorAnalysis.IllegalConstructorException e) {
+        throw new RuntimeException(
+            illegalConstructor(new Errors(), klass, e.getMessage()).toString());
+      }
+    }
+
+  }
+
+  /**
+   * Finds the fields read to destantiate from a deferred analysis.
+   */
+  private static class DeferredFields implements Supplier<Field[]> {
+
+    private final Class<?> klass;
+    private final int parametersCount;
+    private final Supplier<AnalysisResult> analysis;
+
+    DeferredFields(Class<?> klass, int parametersCount, Supplier<AnalysisResult> analysis) {
+      this.klass = klass;
+      this.parametersCount = parametersCount;
+      this.analysis = analysis;
+    }
+
+    @Override
+    public Field[] get() {
+      Errors errors = new Errors();
+      Field[] fields = retrieveFieldsFromAssignment(
+          errors, klass, parametersCount, analysis.get().assignments);
+      errors.throwIfHasErrors();
+      return fields;
+    }
+
+  }
+
   private Option<Optional> getOptionalAnnotation(Annotation[] annotations) {
     for (Annotation annotation : annotations) {
       if (annotation instanceof Optional) {
@@ -247,33 +534,40 @@ class InstantiatorImplFactory<T> {
     return Option.none();
   }
 
-  @SuppressWarnings({ "unchecked", "rawtypes" })
   Option<? extends Converter<?>> createConverter(Type targetType) {
+    ConverterRegistrations registrations = binder.getRegistrations();
+    Converter<?> resolved = registrations.getResolved(targetType);
+    if (resolved != null) {
+      return Option.some(resolved);
+    }
+    int sizeBefore = errors.size();
+    Option<? extends Converter<?>> maybeConverter =
+        resolveConverter(registrations, targetType);
+    if (maybeConverter.isDefined() && sizeBefore == errors.size()) {
+      return Option.some(
+          registrations.putResolved(targetType, maybeConverter.getOrThrow()));
+    }
+    return maybeConverter;
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private Option<? extends Converter<?>> resolveConverter(
+      ConverterRegistrations registrations, Type targetType) {
     int sizeBefore = errors.size();
     // 1. explicit binding
-    Map<TypeLiteral<?>, Converter<?>> instances = binder.getInstances();
-    Map<TypeLiteral<?>, Class<? extends Converter<?>>> bindings = binder.getBindings();
-    List<Function<Type, Option<? extends Converter<?>>>> functions = binder.getFunctions();
-    if (instances != null) {
-      for (Entry<TypeLiteral<?>, Converter<?>> entry : instances.entrySet()) {
-        if (TypesUtil.isInstance(entry.getKey().getType(), targetType)) {
-          return Option.some(entry.getValue());
-        }
-      }
+    for (Converter<?> instance : registrations.getInstances(targetType)) {
+      return Option.some(instance);
     }
-    if (bindings != null) {
-      for (Entry<TypeLiteral<?>, Class<? extends Converter<?>>> entry : bindings.entrySet()) {
-        if (TypesUtil.isInstance(entry.getKey().getType(), targetType)) {
-          for (Converter<?> converter : instantiateConverter(entry.getValue(), targetType)) {
-            return Option.some(converter);
-          }
-        }
+    for (Class<? extends Converter<?>> converterClass : registrations.getBindings(targetType)) {
+      for (Converter<?> converter : instantiateConverter(converterClass, targetType)) {
+        return Option.some(converter);
       }
     }
 
     // 2. function
     Converter<?> foundConverter = null;
-    for (Function<Type, Option<? extends Converter<?>>> function : functions) {
+    for (Function<Type, Option<? extends Converter<?>>> function :
+        registrations.getFunctions(targetType)) {
       Option<? extends Converter<?>> option = function.apply(targetType);
       if (option.isDefined()) {
         if (foundConverter == null) {
@@ -348,6 +642,12 @@ class InstantiatorImplFactory<T> {
   @VisibleForTesting
   Field[] retrieveFieldsFromAssignment(
       int parametersCount, Map<String, FormalParameter> assignments) {
+    return retrieveFieldsFromAssignment(errors, klass, parametersCount, assignments);
+  }
+
+  private static Field[] retrieveFieldsFromAssignment(
+      Errors errors, Class<?> klass,
+      int parametersCount, Map<String, FormalParameter> assignments) {
     Field[] fields = new Field[parametersCount];
     outer: for (Entry<String, FormalParameter> entry : assignments.entrySet()) {
       int parameterIndex = entry.getValue().getIndex();
@@ -410,19 +710,26 @@ class InstantiatorImplFactory<T> {
     return Option.some(new StringConstructorConverter<Object>(stringConstructor));
   }
 
-  // TODO(pascal) We should Guice this up.
   private Option<? extends Converter<?>> instantiateConverter(
-      Class<? extends Converter<?>> converterClass, Type targetType) {
+      final Class<? extends Converter<?>> converterClass, Type targetType) {
     try {
       Type producedType =
           Unification.getActualTypeArgument(converterClass, Converter.class, 0);
-      if (TypesUtil.isInstance(producedType, targetType)) {
-        Constructor<? extends Converter<?>> ctor = converterClass.getDeclaredConstructor();
-        ctor.setAccessible(true);
-        return Option.some(ctor.newInstance());
+      if (binder.getRegistrations().isInstance(producedType, targetType)) {
+        return Option.some(binder.getConverter(converterClass,
+            new Callable<Converter<?>>() {
+              @Override
+              public Converter<?> call() throws Exception {
+                return newConverter(converterClass);
+              }
+            }));
       } else {
         incorrectBoundForConverter(errors, targetType, converterClass, producedType);
       }
+    } catch (ConfigurationException e) {
+      unableToInject(errors, converterClass, e);
+    } catch (ProvisionException e) {
+      unableToInject(errors, converterClass, e);
     } catch (InstantiationException e) {
       unableToInstantiate(errors, converterClass, e);
     } catch (IllegalAccessException e) {
@@ -435,10 +742,23 @@ class InstantiatorImplFactory<T> {
       unableToInstantiate(errors, converterClass, e);
     } catch (InvocationTargetException e) {
       unableToInstantiate(errors, converterClass, e);
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
     }
     return Option.none();
   }
 
+  private Converter<?> newConverter(Class<? extends Converter<?>> converterClass)
+      throws InstantiationException, IllegalAccessException, NoSuchMethodException,
+      InvocationTargetException {
+    for (Injector injector : binder.getInjector()) {
+      return injector.getInstance(converterClass);
+    }
+    Constructor<? extends Converter<?>> ctor = converterClass.getDeclaredConstructor();
+    ctor.setAccessible(true);
+    return ctor.newInstance();
+  }
+
   @VisibleForTesting
   Option<Constructor<T>> getConstructor() {
     @SuppressWarnings("unchecked")
@@ -0,0 +1,640 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newHashSet;
+import static com.kaching.platform.converters.Optional.VALUE_DEFAULT;
+import static java.lang.String.format;
+import static javax.lang.model.element.Modifier.ABSTRACT;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+import static javax.lang.model.element.Modifier.STATIC;
+import static javax.tools.Diagnostic.Kind.ERROR;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.ExpressionStatementTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+
+/**
+ * Generates, at compile time, the instantiators of classes annotated with
+ * {@link GenerateInstantiator}. The rules applied at runtime by
+ * {@link InstantiatorImplFactory} and {@link ConstructorAnalysis} are applied
+ * on source, and violations are reported as compilation errors: the
+ * constructor is chosen in the same way, {@link Optional} parameters must be
+ * well formed, and the constructor must be idempotent.
+ *
+ * <p>Constructors are read using the compiler tree API, hence this processor
+ * requires javac. Since bytecode is not available yet, a subset of the
+ * constructors accepted by {@link ConstructorAnalysis} is accepted: a call to
+ * the super constructor without arguments followed by assignments to fields of
+ * either a parameter, as is, or of an expression not involving any
+ * parameter.</p>
+ *
+ * <p>Converters, default values and default constants are still resolved
+ * when creating the instantiator, honoring modules and {@link ConvertedBy},
+ * and handed to the generated instantiator. For a class {@code Outer.Inner},
+ * the generated class is {@code Outer$Inner$$Instantiator} in the same
+ * package.</p>
+ */
+@SupportedAnnotationTypes("com.kaching.platform.converters.GenerateInstantiator")
+public class InstantiatorProcessor extends AbstractProcessor {
+
+  private static final String BASE = GeneratedInstantiator.class.getName();
+  private static final String OPTION = Option.class.getName();
+
+  private Trees trees;
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    try {
+      trees = Trees.instance(processingEnv);
+    } catch (IllegalArgumentException e) {
+      // not running in javac, reported when processing
+      trees = null;
+    }
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (Element element : roundEnv.getElementsAnnotatedWith(GenerateInstantiator.class)) {
+      if (trees == null) {
+        error(element, "instantiators can only be generated when compiling with javac");
+      } else if (element.getKind() != ElementKind.CLASS) {
+        error(element, "instantiators can only be generated for classes");
+      } else {
+        process((TypeElement) element);
+      }
+    }
+    return true;
+  }
+
+  private void process(TypeElement type) {
+    if (type.getModifiers().contains(ABSTRACT)) {
+      error(type, "cannot generate the instantiator of abstract %s", type);
+      return;
+    }
+    if (type.getNestingKind() != NestingKind.TOP_LEVEL &&
+        (type.getNestingKind() != NestingKind.MEMBER ||
+            !type.getModifiers().contains(STATIC))) {
+      error(type, "cannot generate the instantiator of %s which is not static", type);
+      return;
+    }
+    if (!isAccessible(type, type)) {
+      error(type, "cannot generate the instantiator of private %s", type);
+      return;
+    }
+    ExecutableElement constructor = getConstructor(type);
+    if (constructor == null) {
+      return;
+    }
+    List<? extends VariableElement> parameters = constructor.getParameters();
+    Parameter[] analysed = new Parameter[parameters.size()];
+    boolean valid = true;
+    for (int i = 0; i < analysed.length; i++) {
+      analysed[i] = analyseParameter(type, i, parameters.get(i));
+      valid &= analysed[i] != null;
+    }
+    String[] fieldNames = analyseConstructor(type, constructor);
+    if (!valid || fieldNames == null) {
+      return;
+    }
+    for (int i = 0; i < analysed.length; i++) {
+      if (fieldNames[i] != null) {
+        VariableElement field = getField(type, fieldNames[i]);
+        if (field == null) {
+          error(constructor, "no such field %s", fieldNames[i]);
+          return;
+        }
+        analysed[i].field = fieldNames[i];
+        analysed[i].readDirectly = !field.getModifiers().contains(PRIVATE) &&
+            isAccessible((TypeElement) field.getEnclosingElement(), type) &&
+            getPackage(field).equals(getPackage(type));
+      }
+    }
+    try {
+      write(type, analysed);
+    } catch (IOException e) {
+      error(type, "unable to write the instantiator of %s due to %s", type, e);
+    }
+  }
+
+  /* Mirrors InstantiatorImplFactory#getConstructor.
+   */
+  private ExecutableElement getConstructor(TypeElement type) {
+    List<ExecutableElement> constructors =
+        ElementFilter.constructorsIn(type.getEnclosedElements());
+    ExecutableElement constructor = null;
+    if (constructors.size() == 1) {
+      constructor = constructors.get(0);
+    } else {
+      for (ExecutableElement candidate : constructors) {
+        if (candidate.getAnnotation(Instantiate.class) != null) {
+          if (constructor != null) {
+            error(type, "%s has more than one constructor annotated with @%s",
+                type, Instantiate.class.getSimpleName());
+            return null;
+          }
+          constructor = candidate;
+        }
+      }
+      if (constructor == null) {
+        error(type, "%s has more than one constructors", type);
+        return null;
+      }
+    }
+    if (constructor.getModifiers().contains(PRIVATE)) {
+      error(constructor, "cannot generate the instantiator of %s whose constructor is private",
+          type);
+      return null;
+    }
+    return constructor;
+  }
+
+  private Parameter analyseParameter(TypeElement type, int i, VariableElement parameter) {
+    TypeMirror parameterType = parameter.asType();
+    Parameter analysed = new Parameter(parameter.getSimpleName().toString());
+    analysed.wrapInOption = isOption(parameterType);
+    Optional optional = parameter.getAnnotation(Optional.class);
+    if (optional != null) {
+      if (analysed.wrapInOption) {
+        error(parameter, "cannot annotate %s with @Optional", parameterType);
+        return null;
+      }
+      boolean hasDefaultValue = !optional.value().equals(VALUE_DEFAULT);
+      boolean hasDefaultConstant = !optional.constant().isEmpty();
+      if (hasDefaultValue && hasDefaultConstant) {
+        error(parameter, "cannot specify both a default constant and a default value");
+        return null;
+      }
+      if (parameterType.getKind().isPrimitive() && !hasDefaultValue && !hasDefaultConstant) {
+        error(parameter,
+            "parameter %s: optional literal parameters must have a default value", i);
+        return null;
+      }
+      analysed.optional = true;
+    }
+    TypeMirror erasure = processingEnv.getTypeUtils().erasure(parameterType);
+    if (erasure.getKind().isPrimitive()) {
+      analysed.primitive = erasure.toString();
+      analysed.type = processingEnv.getTypeUtils()
+          .boxedClass((PrimitiveType) erasure).getQualifiedName().toString();
+    } else {
+      if (!isAccessible(erasure, type)) {
+        error(parameter, "cannot generate the instantiator of %s since %s is not accessible",
+            type, parameterType);
+        return null;
+      }
+      analysed.type = erasure.toString();
+    }
+    return analysed;
+  }
+
+  /**
+   * Finds, for each parameter, the field it is assigned to or {@code null}.
+   * Returns {@code null} if the constructor is illegal.
+   */
+  private String[] analyseConstructor(TypeElement type, ExecutableElement constructor) {
+    List<String> parameterNames = newArrayList();
+    for (VariableElement parameter : constructor.getParameters()) {
+      parameterNames.add(parameter.getSimpleName().toString());
+    }
+    String[] fieldNames = new String[parameterNames.size()];
+    MethodTree tree = trees.getTree(constructor);
+    if (tree == null || tree.getBody() == null) {
+      if (parameterNames.isEmpty()) {
+        return fieldNames;
+      }
+      error(constructor, "unable to read the constructor of %s", type);
+      return null;
+    }
+    Set<String> assigned = newHashSet();
+    for (StatementTree statement : tree.getBody().getStatements()) {
+      String message = null;
+      ExpressionTree expression = statement instanceof ExpressionStatementTree ?
+          ((ExpressionStatementTree) statement).getExpression() : null;
+      if (expression instanceof MethodInvocationTree) {
+        MethodInvocationTree invocation = (MethodInvocationTree) expression;
+        String name = invocation.getMethodSelect().toString();
+        if (name.equals("super")) {
+          if (invocation.getArguments().isEmpty()) {
+            continue;
+          }
+          message = "can not call super constructor with argument(s)";
+        } else if (name.equals("this")) {
+          message = "can not delegate to another constructor";
+        }
+      } else if (expression instanceof AssignmentTree) {
+        AssignmentTree assignment = (AssignmentTree) expression;
+        String field = getAssignedField(assignment.getVariable(), parameterNames);
+        ExpressionTree value = assignment.getExpression();
+        while (value instanceof ParenthesizedTree) {
+          value = ((ParenthesizedTree) value).getExpression();
+        }
+        if (field == null) {
+          message = format("can not assign to %s", assignment.getVariable());
+        } else if (!assigned.add(field)) {
+          message = format("duplicate assignment to field %s", field);
+        } else if (value instanceof IdentifierTree &&
+            parameterNames.contains(((IdentifierTree) value).getName().toString())) {
+          fieldNames[parameterNames.indexOf(((IdentifierTree) value).getName().toString())] =
+              field;
+          continue;
+        } else if (!mentions(value, parameterNames)) {
+          continue;
+        } else {
+          message = format("can not assign non-idempotent expression %s to field", value);
+        }
+      }
+      error(constructor, "%s has an illegal constructor%s",
+          type, message == null ? "" : ": " + message);
+      return null;
+    }
+    return fieldNames;
+  }
+
+  /**
+   * Gets the name of the field assigned by {@code this.field = ...} or
+   * {@code field = ...}, or {@code null}.
+   */
+  private static String getAssignedField(ExpressionTree variable, List<String> parameterNames) {
+    if (variable instanceof MemberSelectTree) {
+      MemberSelectTree select = (MemberSelectTree) variable;
+      return select.getExpression().toString().equals("this") ?
+          select.getIdentifier().toString() : null;
+    } else if (variable instanceof IdentifierTree) {
+      String name = ((IdentifierTree) variable).getName().toString();
+      return parameterNames.contains(name) ? null : name;
+    } else {
+      return null;
+    }
+  }
+
+  private static boolean mentions(ExpressionTree expression, final List<String> names) {
+    Boolean mentions = expression.accept(new TreeScanner<Boolean, Void>() {
+      @Override
+      public Boolean visitIdentifier(IdentifierTree identifier, Void p) {
+        return names.contains(identifier.getName().toString());
+      }
+
+      @Override
+      public Boolean reduce(Boolean r1, Boolean r2) {
+        return Boolean.TRUE.equals(r1) || Boolean.TRUE.equals(r2);
+      }
+    }, null);
+    return Boolean.TRUE.equals(mentions);
+  }
+
+  /* Mirrors the search of InstantiatorImplFactory#retrieveFieldsFromAssignment.
+   */
+  private VariableElement getField(TypeElement type, String name) {
+    while (type != null) {
+      for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+        if (field.getSimpleName().contentEquals(name)) {
+          return field;
+        }
+      }
+      TypeMirror superclass = type.getSuperclass();
+      type = superclass.getKind() == TypeKind.DECLARED ?
+          (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+    return null;
+  }
+
+  private boolean isOption(TypeMirror type) {
+    return type.getKind() == TypeKind.DECLARED &&
+        ((TypeElement) ((DeclaredType) type).asElement())
+            .getQualifiedName().contentEquals(OPTION);
+  }
+
+  private boolean isAccessible(TypeMirror type, TypeElement from) {
+    while (type.getKind() == TypeKind.ARRAY) {
+      type = ((ArrayType) type).getComponentType();
+    }
+    return type.getKind() != TypeKind.DECLARED ||
+        isAccessible((TypeElement) ((DeclaredType) type).asElement(), from);
+  }
+
+  /* Whether type can be named from the package of from.
+   */
+  private boolean isAccessible(TypeElement type, TypeElement from) {
+    boolean samePackage = getPackage(type).equals(getPackage(from));
+    for (Element element = type;
+        element.getKind() != ElementKind.PACKAGE;
+        element = element.getEnclosingElement()) {
+      if (element.getModifiers().contains(PRIVATE) ||
+          (!samePackage && !element.getModifiers().contains(PUBLIC))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private PackageElement getPackage(Element element) {
+    return processingEnv.getElementUtils().getPackageOf(element);
+  }
+
+  private void write(TypeElement type, Parameter[] parameters) throws IOException {
+    PackageElement packageElement = getPackage(type);
+    String packageName = packageElement.isUnnamed() ?
+        "" : packageElement.getQualifiedName().toString();
+    String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+    String name = (packageName.isEmpty() ?
+        binaryName : binaryName.substring(packageName.length() + 1)) +
+        GeneratedInstantiator.SUFFIX;
+    Writer writer = processingEnv.getFiler().createSourceFile(
+        packageName.isEmpty() ? name : packageName + "." + name, type).openWriter();
+    try {
+      writer.write(new Emitter(packageName, name, type.getQualifiedName().toString(),
+          parameters).emit());
+    } finally {
+      writer.close();
+    }
+  }
+
+  private void error(Element element, String message, Object... args) {
+    processingEnv.getMessager().printMessage(ERROR, format(message, args), element);
+  }
+
+  /**
+   * A parameter of the constructor, as needed to generate code.
+   */
+  private static class Parameter {
+
+    final String name;
+    String type;
+    String primitive;
+    boolean optional;
+    boolean wrapInOption;
+    String field;
+    boolean readDirectly;
+
+    Parameter(String name) {
+      this.name = name;
+    }
+
+  }
+
+  /**
+   * Emits the source of a generated instantiator. Parameter {@code i} of the
+   * constructor is converted by {@code p<i>} and {@code s<i>}, and read from
+   * an instance by {@code v<i>}.
+   */
+  private static class Emitter {
+
+    private final StringBuilder out = new StringBuilder();
+    private final String packageName;
+    private final String name;
+    private final String type;
+    private final Parameter[] parameters;
+
+    Emitter(String packageName, String name, String type, Parameter[] parameters) {
+      this.packageName = packageName;
+      this.name = name;
+      this.type = type;
+      this.parameters = parameters;
+    }
+
+    String emit() {
+      int count = parameters.length;
+      if (!packageName.isEmpty()) {
+        line("package %s;", packageName);
+        line("");
+      }
+      line("/**");
+      line(" * Instantiator of {@link %s}, generated by {@link %s}.", type,
+          InstantiatorProcessor.class.getName());
+      line(" */");
+      line("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })");
+      line("public final class %s extends %s<%s> {", name, BASE, type);
+      line("");
+      line("  public static final String[] %s = {%s };",
+          GeneratedInstantiator.PARAMETER_NAMES, names(false));
+      line("  public static final String[] %s = {%s };",
+          GeneratedInstantiator.FIELD_NAMES, names(true));
+      line("");
+      line("  private final %s[] c;", Converter.class.getName());
+      line("  private final java.lang.reflect.Field[] f;");
+      line("  private final String[] d;");
+      line("  private final Object[] k;");
+      line("");
+      line("  public %s(%s[] c, java.lang.reflect.Field[] f, String[] d, Object[] k) {",
+          name, Converter.class.getName());
+      line("    this.c = c;");
+      line("    this.f = f;");
+      line("    this.d = d;");
+      line("    this.k = k;");
+      line("  }");
+      line("");
+      line("  @Override");
+      line("  public %s newInstance(java.util.Iterator<String> values) {", type);
+      for (int i = 0; i < count; i++) {
+        line("    Object a%s = p%s(values.hasNext() ? values.next() : null);", i, i);
+      }
+      line("    if (values.hasNext()) {");
+      line("      throw wrongNumberOfArguments();");
+      line("    }");
+      line("    return create(%s);", arguments());
+      line("  }");
+      line("");
+      line("  @Override");
+      line("  public %s newInstance(String[] values) {", type);
+      for (int i = 0; i < count; i++) {
+        line("    Object a%s = p%s(%s < values.length ? values[%s] : null);", i, i, i, i);
+      }
+      line("    if (values.length > %s) {", count);
+      line("      throw wrongNumberOfArguments();");
+      line("    }");
+      line("    return create(%s);", arguments());
+      line("  }");
+      line("");
+      line("  @Override");
+      line("  public %s newInstance(CharSequence input, int[] offsets, int[] lengths) {", type);
+      for (int i = 0; i < count; i++) {
+        line("    Object a%s = %s < offsets.length && 0 <= offsets[%s] ?", i, i, i);
+        line("        s%s(input, offsets[%s], offsets[%s] + lengths[%s]) : p%s(null);",
+            i, i, i, i, i);
+      }
+      line("    if (offsets.length > %s) {", count);
+      line("      throw wrongNumberOfArguments();");
+      line("    }");
+      line("    return create(%s);", arguments());
+      line("  }");
+      line("");
+      line("  @Override");
+      line("  public %s newInstance(Object[] columns, int row) {", type);
+      StringBuilder cells = new StringBuilder();
+      for (int i = 0; i < count; i++) {
+        cells.append(i == 0 ? "" : ", ").append("a").append(i);
+        if (parameters[i].primitive != null) {
+          line("    %s a%s = ((%s[]) columns[%s])[row];",
+              parameters[i].primitive, i, parameters[i].primitive, i);
+        } else {
+          line("    %s a%s = (%s) ((Object[]) columns[%s])[row];",
+              parameters[i].type, i, parameters[i].type, i);
+        }
+      }
+      emitConstruction(type, cells);
+      line("  }");
+      line("");
+      line("  @Override");
+      line("  public String[] fromInstance(%s instance) {", type);
+      line("    return new String[] {");
+      for (int i = 0; i < count; i++) {
+        line("        toString(c[%s], v%s(instance)),", i, i);
+      }
+      line("    };");
+      line("  }");
+      line("");
+      line("  @Override");
+      line("  public void fromInstance(%s instance, Appendable out, %s delimiting)",
+          type, Delimiting.class.getName());
+      line("      throws java.io.IOException {");
+      for (int i = 0; i < count; i++) {
+        if (i != 0) {
+          line("    appendSeparator(out, delimiting);");
+        }
+        line("    append(c[%s], v%s(instance), out, delimiting);", i, i);
+      }
+      line("  }");
+      line("");
+      StringBuilder formals = new StringBuilder();
+      StringBuilder actuals = new StringBuilder();
+      for (int i = 0; i < count; i++) {
+        formals.append(i == 0 ? "" : ", ").append("Object a").append(i);
+        actuals.append(i == 0 ? "" : ", ")
+            .append("(").append(parameters[i].type).append(") a").append(i);
+      }
+      line("  private %s create(%s) {", type, formals);
+      emitConstruction(type, actuals);
+      line("  }");
+      for (int i = 0; i < count; i++) {
+        emitParameter(i, parameters[i]);
+      }
+      line("");
+      line("}");
+      return out.toString();
+    }
+
+    /* Wraps what the constructor throws as reflective instantiation does. */
+    private void emitConstruction(String type, CharSequence arguments) {
+      line("    try {");
+      line("      return new %s(%s);", type, arguments);
+      line("    } catch (Throwable e) {");
+      line("      throw constructorFailure(e);");
+      line("    }");
+    }
+
+    private void emitParameter(int i, Parameter parameter) {
+      line("");
+      line("  private Object p%s(String value) {", i);
+      line("    if (value == null) {");
+      if (parameter.wrapInOption) {
+        line("      return %s.none();", OPTION);
+      } else if (parameter.optional) {
+        line("      return d != null && d[%s] != null ? convert(c[%s], d[%s]) :", i, i, i);
+        line("          k != null ? k[%s] : null;", i);
+      } else {
+        line("      throw notOptional(%s);", i + 1);
+      }
+      line("    }");
+      line("    return %s;", wrap(parameter, format("convert(c[%s], value)", i)));
+      line("  }");
+      line("");
+      line("  private Object s%s(CharSequence input, int start, int end) {", i);
+      line("    return %s;", wrap(parameter, format("convert(c[%s], input, start, end)", i)));
+      line("  }");
+      line("");
+      line("  private Object v%s(%s instance) {", i, type);
+      String value;
+      if (parameter.field == null) {
+        value = "null";
+      } else if (parameter.readDirectly) {
+        value = "instance." + parameter.field;
+      } else {
+        value = format("get(f[%s], instance)", i);
+      }
+      if (parameter.wrapInOption) {
+        line("    %s value = (%s) %s;", OPTION, OPTION, value);
+        line("    return value == null ? null : value.getOrElse(null);");
+      } else {
+        line("    return %s;", value);
+      }
+      line("  }");
+    }
+
+    private String wrap(Parameter parameter, String expression) {
+      return parameter.wrapInOption ? format("%s.some(%s)", OPTION, expression) : expression;
+    }
+
+    private String names(boolean fields) {
+      StringBuilder names = new StringBuilder();
+      for (int i = 0; i < parameters.length; i++) {
+        String name = fields ? parameters[i].field : parameters[i].name;
+        names.append(i == 0 ? " " : ", ")
+            .append(name == null ? "null" : "\"" + name + "\"");
+      }
+      return names.toString();
+    }
+
+    private String arguments() {
+      StringBuilder arguments = new StringBuilder();
+      for (int i = 0; i < parameters.length; i++) {
+        arguments.append(i == 0 ? "" : ", ").append("a").append(i);
+      }
+      return arguments.toString();
+    }
+
+    private void line(String line, Object... args) {
+      out.append(args.length == 0 ? line : format(line, args)).append('\n');
+    }
+
+  }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A cache of instantiators, built at most once per class and configuration.
+ * Modules are configured on every request and the resulting configurations
+ * compared, so that equal modules created afresh on every request share an
+ * instantiator. Converter instances and functions are compared using their
+ * {@code equals} if their class defines it, or else by class if their class
+ * holds no state, references to an enclosing module aside. Modules
+ * registering other converter instances or functions should be reused, since
+ * these are compared by identity and every new one adds an instantiator.
+ *
+ * <p>Instantiators are attached to their class using a {@link ClassValue} and
+ * therefore do not prevent classes from being unloaded. Concurrent requests
+ * for an instantiator which is not yet built wait for a single build. Builds
+ * which fail are not cached.</p>
+ */
+public class InstantiatorRegistry {
+
+  private static final InstantiatorRegistry GLOBAL = new InstantiatorRegistry();
+
+  private final ClassValue<ConcurrentMap<Object, FutureTask<Instantiator<?>>>>
+      instantiators =
+          new ClassValue<ConcurrentMap<Object, FutureTask<Instantiator<?>>>>() {
+            @Override
+            protected ConcurrentMap<Object, FutureTask<Instantiator<?>>>
+                computeValue(Class<?> klass) {
+              return new ConcurrentHashMap<Object, FutureTask<Instantiator<?>>>();
+            }
+          };
+
+  /**
+   * Gets a registry shared by the whole process.
+   */
+  public static InstantiatorRegistry global() {
+    return GLOBAL;
+  }
+
+  /**
+   * Gets the instantiator for {@code klass} configured by {@code modules},
+   * creating it if needed as {@link Instantiators#createInstantiator} does.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Instantiator<T> getInstantiator(
+      final Class<T> klass, final InstantiatorModule... modules) {
+    ConcurrentMap<Object, FutureTask<Instantiator<?>>> byModules =
+        instantiators.get(klass);
+    final Errors errors = new Errors();
+    final ConverterBinderImpl binder = new ConverterBinderImpl(errors);
+    for (InstantiatorModule module : modules) {
+      module.configure(binder);
+    }
+    Object key = binder.fingerprint();
+    FutureTask<Instantiator<?>> task = byModules.get(key);
+    if (task == null) {
+      FutureTask<Instantiator<?>> newTask = new FutureTask<Instantiator<?>>(
+          new Callable<Instantiator<?>>() {
+            @Override
+            public Instantiator<?> call() {
+              for (Instantiator<T> instantiator : InstantiatorImplFactory
+                  .createFactory(errors, klass, binder).create()) {
+                return instantiator;
+              }
+              errors.throwIfHasErrors();
+              throw new IllegalStateException();
+            }
+          });
+      task = byModules.putIfAbsent(key, newTask);
+      if (task == null) {
+        task = newTask;
+        task.run();
+      }
+    }
+    try {
+      return (Instantiator<T>) task.get();
+    } catch (ExecutionException e) {
+      byModules.remove(key, task);
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      } else {
+        throw new RuntimeException(e.getCause());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+}
@@ -11,6 +11,9 @@
 package com.kaching.platform.converters;
 
 import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 import com.google.inject.TypeLiteral;
 
@@ -46,7 +49,19 @@ public class Instantiators {
   public static <T> Option<Instantiator<T>> createInstantiator(
       Errors errors, Class<T> klass, InstantiatorModule... modules) {
     // we do not want to expose the covariant option
-    return (Option) factoryFor(errors, klass, modules).build();
+    return (Option) factoryFor(errors, klass, modules).create();
+  }
+
+  /**
+   * Creates instantiators for all {@code classes}, building them concurrently
+   * on {@code executor}. Modules are configured once and converters are
+   * shared between the instantiators. If any instantiator cannot be created,
+   * the errors of all classes are reported at once.
+   */
+  public static Map<Class<?>, Instantiator<?>> createInstantiators(
+      Collection<? extends Class<?>> classes, Executor executor,
+      InstantiatorModule... modules) {
+    return createEnvironment(modules).createInstantiators(classes, executor);
   }
 
   /**
@@ -65,6 +80,18 @@ public class Instantiators {
     return createConverterForType(typeLiteral.getType(), modules);
   }
 
+  /**
+   * Creates an environment configured by {@code modules}, from which many
+   * instantiators and converters can be created without configuring the
+   * modules again.
+   */
+  public static ConverterEnvironment createEnvironment(InstantiatorModule... modules) {
+    Errors errors = new Errors();
+    ConverterEnvironment environment = new ConverterEnvironment(errors, modules);
+    errors.throwIfHasErrors();
+    return environment;
+  }
+
   private static <T> InstantiatorImplFactory<T> factoryFor(
       Errors errors, Class<T> klass,
       InstantiatorModule... modules) {
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Maps parameter names to their position in the constructor. Names are kept
+ * sorted so that looking one up is a binary search, which neither hashes nor
+ * allocates. Parameters whose name is unknown, i.e. {@code null}, cannot be
+ * looked up.
+ */
+class NameIndex {
+
+  private final String[] names;
+  private final String[] sortedNames;
+  private final int[] positions;
+
+  NameIndex(final String[] names) {
+    int known = 0;
+    for (String name : names) {
+      if (name != null) {
+        known++;
+      }
+    }
+    Integer[] order = new Integer[known];
+    for (int i = 0, j = 0; i < names.length; i++) {
+      if (names[i] != null) {
+        order[j++] = i;
+      }
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return names[o1].compareTo(names[o2]);
+      }
+    });
+    this.names = names;
+    this.sortedNames = new String[known];
+    this.positions = new int[known];
+    for (int i = 0; i < order.length; i++) {
+      sortedNames[i] = names[order[i]];
+      positions[i] = order[i];
+    }
+  }
+
+  /**
+   * Gets the names of the parameters, in order, which must not be modified.
+   */
+  String[] names() {
+    return names;
+  }
+
+  /**
+   * Gets the position of the parameter named {@code name}, or {@code -1} if
+   * there is no such parameter.
+   */
+  int indexOf(String name) {
+    if (name == null) {
+      return -1;
+    }
+    int index = Arrays.binarySearch(sortedNames, name);
+    return index < 0 ? -1 : positions[index];
+  }
+
+}
@@ -12,6 +12,8 @@ package com.kaching.platform.converters;
 
 import static java.lang.String.format;
 
+import java.io.IOException;
+
 class NativeConverters {
 
   static abstract class ConverterWithToString<T> implements Converter<T> {
@@ -21,55 +23,267 @@ class NativeConverters {
     }
   }
 
-  static final Converter<String> C_STRING = new ConverterWithToString<String>() {
+  static abstract class NativeStringConverter extends ConverterWithToString<String>
+      implements CharSequenceConverter<String>, AppendingConverter<String> {
+  }
+
+  interface NativeIntConverter extends
+      IntConverter, CharSequenceConverter<Integer>, AppendingConverter<Integer> {
+  }
+
+  interface NativeDoubleConverter extends
+      DoubleConverter, CharSequenceConverter<Double>, AppendingConverter<Double> {
+  }
+
+  interface NativeLongConverter extends
+      LongConverter, CharSequenceConverter<Long>, AppendingConverter<Long> {
+  }
+
+  interface NativeShortConverter extends
+      ShortConverter, CharSequenceConverter<Short>, AppendingConverter<Short> {
+  }
+
+  interface NativeCharConverter extends
+      CharConverter, CharSequenceConverter<Character>, AppendingConverter<Character> {
+  }
+
+  interface NativeBooleanConverter extends
+      BooleanConverter, CharSequenceConverter<Boolean>, AppendingConverter<Boolean> {
+  }
+
+  interface NativeFloatConverter extends
+      FloatConverter, CharSequenceConverter<Float>, AppendingConverter<Float> {
+  }
+
+  interface NativeByteConverter extends
+      ByteConverter, CharSequenceConverter<Byte>, AppendingConverter<Byte> {
+  }
+
+  static final NativeStringConverter C_STRING = new NativeStringConverter() {
     @Override
     public String fromString(String representation) {
       return representation;
     }
+    @Override
+    public String fromCharSequence(CharSequence representation, int start, int end) {
+      return representation.subSequence(start, end).toString();
+    }
+    @Override
+    public void appendTo(String value, Appendable out) throws IOException {
+      out.append(value);
+    }
   };
 
-  static final Converter<Integer> C_INT = new ConverterWithToString<Integer>() {
+  static final NativeIntConverter C_INT = new NativeIntConverter() {
+    @Override
+    public void appendTo(Integer value, Appendable out) throws IOException {
+      appendTo(value.intValue(), out);
+    }
+    @Override
+    public void appendTo(int value, Appendable out) throws IOException {
+      if (out instanceof StringBuilder) {
+        ((StringBuilder) out).append(value);
+      } else {
+        out.append(toString(value));
+      }
+    }
+    @Override
+    public Integer fromCharSequence(CharSequence representation, int start, int end) {
+      return (int) parseLong(representation, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
     @Override
     public Integer fromString(String representation) {
+      return fromStringAsInt(representation);
+    }
+    @Override
+    public int fromStringAsInt(String representation) {
       return Integer.parseInt(representation);
     }
+    @Override
+    public String toString(Integer value) {
+      return toString(value.intValue());
+    }
+    @Override
+    public String toString(int value) {
+      return Integer.toString(value);
+    }
   };
 
-  static final Converter<Double> C_DOUBLE = new ConverterWithToString<Double>() {
+  static final NativeDoubleConverter C_DOUBLE = new NativeDoubleConverter() {
+    @Override
+    public void appendTo(Double value, Appendable out) throws IOException {
+      appendTo(value.doubleValue(), out);
+    }
+    @Override
+    public void appendTo(double value, Appendable out) throws IOException {
+      if (out instanceof StringBuilder) {
+        ((StringBuilder) out).append(value);
+      } else {
+        out.append(toString(value));
+      }
+    }
+    @Override
+    public Double fromCharSequence(CharSequence representation, int start, int end) {
+      // The JDK offers no way to parse doubles without a string.
+      return Double.parseDouble(representation.subSequence(start, end).toString());
+    }
     @Override
     public Double fromString(String representation) {
+      return fromStringAsDouble(representation);
+    }
+    @Override
+    public double fromStringAsDouble(String representation) {
       return Double.parseDouble(representation);
     }
+    @Override
+    public String toString(Double value) {
+      return toString(value.doubleValue());
+    }
+    @Override
+    public String toString(double value) {
+      return Double.toString(value);
+    }
   };
 
-  static final Converter<Long> C_LONG = new ConverterWithToString<Long>() {
+  static final NativeLongConverter C_LONG = new NativeLongConverter() {
+    @Override
+    public void appendTo(Long value, Appendable out) throws IOException {
+      appendTo(value.longValue(), out);
+    }
+    @Override
+    public void appendTo(long value, Appendable out) throws IOException {
+      if (out instanceof StringBuilder) {
+        ((StringBuilder) out).append(value);
+      } else {
+        out.append(toString(value));
+      }
+    }
+    @Override
+    public Long fromCharSequence(CharSequence representation, int start, int end) {
+      return parseLong(representation, start, end, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
     @Override
     public Long fromString(String representation) {
+      return fromStringAsLong(representation);
+    }
+    @Override
+    public long fromStringAsLong(String representation) {
       return Long.parseLong(representation);
     }
+    @Override
+    public String toString(Long value) {
+      return toString(value.longValue());
+    }
+    @Override
+    public String toString(long value) {
+      return Long.toString(value);
+    }
   };
 
-  static final Converter<Short> C_SHORT = new ConverterWithToString<Short>() {
+  static final NativeShortConverter C_SHORT = new NativeShortConverter() {
+    @Override
+    public void appendTo(Short value, Appendable out) throws IOException {
+      appendTo(value.shortValue(), out);
+    }
+    @Override
+    public void appendTo(short value, Appendable out) throws IOException {
+      if (out instanceof StringBuilder) {
+        ((StringBuilder) out).append(value);
+      } else {
+        out.append(toString(value));
+      }
+    }
+    @Override
+    public Short fromCharSequence(CharSequence representation, int start, int end) {
+      return (short) parseLong(representation, start, end, Short.MIN_VALUE, Short.MAX_VALUE);
+    }
     @Override
     public Short fromString(String representation) {
+      return fromStringAsShort(representation);
+    }
+    @Override
+    public short fromStringAsShort(String representation) {
       return Short.parseShort(representation);
     }
+    @Override
+    public String toString(Short value) {
+      return toString(value.shortValue());
+    }
+    @Override
+    public String toString(short value) {
+      return Short.toString(value);
+    }
   };
 
-  static final Converter<Character> C_CHAR = new ConverterWithToString<Character>() {
+  static final NativeCharConverter C_CHAR = new NativeCharConverter() {
+    @Override
+    public void appendTo(Character value, Appendable out) throws IOException {
+      appendTo(value.charValue(), out);
+    }
+    @Override
+    public void appendTo(char value, Appendable out) throws IOException {
+      out.append(value);
+    }
+    @Override
+    public Character fromCharSequence(CharSequence representation, int start, int end) {
+      if (end - start != 1) {
+        throw numberFormat(representation, start, end);
+      }
+      return representation.charAt(start);
+    }
     @Override
     public Character fromString(String representation) {
+      return fromStringAsChar(representation);
+    }
+    @Override
+    public char fromStringAsChar(String representation) {
       if (representation.length() != 1) {
         throw new IllegalArgumentException(format(
             "For input string: \"%s\"", representation));
       }
       return representation.charAt(0);
     }
+    @Override
+    public String toString(Character value) {
+      return toString(value.charValue());
+    }
+    @Override
+    public String toString(char value) {
+      return Character.toString(value);
+    }
   };
 
-  static final Converter<Boolean> C_BOOLEAN = new ConverterWithToString<Boolean>() {
+  static final NativeBooleanConverter C_BOOLEAN = new NativeBooleanConverter() {
+    @Override
+    public void appendTo(Boolean value, Appendable out) throws IOException {
+      appendTo(value.booleanValue(), out);
+    }
+    @Override
+    public void appendTo(boolean value, Appendable out) throws IOException {
+      out.append(toString(value));
+    }
+    @Override
+    public Boolean fromCharSequence(CharSequence representation, int start, int end) {
+      while (start < end && representation.charAt(start) <= ' ') {
+        start++;
+      }
+      while (start < end && representation.charAt(end - 1) <= ' ') {
+        end--;
+      }
+      if (regionMatches(representation, start, end, "true")) {
+        return true;
+      }
+      if (regionMatches(representation, start, end, "false")) {
+        return false;
+      }
+      throw new IllegalArgumentException(String.format("representation is not a valid boolean : %s", representation.subSequence(start, end)));
+    }
     @Override
     public Boolean fromString(String representation) {
+      return fromStringAsBoolean(representation);
+    }
+    @Override
+    public boolean fromStringAsBoolean(String representation) {
       String trimmed = representation.trim();
       if ("true".equalsIgnoreCase(trimmed)) {
         return true;
@@ -79,20 +293,140 @@ class NativeConverters {
       }
       throw new IllegalArgumentException(String.format("representation is not a valid boolean : %s", representation));
     }
+    @Override
+    public String toString(Boolean value) {
+      return toString(value.booleanValue());
+    }
+    @Override
+    public String toString(boolean value) {
+      return Boolean.toString(value);
+    }
   };
 
-  static final Converter<Float> C_FLOAT = new ConverterWithToString<Float>() {
+  static final NativeFloatConverter C_FLOAT = new NativeFloatConverter() {
+    @Override
+    public void appendTo(Float value, Appendable out) throws IOException {
+      appendTo(value.floatValue(), out);
+    }
+    @Override
+    public void appendTo(float value, Appendable out) throws IOException {
+      if (out instanceof StringBuilder) {
+        ((StringBuilder) out).append(value);
+      } else {
+        out.append(toString(value));
+      }
+    }
+    @Override
+    public Float fromCharSequence(CharSequence representation, int start, int end) {
+      // The JDK offers no way to parse floats without a string.
+      return Float.parseFloat(representation.subSequence(start, end).toString());
+    }
     @Override
     public Float fromString(String representation) {
+      return fromStringAsFloat(representation);
+    }
+    @Override
+    public float fromStringAsFloat(String representation) {
       return Float.parseFloat(representation);
     }
+    @Override
+    public String toString(Float value) {
+      return toString(value.floatValue());
+    }
+    @Override
+    public String toString(float value) {
+      return Float.toString(value);
+    }
   };
 
-  static final Converter<Byte> C_BYTE = new ConverterWithToString<Byte>() {
+  static final NativeByteConverter C_BYTE = new NativeByteConverter() {
+    @Override
+    public void appendTo(Byte value, Appendable out) throws IOException {
+      appendTo(value.byteValue(), out);
+    }
+    @Override
+    public void appendTo(byte value, Appendable out) throws IOException {
+      if (out instanceof StringBuilder) {
+        ((StringBuilder) out).append(value);
+      } else {
+        out.append(toString(value));
+      }
+    }
+    @Override
+    public Byte fromCharSequence(CharSequence representation, int start, int end) {
+      return (byte) parseLong(representation, start, end, Byte.MIN_VALUE, Byte.MAX_VALUE);
+    }
     @Override
     public Byte fromString(String representation) {
+      return fromStringAsByte(representation);
+    }
+    @Override
+    public byte fromStringAsByte(String representation) {
       return Byte.parseByte(representation);
     }
+    @Override
+    public String toString(Byte value) {
+      return toString(value.byteValue());
+    }
+    @Override
+    public String toString(byte value) {
+      return Byte.toString(value);
+    }
   };
 
+  /**
+   * Parses a signed decimal number in the same way as {@link Long#parseLong}
+   * but without creating a string.
+   */
+  static long parseLong(CharSequence representation, int start, int end,
+      long min, long max) {
+    if (start >= end) {
+      throw numberFormat(representation, start, end);
+    }
+    int i = start;
+    boolean negative = false;
+    char first = representation.charAt(i);
+    if (first == '-' || first == '+') {
+      negative = first == '-';
+      if (++i == end) {
+        throw numberFormat(representation, start, end);
+      }
+    }
+    // accumulating negatively, as the negative range is the larger one
+    long limit = negative ? min : -max;
+    long multiplicationLimit = limit / 10;
+    long result = 0;
+    for (; i < end; i++) {
+      int digit = Character.digit(representation.charAt(i), 10);
+      if (digit < 0 || result < multiplicationLimit) {
+        throw numberFormat(representation, start, end);
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        throw numberFormat(representation, start, end);
+      }
+      result -= digit;
+    }
+    return negative ? result : -result;
+  }
+
+  private static NumberFormatException numberFormat(
+      CharSequence representation, int start, int end) {
+    return new NumberFormatException(format(
+        "For input string: \"%s\"", representation.subSequence(start, end)));
+  }
+
+  private static boolean regionMatches(
+      CharSequence representation, int start, int end, String word) {
+    if (end - start != word.length()) {
+      return false;
+    }
+    for (int i = 0; i < word.length(); i++) {
+      if (Character.toLowerCase(representation.charAt(start + i)) != word.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
 }
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static java.lang.String.format;
+
+import java.util.Arrays;
+
+/**
+ * Values of the parameters of an instantiator, indexed by their position in
+ * the constructor. Rows are created by {@link Instantiator#newRow()} and can
+ * be filled by position or by name, the latter using the instantiator's
+ * precomputed name index. Rows can be cleared and reused, and are not thread
+ * safe.
+ */
+public final class Row {
+
+  private final NameIndex names;
+  private final String[] values;
+
+  Row(NameIndex names, int size) {
+    this.names = names;
+    this.values = new String[size];
+  }
+
+  /**
+   * Gets the position of the parameter named {@code name}. Looking positions
+   * up once and then using {@link #set(int, String)} is the fastest way to
+   * fill rows.
+   * @throws IllegalArgumentException if there is no such parameter
+   * @throws UnsupportedOperationException if the underlying class was not
+   *     compiled in debug mode
+   */
+  public int indexOf(String name) {
+    if (names == null) {
+      throw new UnsupportedOperationException();
+    }
+    int index = names.indexOf(name);
+    if (index == -1) {
+      throw new IllegalArgumentException(format("no parameter named %s", name));
+    }
+    return index;
+  }
+
+  public Row set(int index, String value) {
+    values[index] = value;
+    return this;
+  }
+
+  public Row set(String name, String value) {
+    return set(indexOf(name), value);
+  }
+
+  public String get(int index) {
+    return values[index];
+  }
+
+  public String get(String name) {
+    return get(indexOf(name));
+  }
+
+  public int size() {
+    return values.length;
+  }
+
+  /**
+   * Sets all values to {@code null}.
+   */
+  public Row clear() {
+    Arrays.fill(values, null);
+    return this;
+  }
+
+  String[] values() {
+    return values;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(values);
+  }
+
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Instantiator which starts by creating instances reflectively and, once it
+ * has been invoked a number of times, generates code specialized for its
+ * class. Code is generated in the background; meanwhile, and if code cannot
+ * be generated, callers keep being served reflectively. The generated
+ * instantiator is then swapped in atomically. Only classes which are used
+ * often therefore pay for code generation.
+ *
+ * <p>Tiered instantiators are created using
+ * {@link InstantiationStrategy#TIERED}. Their state can be monitored using
+ * {@link #getTier()}.</p>
+ */
+public final class TieredInstantiator<T> implements Instantiator<T> {
+
+  private static final Logger log = Logger.getLogger(TieredInstantiator.class.getName());
+
+  /**
+   * Default number of invocations after which code is generated.
+   */
+  public static final int DEFAULT_THRESHOLD = 10000;
+
+  /**
+   * States of a tiered instantiator.
+   */
+  public enum Tier {
+
+    /**
+     * Creates instances reflectively and counts invocations.
+     */
+    REFLECTION,
+
+    /**
+     * Creates instances reflectively while code is being generated.
+     */
+    GENERATING,
+
+    /**
+     * Creates instances using generated code.
+     */
+    GENERATED,
+
+    /**
+     * Creates instances reflectively since code could not be generated.
+     */
+    FAILED,
+
+  }
+
+  private final Instantiator<T> reflective;
+  private final Supplier<? extends Option<? extends Instantiator<T>>> generator;
+  private final int threshold;
+  private final Executor executor;
+  private final AtomicInteger invocations = new AtomicInteger();
+  private volatile Instantiator<T> current;
+  private volatile Tier tier = Tier.REFLECTION;
+
+  /**
+   * @param generator creates the instantiator using generated code, or
+   *     returns {@link Option#none()} if code cannot be generated
+   * @param executor if defined, where code is generated; defaults to the
+   *     common fork/join pool
+   */
+  TieredInstantiator(
+      Instantiator<T> reflective,
+      Supplier<? extends Option<? extends Instantiator<T>>> generator,
+      int threshold,
+      Option<Executor> executor) {
+    this.reflective = reflective;
+    this.generator = generator;
+    this.threshold = threshold;
+    this.executor = executor.getOrElse(ForkJoinPool.commonPool());
+    this.current = reflective;
+  }
+
+  /**
+   * Returns the current tier of this instantiator.
+   */
+  public Tier getTier() {
+    return tier;
+  }
+
+  /**
+   * Returns the number of invocations counted towards the threshold. Once
+   * code starts being generated, invocations are no longer counted.
+   */
+  public int getInvocations() {
+    return invocations.get();
+  }
+
+  /**
+   * Returns the number of invocations after which code is generated.
+   */
+  public int getThreshold() {
+    return threshold;
+  }
+
+  /* Only the invocation reaching the threshold leaves the REFLECTION tier, so
+   * code is generated at most once.
+   */
+  private Instantiator<T> current() {
+    if (tier == Tier.REFLECTION && invocations.incrementAndGet() == threshold) {
+      tier = Tier.GENERATING;
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            generate();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // tried again once the threshold is reached again
+        invocations.set(0);
+        tier = Tier.REFLECTION;
+      }
+    }
+    return current;
+  }
+
+  private void generate() {
+    try {
+      for (Instantiator<T> generated : generator.get()) {
+        current = generated;
+        tier = Tier.GENERATED;
+        return;
+      }
+    } catch (RuntimeException e) {
+      log.fine(format("unable to generate instantiator for %s: %s",
+          reflective.getConstructor().getDeclaringClass(), e));
+    }
+    tier = Tier.FAILED;
+  }
+
+  @Override
+  public T newInstance(String... values) {
+    return current().newInstance(values);
+  }
+
+  @Override
+  public T newInstance(Iterable<String> values) {
+    return current().newInstance(values);
+  }
+
+  @Override
+  public Iterator<T> newInstances(Iterator<? extends Iterable<String>> records) {
+    return current().newInstances(records);
+  }
+
+  @Override
+  public Iterator<T> newInstances(
+      Iterator<? extends Iterable<String>> records, Failures failures) {
+    return current().newInstances(records, failures);
+  }
+
+  @Override
+  public int newInstances(
+      Iterator<? extends Iterable<String>> records, T[] instances, Failures failures) {
+    return current().newInstances(records, instances, failures);
+  }
+
+  @Override
+  public List<T> newInstancesParallel(
+      List<? extends Iterable<String>> records, ForkJoinPool pool, Failures failures) {
+    return current().newInstancesParallel(records, pool, failures);
+  }
+
+  @Override
+  public T[] newInstances(Columns columns, Failures failures) {
+    return current().newInstances(columns, failures);
+  }
+
+  @Override
+  public T newInstance(Map<String, String> namedValues) {
+    return current().newInstance(namedValues);
+  }
+
+  @Override
+  public Row newRow() {
+    return current.newRow();
+  }
+
+  @Override
+  public T newInstance(Row row) {
+    return current().newInstance(row);
+  }
+
+  @Override
+  public T newInstance(CharSequence input, int[] offsets, int[] lengths) {
+    return current().newInstance(input, offsets, lengths);
+  }
+
+  @Override
+  public List<String> fromInstance(T instance) {
+    return current().fromInstance(instance);
+  }
+
+  @Override
+  public List<List<String>> fromInstancesParallel(
+      List<? extends T> instances, ForkJoinPool pool, Failures failures) {
+    return current().fromInstancesParallel(instances, pool, failures);
+  }
+
+  @Override
+  public Columns fromInstances(Collection<? extends T> instances) {
+    return current().fromInstances(instances);
+  }
+
+  @Override
+  public void fromInstance(T instance, Appendable out, Delimiting delimiting)
+      throws IOException {
+    current().fromInstance(instance, out, delimiting);
+  }
+
+  @Override
+  public StringBuilder fromInstance(T instance, StringBuilder out, Delimiting delimiting) {
+    return current().fromInstance(instance, out, delimiting);
+  }
+
+  @Override
+  public int estimateLength(Delimiting delimiting) {
+    return current.estimateLength(delimiting);
+  }
+
+  @Override
+  public Constructor<T> getConstructor() {
+    return reflective.getConstructor();
+  }
+
+  @Override
+  public String toString() {
+    return format("%s (%s)", current, tier);
+  }
+
+}
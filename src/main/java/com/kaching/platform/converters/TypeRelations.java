@@ -0,0 +1,69 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static java.util.Arrays.asList;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.TypeLiteral;
+
+/**
+ * A bounded memo of {@link TypesUtil#isInstance(Type, Type)}. Types are
+ * canonicalized using {@link TypeLiteral} so that equal types, even when
+ * represented by different implementations of the reflection interfaces,
+ * share entries.
+ *
+ * <p>Memos are not process-wide. They belong to the registrations using them
+ * and are evicted with them, which keeps memoized types from retaining
+ * classes, and their class loaders, past their use.</p>
+ */
+class TypeRelations {
+
+  static final int DEFAULT_MAXIMUM_SIZE = 4096;
+
+  private final Cache<List<TypeLiteral<?>>, Boolean> instances;
+
+  TypeRelations() {
+    this(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  TypeRelations(int maximumSize) {
+    this.instances = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .build();
+  }
+
+  /**
+   * Memoized {@link TypesUtil#isInstance(Type, Type)}.
+   */
+  boolean isInstance(Type a, Type b) {
+    if (a instanceof Class<?>) {
+      // no faster than the memo itself
+      return a.equals(b);
+    }
+    List<TypeLiteral<?>> key = asList(TypeLiteral.get(a), TypeLiteral.get(b));
+    Boolean isInstance = instances.getIfPresent(key);
+    if (isInstance == null) {
+      isInstance = TypesUtil.isInstance(a, b);
+      instances.put(key, isInstance);
+    }
+    return isInstance;
+  }
+
+  long size() {
+    return instances.size();
+  }
+
+}
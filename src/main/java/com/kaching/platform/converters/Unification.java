@@ -11,21 +11,50 @@ import java.lang.reflect.TypeVariable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Unification for Java made easy. See
  * {@link http://blog.kaching.com/index.php/2009/01/16/unifying-type-parameters-in-java/}.
+ *
+ * <p>Unified types are memoized per sub class using a {@link ClassValue}. Since
+ * they only refer to classes the sub class itself refers to, memoization does
+ * not prevent any class from being unloaded.</p>
  */
 public final class Unification {
   private Unification() {}
 
+  private static final ClassValue<ConcurrentMap<TypeVariable<?>, Type>> UNIFIED =
+      new ClassValue<ConcurrentMap<TypeVariable<?>, Type>>() {
+        @Override
+        protected ConcurrentMap<TypeVariable<?>, Type> computeValue(Class<?> subClass) {
+          return new ConcurrentHashMap<TypeVariable<?>, Type>();
+        }
+      };
+
   public static Type getActualTypeArgument(
       Class<?> subClass, Class<?> superClass, int typeParameterIndex) {
-    if (superClass.getTypeParameters().length <= typeParameterIndex) {
+    TypeVariable<?>[] typeParameters = superClass.getTypeParameters();
+    if (typeParameters.length <= typeParameterIndex) {
       throw new IllegalArgumentException(format(
           "%s does not have a type parameter of index %s",
           superClass, typeParameterIndex));
     }
+    ConcurrentMap<TypeVariable<?>, Type> unified = UNIFIED.get(subClass);
+    TypeVariable<?> typeParameter = typeParameters[typeParameterIndex];
+    Type actualTypeArgument = unified.get(typeParameter);
+    if (actualTypeArgument == null) {
+      actualTypeArgument = unify(subClass, superClass, typeParameter);
+      if (actualTypeArgument != null) {
+        unified.putIfAbsent(typeParameter, actualTypeArgument);
+      }
+    }
+    return actualTypeArgument;
+  }
+
+  private static Type unify(
+      Class<?> subClass, Class<?> superClass, TypeVariable<?> typeParameter) {
 
     /* Assume the hierarchy is
      *
@@ -47,7 +76,7 @@ public final class Unification {
     // 2. We now group by pairs actual type arguments and type variables.
     // e.g. [(Integer, T1), (List<T1>, T2)]
     LinkedList<GenericTypeInstantiation> chain = groupInGenericTypeInstantiations(
-        superClass.getTypeParameters()[typeParameterIndex],
+        typeParameter,
         linearHierarchy);
 
     // 3. Unify, i.e. solve for the rightmost type variable.
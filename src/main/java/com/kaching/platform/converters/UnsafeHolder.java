@@ -0,0 +1,58 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static java.lang.String.format;
+
+import java.lang.reflect.Field;
+import java.util.logging.Logger;
+
+import sun.misc.Unsafe;
+
+/**
+ * Holds the {@link Unsafe} used to bypass constructors. This is the only
+ * class referring to it.
+ */
+@SuppressWarnings("sunapi")
+final class UnsafeHolder {
+
+  private static final Logger log = Logger.getLogger(UnsafeHolder.class.getName());
+
+  private static final Unsafe UNSAFE = getUnsafe();
+
+  private UnsafeHolder() {}
+
+  /**
+   * Returns whether the {@link Unsafe} could be obtained.
+   */
+  static boolean isAvailable() {
+    return UNSAFE != null;
+  }
+
+  /**
+   * Returns the offset of {@code field} within instances of its class.
+   */
+  static long objectFieldOffset(Field field) {
+    return UNSAFE.objectFieldOffset(field);
+  }
+
+  private static Unsafe getUnsafe() {
+    try {
+      Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      return (Unsafe) theUnsafe.get(null);
+    } catch (Exception e) {
+      log.fine(format("constructors cannot be bypassed: %s", e));
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.kaching.platform.converters.ConstructorAnalysis.AnalysisResult;
+
+public class AnalysisIndexTest {
+
+  @Test
+  public void writeAndGet() throws Exception {
+    Constructor<Indexed> constructor = Indexed.class.getDeclaredConstructor(int.class, String.class);
+    byte[] classBytes = classBytes(Indexed.class);
+    AnalysisIndex index = index(Indexed.class, constructor, classBytes);
+
+    AnalysisResult analysis = index.get(Indexed.class, constructor, classBytes);
+    assertNotNull(analysis);
+    assertEquals(asList("first", "second"), asList(analysis.paramaterNames));
+    assertEquals(2, analysis.assignments.size());
+    assertEquals(0, analysis.assignments.get("a").getIndex());
+    assertEquals(int.class, analysis.assignments.get("a").getKind());
+    assertEquals(1, analysis.assignments.get("b").getIndex());
+    assertTrue(analysis.parameterNamesRead);
+    assertTrue(analysis.storesOnly);
+  }
+
+  @Test
+  public void changedClassIsNotIndexed() throws Exception {
+    Constructor<Indexed> constructor = Indexed.class.getDeclaredConstructor(int.class, String.class);
+    byte[] classBytes = classBytes(Indexed.class);
+    AnalysisIndex index = index(Indexed.class, constructor, classBytes);
+
+    byte[] changed = classBytes.clone();
+    changed[changed.length - 1]++;
+    assertNull(index.get(Indexed.class, constructor, changed));
+    assertNull(index.get(
+        HasNoFields.class, HasNoFields.class.getDeclaredConstructor(), classBytes));
+  }
+
+  static class Indexed {
+    final int a;
+    final String b;
+    Indexed(int first, String second) {
+      this.a = first;
+      this.b = second;
+    }
+  }
+
+  static class HasNoFields {
+    HasNoFields() {
+    }
+  }
+
+  @Test
+  public void indexedAnalysesAreUsed() throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assumeNotNull(compiler);
+    File directory = Files.createTempDir();
+    File legal = new File(directory, "Legal.java");
+    File illegal = new File(directory, "Illegal.java");
+    Files.write(
+        "public class Legal { final int value; Legal(int value) { this.value = value; } }",
+        legal, UTF_8);
+    Files.write(
+        "public class Illegal { final int value; Illegal(int value) { this.value = value + 1; } }",
+        illegal, UTF_8);
+    assertEquals(0, compiler.run(null, null, null, "-g", "--release", "8",
+        "-d", directory.getPath(), legal.getPath(), illegal.getPath()));
+
+    AnalysisIndex.main(directory.getPath());
+    File indexFile = new File(directory, AnalysisIndex.RESOURCE);
+    String index = Files.toString(indexFile, UTF_8);
+    assertTrue(index, index.startsWith("Legal (I)V "));
+    assertTrue(index, index.endsWith(" value value=0 stores\n"));
+    assertFalse(index, index.contains("Illegal"));
+
+    // the analysis is taken from the index, rather than the class file
+    Files.write(index.replace(" value value=0", " renamed value=0"), indexFile, UTF_8);
+    Class<?> klass = new URLClassLoader(new URL[] { directory.toURI().toURL() })
+        .loadClass("Legal");
+    assertEquals(
+        asList("renamed"),
+        asList(ConstructorAnalysis.analyse(klass, klass.getDeclaredConstructors()[0])
+            .paramaterNames));
+  }
+
+  private static AnalysisIndex index(
+      Class<?> klass, Constructor<?> constructor, byte[] classBytes) throws Exception {
+    StringWriter out = new StringWriter();
+    AnalysisIndex.write(out, klass, constructor, classBytes, ConstructorAnalysis.analyse(
+        new ByteArrayInputStream(classBytes),
+        klass.getName().replace('.', '/'),
+        klass.getSuperclass().getName().replace('.', '/'),
+        constructor.getParameterTypes()));
+    return AnalysisIndex.read(new StringReader(out.toString()));
+  }
+
+  private static byte[] classBytes(Class<?> klass) throws Exception {
+    return ByteStreams.toByteArray(
+        klass.getResourceAsStream("/" + klass.getName().replace('.', '/') + ".class"));
+  }
+
+}
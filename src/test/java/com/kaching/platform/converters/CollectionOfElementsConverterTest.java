@@ -14,6 +14,7 @@ import static com.google.common.collect.Lists.newArrayList;
 import static com.kaching.platform.converters.NativeConverters.C_BOOLEAN;
 import static org.junit.Assert.assertEquals;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -41,11 +42,23 @@ public class CollectionOfElementsConverterTest {
         new CollectionOfElementsConverter(Set.class, C_BOOLEAN).fromString("").getClass());
   }
 
+  @Test
+  public void twoElementsList() {
+    check(newArrayList((Object) true, false), "true,false");
+  }
+
   @SuppressWarnings({ "unchecked", "rawtypes" })
   private void check(List<Object> list, String representation) {
     CollectionOfElementsConverter converter = new CollectionOfElementsConverter(List.class, C_BOOLEAN);
     assertEquals(representation, converter.toString(list));
     assertEquals(list, converter.fromString(representation));
+    StringBuilder out = new StringBuilder();
+    try {
+      converter.appendTo(list, out);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    assertEquals(representation, out.toString());
   }
 
 }
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ColumnsTest {
+
+  @Test
+  public void setAndGet() {
+    long[] longs = { 1, 2 };
+    String[] strings = { "a", "b", "c" };
+    Columns columns = new Columns(2, 3).set(0, longs).set(1, strings);
+    assertEquals(2, columns.size());
+    assertEquals(3, columns.width());
+    assertEquals(longs, columns.getLongs(0));
+    assertEquals(strings, columns.getStrings(1));
+    assertNull(columns.get(2));
+    assertNull(columns.getDoubles(2));
+  }
+
+  @Test
+  public void wrongType() {
+    Columns columns = new Columns(1, 1).set(0, new long[1]);
+    try {
+      columns.getStrings(0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("column 0 is a long[]", e.getMessage());
+    }
+  }
+
+  @Test
+  public void notAnArrayOfPrimitives() {
+    try {
+      new Columns(1, 1).set(0, new Integer[1]);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("column 0 must be a String[] or an array of primitives", e.getMessage());
+    }
+  }
+
+  @Test
+  public void tooShort() {
+    try {
+      new Columns(2, 1).set(0, new int[1]);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("column 0 has less than 2 values", e.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static java.lang.String.format;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Measures the cost of analysing a constructor assigning many fields. This is
+ * not a test, run its {@code main} method with the test classpath. Analyses
+ * are done from the class bytes, bypassing memoization.
+ */
+public class ConstructorAnalysisBenchmark {
+
+  private static final int WARM_UP = 20000;
+  private static final int RUNS = 5;
+  private static final int ITERATIONS = 20000;
+
+  public static void main(String[] args) throws Exception {
+    Class<?> klass = ManyFields.class;
+    Constructor<?> constructor = klass.getDeclaredConstructors()[0];
+    InputStream in = klass.getResourceAsStream(
+        "/" + klass.getName().replace('.', '/') + ".class");
+    byte[] bytes;
+    try {
+      bytes = ByteStreams.toByteArray(in);
+    } finally {
+      in.close();
+    }
+    String owner = klass.getName().replace('.', '/');
+    String superclass = klass.getSuperclass().getName().replace('.', '/');
+    Class<?>[] parameterTypes = constructor.getParameterTypes();
+
+    for (boolean readParameterNames : new boolean[] { true, false }) {
+      run(WARM_UP, bytes, owner, superclass, readParameterNames, parameterTypes);
+      for (int i = 0; i < RUNS; i++) {
+        long start = System.nanoTime();
+        run(ITERATIONS, bytes, owner, superclass, readParameterNames, parameterTypes);
+        long elapsed = System.nanoTime() - start;
+        System.out.println(format(
+            "%s fields, %s parameter names: %s ns per analysis",
+            parameterTypes.length,
+            readParameterNames ? "with" : "without",
+            elapsed / ITERATIONS));
+      }
+    }
+  }
+
+  private static void run(int iterations, byte[] bytes,
+      String owner, String superclass, boolean readParameterNames,
+      Class<?>[] parameterTypes) throws Exception {
+    int assignments = 0;
+    for (int i = 0; i < iterations; i++) {
+      assignments += ConstructorAnalysis.analyse(
+          new ByteArrayInputStream(bytes), owner, superclass, readParameterNames,
+          parameterTypes)
+          .assignments.size();
+    }
+    if (assignments != iterations * parameterTypes.length) {
+      throw new IllegalStateException();
+    }
+  }
+
+  static class ManyFields {
+    final int f0;
+    final long f1;
+    final double f2;
+    final String f3;
+    final boolean f4;
+    final float f5;
+    final short f6;
+    final char f7;
+    final byte f8;
+    final Integer f9;
+    final int f10;
+    final long f11;
+    final double f12;
+    final String f13;
+    final boolean f14;
+    final float f15;
+    final short f16;
+    final char f17;
+    final byte f18;
+    final Integer f19;
+    final int f20;
+    final long f21;
+    final double f22;
+    final String f23;
+    final boolean f24;
+    final float f25;
+    final short f26;
+    final char f27;
+    final byte f28;
+    final Integer f29;
+    final int f30;
+    final long f31;
+    final double f32;
+    final String f33;
+    final boolean f34;
+    final float f35;
+    final short f36;
+    final char f37;
+    final byte f38;
+    final Integer f39;
+    final int f40;
+    final long f41;
+    final double f42;
+    final String f43;
+    final boolean f44;
+    final float f45;
+    final short f46;
+    final char f47;
+    ManyFields(
+        int f0, long f1, double f2, String f3, boolean f4, float f5, short f6,
+        char f7, byte f8, Integer f9, int f10, long f11, double f12, String f13,
+        boolean f14, float f15, short f16, char f17, byte f18, Integer f19,
+        int f20, long f21, double f22, String f23, boolean f24, float f25,
+        short f26, char f27, byte f28, Integer f29, int f30, long f31, double f32,
+        String f33, boolean f34, float f35, short f36, char f37, byte f38,
+        Integer f39, int f40, long f41, double f42, String f43, boolean f44,
+        float f45, short f46, char f47) {
+      this.f0 = f0;
+      this.f1 = f1;
+      this.f2 = f2;
+      this.f3 = f3;
+      this.f4 = f4;
+      this.f5 = f5;
+      this.f6 = f6;
+      this.f7 = f7;
+      this.f8 = f8;
+      this.f9 = f9;
+      this.f10 = f10;
+      this.f11 = f11;
+      this.f12 = f12;
+      this.f13 = f13;
+      this.f14 = f14;
+      this.f15 = f15;
+      this.f16 = f16;
+      this.f17 = f17;
+      this.f18 = f18;
+      this.f19 = f19;
+      this.f20 = f20;
+      this.f21 = f21;
+      this.f22 = f22;
+      this.f23 = f23;
+      this.f24 = f24;
+      this.f25 = f25;
+      this.f26 = f26;
+      this.f27 = f27;
+      this.f28 = f28;
+      this.f29 = f29;
+      this.f30 = f30;
+      this.f31 = f31;
+      this.f32 = f32;
+      this.f33 = f33;
+      this.f34 = f34;
+      this.f35 = f35;
+      this.f36 = f36;
+      this.f37 = f37;
+      this.f38 = f38;
+      this.f39 = f39;
+      this.f40 = f40;
+      this.f41 = f41;
+      this.f42 = f42;
+      this.f43 = f43;
+      this.f44 = f44;
+      this.f45 = f45;
+      this.f46 = f46;
+      this.f47 = f47;
+    }
+    void method1() {
+      System.out.println(toString());
+    }
+    int method2(int a, int b) {
+      return a * b + f0;
+    }
+  }
+
+}
@@ -11,15 +11,19 @@
 package com.kaching.platform.converters;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Lists.newArrayListWithCapacity;
 import static com.google.common.collect.Maps.newHashMap;
 import static com.kaching.platform.converters.ConstructorAnalysis.analyse;
 import static java.math.BigDecimal.ZERO;
 import static java.math.MathContext.DECIMAL32;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyMap;
 import static junit.framework.Assert.fail;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -34,6 +38,7 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import com.google.common.collect.ImmutableMap;
+import com.kaching.platform.converters.ConstructorAnalysis.AnalysisResult;
 import com.kaching.platform.converters.ConstructorAnalysis.FormalParameter;
 import com.kaching.platform.converters.ConstructorAnalysis.IllegalConstructorException;
 
@@ -80,6 +85,42 @@ public class ConstructorAnalysisTest {
             "foo", "p1"));
   }
 
+  @Test
+  public void analysesAreMemoized() throws Exception {
+    AnalysisResult result = analyse(
+        TwoAssignments.class, TwoAssignments.class.getDeclaredConstructors()[0]);
+    assertSame(result, analyse(
+        TwoAssignments.class, TwoAssignments.class.getDeclaredConstructors()[0]));
+    assertEquals(2, result.assignments.size());
+  }
+
+  static class TwoConstructors {
+    final String foo;
+    TwoConstructors(String foo) {
+      this.foo = foo;
+    }
+    TwoConstructors(String foo, int ignored) {
+      this.foo = foo + ignored;
+    }
+  }
+
+  @Test
+  public void analysesAreMemoizedPerConstructor() throws Exception {
+    AnalysisResult first = analyse(
+        TwoConstructors.class, TwoConstructors.class.getDeclaredConstructor(String.class));
+    assertEquals("p0", first.assignments.get("foo").toString());
+    try {
+      analyse(
+          TwoConstructors.class,
+          TwoConstructors.class.getDeclaredConstructor(String.class, int.class));
+      fail("analysis should have failed");
+    } catch (IllegalConstructorException e) {
+      // expected
+    }
+    assertSame(first, analyse(
+        TwoConstructors.class, TwoConstructors.class.getDeclaredConstructor(String.class)));
+  }
+
   @Test
   public void assignmentsToNatives() throws Exception {
     assertAssignement(
@@ -296,6 +337,31 @@ public class ConstructorAnalysisTest {
         "can not call super constructor with argument(s)");
   }
 
+  static class CheckingNotNull {
+    final String value;
+    CheckingNotNull(String value) {
+      checkNotNull(value);
+      this.value = value;
+    }
+  }
+
+  @Test
+  public void storesOnly() throws Exception {
+    assertStoresOnly(true, NoOp.class);
+    assertStoresOnly(true, OneAssignment.class);
+    assertStoresOnly(true, TwoAssignments.class);
+    assertStoresOnly(false, AssigningSomethingElseThanParamater.class);
+    assertStoresOnly(false, KeepingSelfReference.class);
+    assertStoresOnly(false, ObjectInstantiation1.class);
+    assertStoresOnly(false, CheckingNotNull.class);
+    assertStoresOnly(false, CallingSuperConstructorNoArgument.class);
+  }
+
+  private static void assertStoresOnly(boolean storesOnly, Class<?> klass) throws IOException {
+    assertEquals(klass.getSimpleName(), storesOnly,
+        analyse(klass, klass.getDeclaredConstructors()[0]).storesOnly);
+  }
+
   static class DelegatingToAnotherConstructor1 {
     DelegatingToAnotherConstructor1(int foo) {
       this();
@@ -436,6 +502,25 @@ public class ConstructorAnalysisTest {
             "non_idempotent", "p1"));
   }
 
+  @Test
+  public void parameterNames() throws IOException {
+    assertEquals(
+        asList("bar", "foo"),
+        asList(analyseTwoAssignments(true).paramaterNames));
+    AnalysisResult withoutNames = analyseTwoAssignments(false);
+    assertNull(withoutNames.paramaterNames);
+    assertEquals(2, withoutNames.assignments.size());
+  }
+
+  private AnalysisResult analyseTwoAssignments(boolean readParameterNames) throws IOException {
+    return analyse(
+        TwoAssignments.class.getResourceAsStream("ConstructorAnalysisTest$TwoAssignments.class"),
+        "com/kaching/platform/converters/ConstructorAnalysisTest$TwoAssignments",
+        "java/lang/Object",
+        readParameterNames,
+        int.class, String.class);
+  }
+
   @Test
   public void regression1() throws IOException {
     InputStream classInputStream = this.getClass().getResourceAsStream("example_scala_class01.bin");
@@ -0,0 +1,349 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.kaching.platform.converters.InstantiatorErrors.duplicateConverterBindingForType;
+import static com.kaching.platform.converters.InstantiatorErrors.moreThanOneConstructor;
+import static com.kaching.platform.converters.InstantiatorErrors.noConverterForType;
+import static com.kaching.platform.converters.InstantiatorErrors.unableToCreateInstantiator;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
+
+public class ConverterEnvironmentTest {
+
+  @Test
+  public void modulesAreConfiguredOnce() {
+    CountingModule module = new CountingModule();
+    ConverterEnvironment environment = Instantiators.createEnvironment(module);
+    assertEquals(1, module.configured.get());
+
+    Instantiator<HasId> hasId = environment.createInstantiator(HasId.class);
+    Instantiator<HasTwoIds> hasTwoIds = environment.createInstantiator(HasTwoIds.class);
+    assertEquals(1, module.configured.get());
+    assertEquals(1, IdConverter.created.get());
+
+    assertEquals(7, hasId.newInstance("7").id.value);
+    HasTwoIds twoIds = hasTwoIds.newInstance("8", "9");
+    assertEquals(8, twoIds.first.value);
+    assertEquals(9, twoIds.second.value);
+    assertEquals("9", hasTwoIds.fromInstance(twoIds).get(1));
+  }
+
+  @Test
+  public void createInstantiators() {
+    CountingModule module = new CountingModule();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Map<Class<?>, Instantiator<?>> instantiators = Instantiators.createInstantiators(
+          asList(HasId.class, HasTwoIds.class, Id.class), executor, module);
+      assertEquals(1, module.configured.get());
+      assertEquals(1, IdConverter.created.get());
+      assertEquals(
+          asList(HasId.class, HasTwoIds.class, Id.class),
+          asList(instantiators.keySet().toArray()));
+
+      HasTwoIds twoIds = (HasTwoIds) instantiators.get(HasTwoIds.class).newInstance("8", "9");
+      assertEquals(8, twoIds.first.value);
+      assertEquals(9, twoIds.second.value);
+      assertEquals(7, ((HasId) instantiators.get(HasId.class).newInstance("7")).id.value);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void createInstantiatorsOfRepeatedClasses() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Map<Class<?>, Instantiator<?>> instantiators = Instantiators.createInstantiators(
+          asList(HasId.class, Id.class, HasId.class), executor, new CountingModule());
+      assertEquals(asList(HasId.class, Id.class), asList(instantiators.keySet().toArray()));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void createInstantiatorsReportsAllErrors() {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Instantiators.createInstantiators(
+          asList(HasId.class, Id.class, TwoConstructors.class), executor);
+      fail();
+    } catch (RuntimeException e) {
+      Errors errors = new Errors();
+      noConverterForType(errors, Id.class);
+      moreThanOneConstructor(errors, TwoConstructors.class);
+      assertEquals(errors.toString(), e.getMessage());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void createInstantiatorsAggregatesErrors() {
+    ConverterEnvironment environment = Instantiators.createEnvironment();
+    Errors errors = new Errors();
+    Map<Class<?>, Instantiator<?>> instantiators = environment.createInstantiators(
+        errors, asList(HasId.class, Id.class), new Executor() {
+          @Override
+          public void execute(Runnable command) {
+            command.run();
+          }
+        });
+    assertEquals(asList(Id.class), asList(instantiators.keySet().toArray()));
+    assertEquals(noConverterForType(new Errors(), Id.class).toString(), errors.toString());
+  }
+
+  @Test
+  public void createInstantiatorsAggregatesUnexpectedFailures() {
+    final IllegalStateException failure = new IllegalStateException("failing");
+    ConverterEnvironment environment = Instantiators.createEnvironment(
+        new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            register(new Function<Type, Option<? extends Converter<?>>>() {
+              @Override
+              public Option<? extends Converter<?>> apply(Type type) {
+                throw failure;
+              }
+            }, Id.class);
+          }
+        });
+    Errors errors = new Errors();
+    Map<Class<?>, Instantiator<?>> instantiators = environment.createInstantiators(
+        errors, asList(HasId.class, Id.class, TwoConstructors.class), new Executor() {
+          @Override
+          public void execute(Runnable command) {
+            command.run();
+          }
+        });
+    assertEquals(asList(Id.class), asList(instantiators.keySet().toArray()));
+    Errors expected = new Errors();
+    unableToCreateInstantiator(expected, HasId.class, failure);
+    moreThanOneConstructor(expected, TwoConstructors.class);
+    assertEquals(expected.toString(), errors.toString());
+  }
+
+  @Test
+  public void convertersAreShared() {
+    ConverterEnvironment environment = Instantiators.createEnvironment();
+    assertSame(
+        environment.createConverter(new TypeLiteral<List<Integer>>() {}),
+        environment.createConverter(new TypeLiteral<List<Integer>>() {}));
+    assertEquals(
+        "1,2",
+        environment.createConverter(new TypeLiteral<List<Integer>>() {})
+            .toString(asList(1, 2)));
+  }
+
+  @Test
+  public void instantiationStrategy() {
+    ConverterEnvironment environment = Instantiators.createEnvironment(
+        new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            instantiateUsing(InstantiationStrategy.BYTECODE);
+          }
+        });
+    Instantiator<Id> instantiator = environment.createInstantiator(Id.class);
+    assertTrue(((InstantiatorImpl<Id>) instantiator).isGenerated());
+    assertEquals(5, instantiator.newInstance("5").value);
+  }
+
+  @Test
+  public void configurationErrors() {
+    try {
+      Instantiators.createEnvironment(new AbstractInstantiatorModule() {
+        @Override
+        protected void configure() {
+          registerFor(Id.class).converter(IdConverter.class);
+          registerFor(Id.class).converter(IdConverter.class);
+        }
+      });
+      fail();
+    } catch (RuntimeException e) {
+      assertEquals(
+          duplicateConverterBindingForType(new Errors(), Id.class).toString(),
+          e.getMessage());
+    }
+  }
+
+  @Test
+  public void instantiationErrors() {
+    ConverterEnvironment environment = Instantiators.createEnvironment();
+    Errors errors = new Errors();
+    assertFalse(environment.createInstantiator(errors, HasId.class).isDefined());
+    assertEquals(1, errors.size());
+  }
+
+  @Test
+  public void convertersCreatedUsingInjector() {
+    final Injector injector = Guice.createInjector();
+    ConverterEnvironment environment = Instantiators.createEnvironment(
+        new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            createConvertersUsing(injector);
+            registerFor(Id.class).converter(InjectedIdConverter.class);
+          }
+        });
+    assertEquals(107, environment.createInstantiator(HasId.class).newInstance("7").id.value);
+  }
+
+  @Test
+  public void convertersWhichCannotBeInjected() {
+    final Injector injector = Guice.createInjector();
+    ConverterEnvironment environment = Instantiators.createEnvironment(
+        new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            createConvertersUsing(injector);
+            registerFor(Id.class).converter(UninjectableIdConverter.class);
+          }
+        });
+    Errors errors = new Errors();
+    assertFalse(environment.createInstantiator(errors, HasId.class).isDefined());
+    assertTrue(errors.toString().contains(
+        "unable to create " + UninjectableIdConverter.class + " using the injector"));
+  }
+
+  @Test
+  public void conflictingInjectors() {
+    try {
+      Instantiators.createEnvironment(new AbstractInstantiatorModule() {
+        @Override
+        protected void configure() {
+          createConvertersUsing(Guice.createInjector());
+          createConvertersUsing(Guice.createInjector());
+        }
+      });
+      fail();
+    } catch (RuntimeException e) {
+      assertEquals(
+          InstantiatorErrors.conflictingInjectors(new Errors()).toString(),
+          e.getMessage());
+    }
+  }
+
+  static class Offset {
+    final int value = 100;
+  }
+
+  static class InjectedIdConverter extends NullHandlingConverter<Id> {
+    private final Offset offset;
+    @Inject
+    InjectedIdConverter(Offset offset) {
+      this.offset = offset;
+    }
+    @Override
+    protected Id fromNonNullableString(String representation) {
+      return new Id(offset.value + Integer.parseInt(representation));
+    }
+    @Override
+    protected String nonNullableToString(Id value) {
+      return Integer.toString(value.value - offset.value);
+    }
+  }
+
+  interface Unbound {
+  }
+
+  static class UninjectableIdConverter extends NullHandlingConverter<Id> {
+    @Inject
+    UninjectableIdConverter(Unbound unbound) {
+    }
+    @Override
+    protected Id fromNonNullableString(String representation) {
+      return null;
+    }
+    @Override
+    protected String nonNullableToString(Id value) {
+      return null;
+    }
+  }
+
+  static class CountingModule extends AbstractInstantiatorModule {
+    final AtomicInteger configured = new AtomicInteger();
+    @Override
+    protected void configure() {
+      configured.incrementAndGet();
+      IdConverter.created.set(0);
+      registerFor(Id.class).converter(IdConverter.class);
+    }
+  }
+
+  static class Id {
+    final int value;
+    Id(int value) {
+      this.value = value;
+    }
+  }
+
+  static class IdConverter extends NullHandlingConverter<Id> {
+    static final AtomicInteger created = new AtomicInteger();
+    IdConverter() {
+      created.incrementAndGet();
+    }
+    @Override
+    protected Id fromNonNullableString(String representation) {
+      return new Id(Integer.parseInt(representation));
+    }
+    @Override
+    protected String nonNullableToString(Id value) {
+      return Integer.toString(value.value);
+    }
+  }
+
+  static class HasId {
+    final Id id;
+    HasId(Id id) {
+      this.id = id;
+    }
+  }
+
+  static class TwoConstructors {
+    TwoConstructors(String value) {
+    }
+    TwoConstructors(int value) {
+    }
+  }
+
+  static class HasTwoIds {
+    final Id first;
+    final Id second;
+    HasTwoIds(Id first, Id second) {
+      this.first = first;
+      this.second = second;
+    }
+  }
+
+}
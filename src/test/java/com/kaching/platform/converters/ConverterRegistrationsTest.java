@@ -0,0 +1,153 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.TypeLiteral;
+
+public class ConverterRegistrationsTest {
+
+  private static final Converter<?> LIST_OF_STRINGS = new NullConverter();
+  private static final Converter<?> LIST_OF_NUMBERS = new NullConverter();
+  private static final Converter<?> STRING = new NullConverter();
+
+  private final ConverterRegistrations registrations = new ConverterRegistrations(
+      ImmutableMap.<TypeLiteral<?>, Converter<?>> of(
+          new TypeLiteral<List<String>>() {}, LIST_OF_STRINGS,
+          new TypeLiteral<List<? extends Number>>() {}, LIST_OF_NUMBERS,
+          TypeLiteral.get(String.class), STRING),
+      ImmutableMap.<TypeLiteral<?>, Class<? extends Converter<?>>> of(),
+      ImmutableList.<Function<Type, Option<? extends Converter<?>>>> of(),
+      ImmutableList.<Set<Class<?>>> of());
+
+  @Test
+  public void exact() {
+    assertEquals(asList(STRING), registrations.getInstances(String.class));
+    assertEquals(
+        asList(LIST_OF_STRINGS),
+        registrations.getInstances(new TypeLiteral<List<String>>() {}.getType()));
+  }
+
+  @Test
+  public void generic() {
+    assertEquals(
+        asList(LIST_OF_NUMBERS),
+        registrations.getInstances(new TypeLiteral<List<Integer>>() {}.getType()));
+  }
+
+  @Test
+  public void none() {
+    assertTrue(registrations.getInstances(Integer.class).isEmpty());
+    assertTrue(registrations.getInstances(
+        new TypeLiteral<Set<Integer>>() {}.getType()).isEmpty());
+    assertTrue(registrations.getInstances(
+        new TypeLiteral<List<Object>>() {}.getType()).isEmpty());
+  }
+
+  @Test
+  public void resolved() {
+    Type type = new TypeLiteral<Map<String, Integer>>() {}.getType();
+    assertNull(registrations.getResolved(type));
+    assertSame(STRING, registrations.putResolved(type, STRING));
+    assertSame(STRING, registrations.putResolved(type, LIST_OF_STRINGS));
+    assertSame(STRING, registrations.getResolved(
+        new TypeLiteral<Map<String, Integer>>() {}.getType()));
+  }
+
+  @Test
+  public void isExact() {
+    assertTrue(ConverterRegistrations.isExact(String.class));
+    assertTrue(ConverterRegistrations.isExact(
+        new TypeLiteral<Map<String, List<Integer>>>() {}.getType()));
+    assertTrue(ConverterRegistrations.isExact(
+        new TypeLiteral<List<String>[]>() {}.getType()));
+    assertFalse(ConverterRegistrations.isExact(
+        new TypeLiteral<List<?>>() {}.getType()));
+    assertFalse(ConverterRegistrations.isExact(
+        new TypeLiteral<Map<String, List<? extends Number>>>() {}.getType()));
+  }
+
+  @Test
+  public void functions() {
+    Function<Type, Option<? extends Converter<?>>> any = new NoFunction();
+    Function<Type, Option<? extends Converter<?>>> numbers = new NoFunction();
+    Function<Type, Option<? extends Converter<?>>> lists = new NoFunction();
+    ConverterRegistrations registrations = new ConverterRegistrations(
+        ImmutableMap.<TypeLiteral<?>, Converter<?>> of(),
+        ImmutableMap.<TypeLiteral<?>, Class<? extends Converter<?>>> of(),
+        asList(numbers, any, lists),
+        ImmutableList.<Set<Class<?>>> of(
+            ImmutableSet.<Class<?>> of(Number.class),
+            ImmutableSet.<Class<?>> of(),
+            ImmutableSet.<Class<?>> of(Collection.class, Map.class)));
+    assertEquals(asList(numbers, any), registrations.getFunctions(Integer.class));
+    assertEquals(asList(any), registrations.getFunctions(String.class));
+    assertEquals(asList(any), registrations.getFunctions(int.class));
+    assertEquals(
+        asList(any, lists),
+        registrations.getFunctions(new TypeLiteral<List<String>>() {}.getType()));
+    assertEquals(asList(any, lists), registrations.getFunctions(HashMap.class));
+    assertEquals(
+        asList(any),
+        registrations.getFunctions(new TypeLiteral<List<String>[]>() {}.getType()));
+  }
+
+  @Test
+  public void functionsWithoutHandledTypes() {
+    List<Function<Type, Option<? extends Converter<?>>>> functions =
+        asList(new NoFunction(), new NoFunction());
+    ConverterRegistrations registrations = new ConverterRegistrations(
+        ImmutableMap.<TypeLiteral<?>, Converter<?>> of(),
+        ImmutableMap.<TypeLiteral<?>, Class<? extends Converter<?>>> of(),
+        functions,
+        ImmutableList.<Set<Class<?>>> of(
+            ImmutableSet.<Class<?>> of(), ImmutableSet.<Class<?>> of()));
+    assertEquals(functions, registrations.getFunctions(String.class));
+  }
+
+  static class NoFunction implements Function<Type, Option<? extends Converter<?>>> {
+    @Override
+    public Option<? extends Converter<?>> apply(Type from) {
+      return Option.none();
+    }
+  }
+
+  static class NullConverter extends NullHandlingConverter<Object> {
+    @Override
+    protected Object fromNonNullableString(String representation) {
+      return null;
+    }
+    @Override
+    protected String nonNullableToString(Object value) {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.kaching.platform.converters.NativeConverters.C_INT;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class DelimitingTest {
+
+  @Test
+  public void append() throws Exception {
+    Delimiting delimiting = Delimiting.by("; ").withNullAs("?");
+    StringBuilder out = new StringBuilder();
+    delimiting.append(C_INT, 1, out);
+    delimiting.appendSeparator(out);
+    delimiting.append(C_INT, null, out);
+    delimiting.appendSeparator(out);
+    delimiting.append(new ThingConverter(), new Thing("t"), out);
+    assertEquals("1; ?; t", out.toString());
+  }
+
+  static class Thing {
+    private final String name;
+    Thing(String name) {
+      this.name = name;
+    }
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  static class ThingConverter extends NullHandlingConverter<Thing> {
+    @Override
+    protected Thing fromNonNullableString(String representation) {
+      return new Thing(representation);
+    }
+    @Override
+    protected String nonNullableToString(Thing value) {
+      return value.toString();
+    }
+  }
+
+  @Test
+  public void defaults() {
+    assertEquals(",", Delimiting.by(',').getSeparator());
+    assertEquals("", Delimiting.by(',').getNullValue());
+  }
+
+}
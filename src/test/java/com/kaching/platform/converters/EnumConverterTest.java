@@ -11,6 +11,7 @@
 package com.kaching.platform.converters;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -39,6 +40,31 @@ public class EnumConverterTest {
     assertEquals(TheEnum.BAR, converter.fromString("bar"));
   }
 
+  @Test
+  public void fromCharSequence() throws Exception {
+    EnumConverter<TheEnum> converter = new EnumConverter<TheEnum>(TheEnum.class);
+    assertEquals(TheEnum.FOO, converter.fromCharSequence("a,foo,b", 2, 5));
+    assertEquals(TheEnum.BAR, converter.fromCharSequence("BAR", 0, 3));
+    assertNull(converter.fromCharSequence(null, 0, 0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fromCharSequenceInvalid() throws Exception {
+    new EnumConverter<TheEnum>(TheEnum.class).fromCharSequence("a,fox,b", 2, 5);
+  }
+
+  @Test
+  public void appendTo() throws Exception {
+    StringBuilder out = new StringBuilder("a,");
+    new EnumConverter<TheEnum>(TheEnum.class).appendTo(TheEnum.BAR, out);
+    assertEquals("a,BAR", out.toString());
+  }
+
+  @Test
+  public void maxLength() throws Exception {
+    assertEquals(3, new EnumConverter<TheEnum>(TheEnum.class).maxLength());
+  }
+
   enum TheEnum {
     FOO, BAR;
   }
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FailuresTest {
+
+  @Test
+  public void sortedByIndex() {
+    Failures failures = new Failures();
+    assertTrue(failures.isEmpty());
+    IllegalArgumentException first = new IllegalArgumentException("first");
+    IllegalStateException second = new IllegalStateException("second");
+    failures.add(7, second);
+    failures.add(2, first);
+    assertEquals(2, failures.size());
+    assertEquals(2, (int) failures.asMap().firstKey());
+    assertEquals(first, failures.asMap().get(2));
+    assertEquals(second, failures.asMap().get(7));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void cannotBeModifiedThroughMap() {
+    new Failures().asMap().put(1, new RuntimeException());
+  }
+
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+
+public class FieldStoresTest {
+
+  @Test
+  public void constructorIsBypassed() {
+    Instantiator<Wide> instantiator = create(Wide.class, InstantiationStrategy.FIELD_STORES);
+    assertTrue(((InstantiatorImpl<Wide>) instantiator).isGenerated());
+
+    Wide wide = instantiator.newInstance(
+        "1", "2", "true", "3.5", "4.5", "c", "5", "6", "seven", null);
+    assertEquals(1, wide.i);
+    assertEquals(2L, wide.l);
+    assertTrue(wide.z);
+    assertEquals(3.5, wide.d, 0.0);
+    assertEquals(4.5f, wide.f, 0.0f);
+    assertEquals('c', wide.c);
+    assertEquals(5, wide.s);
+    assertEquals(6, wide.b);
+    assertEquals("seven", wide.string);
+    assertNull(wide.nothing);
+    assertEquals(
+        asList("1", "2", "true", "3.5", "4.5", "c", "5", "6", "seven", null),
+        instantiator.fromInstance(wide));
+  }
+
+  @Test
+  public void privateConstructorIsBypassed() {
+    Instantiator<Private> instantiator = create(Private.class, InstantiationStrategy.FIELD_STORES);
+    assertTrue(((InstantiatorImpl<Private>) instantiator).isGenerated());
+    assertEquals(7, instantiator.newInstance("7", "seven").i);
+    assertEquals("seven", instantiator.newInstance("7", "seven").string);
+
+    Private[] instances = instantiator.newInstances(new Columns(1, 2)
+        .set(0, new int[] { 8 })
+        .set(1, new String[] { "eight" }), new Failures());
+    assertEquals(8, instances[0].i);
+    assertEquals("eight", instances[0].string);
+
+    assertFalse(((InstantiatorImpl<Private>) create(Private.class, InstantiationStrategy.BYTECODE))
+        .isGenerated());
+  }
+
+  @Test
+  public void constructorIsCalledWhenItDoesMoreThanStoring() throws Exception {
+    assertTrue(stores(Checking.class, "value").isEmpty());
+
+    Instantiator<Checking> instantiator = create(Checking.class, InstantiationStrategy.FIELD_STORES);
+    assertTrue(((InstantiatorImpl<Checking>) instantiator).isGenerated());
+    assertEquals("a", instantiator.newInstance("a").value);
+    try {
+      instantiator.newInstance((String) null);
+      fail();
+    } catch (RuntimeException e) {
+      // the constructor was called
+      assertEquals(NullPointerException.class, e.getCause().getCause().getClass());
+    }
+  }
+
+  @Test
+  public void constructorIsCalledForSubclasses() throws Exception {
+    assertTrue(stores(Extending.class, "value").isEmpty());
+    assertEquals("a", create(Extending.class, InstantiationStrategy.FIELD_STORES)
+        .newInstance("a").value);
+  }
+
+  @Test
+  public void constructorIsCalledWhenAssigningTwice() throws Exception {
+    assertTrue(stores(Twice.class, "first").isEmpty());
+    Twice twice = create(Twice.class, InstantiationStrategy.FIELD_STORES).newInstance("a");
+    assertEquals("a", twice.first);
+    assertEquals("a", twice.second);
+  }
+
+  @Test
+  public void unassignedParametersAreNotStored() throws Exception {
+    FieldStores stores = stores(Narrow.class, "i", null).getOrThrow();
+    assertTrue(stores.isStored(0));
+    assertFalse(stores.isStored(1));
+  }
+
+  private static Option<FieldStores> stores(Class<?> klass, String... fieldNames)
+      throws Exception {
+    Constructor<?> constructor = klass.getDeclaredConstructors()[0];
+    Field[] fields = new Field[fieldNames.length];
+    for (int i = 0; i < fieldNames.length; i++) {
+      fields[i] = fieldNames[i] == null ? null : klass.getDeclaredField(fieldNames[i]);
+    }
+    return FieldStores.create(
+        constructor, fields, ConstructorAnalysis.analyse(klass, constructor));
+  }
+
+  private static <T> Instantiator<T> create(
+      Class<T> klass, final InstantiationStrategy strategy) {
+    return Instantiators.createInstantiator(klass, new AbstractInstantiatorModule() {
+      @Override
+      protected void configure() {
+        instantiateUsing(strategy);
+      }
+    });
+  }
+
+  static class Wide {
+    final int i;
+    final long l;
+    final boolean z;
+    final double d;
+    final float f;
+    final char c;
+    final short s;
+    final byte b;
+    final String string;
+    final String nothing;
+    Wide(int i, long l, boolean z, double d, float f, char c, short s, byte b,
+        String string, @Optional String nothing) {
+      this.i = i;
+      this.l = l;
+      this.z = z;
+      this.d = d;
+      this.f = f;
+      this.c = c;
+      this.s = s;
+      this.b = b;
+      this.string = string;
+      this.nothing = nothing;
+    }
+  }
+
+  static class Private {
+    final int i;
+    final String string;
+    private Private(int i, String string) {
+      this.i = i;
+      this.string = string;
+    }
+  }
+
+  static class Narrow {
+    final int i;
+    Narrow(int i, String ignored) {
+      this.i = i;
+    }
+  }
+
+  static class Checking {
+    final String value;
+    Checking(@Optional String value) {
+      checkNotNull(value);
+      this.value = value;
+    }
+  }
+
+  static class Base {
+  }
+
+  static class Extending extends Base {
+    final String value;
+    Extending(String value) {
+      this.value = value;
+    }
+  }
+
+  static class Twice {
+    final String first;
+    final String second;
+    Twice(String value) {
+      this.first = value;
+      this.second = value;
+    }
+  }
+
+}
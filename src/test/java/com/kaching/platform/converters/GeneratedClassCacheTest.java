@@ -0,0 +1,146 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.kaching.platform.converters.GeneratedClassCache.key;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+public class GeneratedClassCacheTest {
+
+  private File directory;
+
+  @Before
+  public void before() {
+    directory = Files.createTempDir();
+  }
+
+  @After
+  public void after() throws IOException {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void generatedClassIsCachedAndReused() throws Exception {
+    Class<?> first = isolate(Point.class);
+    assertGenerated(first);
+    File[] files = directory.listFiles();
+    assertEquals(1, files.length);
+    assertTrue(files[0].getName().startsWith(Point.class.getName() + "$$Instantiator$$"));
+    byte[] bytes = Files.toByteArray(files[0]);
+
+    // as after a restart, the class is not defined by the class loader
+    Class<?> second = isolate(Point.class);
+    assertNotSame(first, second);
+    assertGenerated(second);
+    assertEquals(1, directory.listFiles().length);
+    assertArrayEquals(bytes, Files.toByteArray(files[0]));
+  }
+
+  @Test
+  public void corruptClassIsRemoved() throws Exception {
+    assertGenerated(isolate(Point.class));
+    File file = directory.listFiles()[0];
+    Files.write(new byte[] { 1, 2, 3 }, file);
+
+    Instantiator<?> instantiator = create(isolate(Point.class));
+    assertFalse(((InstantiatorImpl<?>) instantiator).isGenerated());
+    assertFalse(file.exists());
+
+    assertGenerated(isolate(Point.class));
+    assertTrue(file.exists());
+  }
+
+  @Test
+  public void keysDependOnShape() throws Exception {
+    assertEquals(key(Point.class, "a"), key(Point.class, "a"));
+    assertFalse(key(Point.class, "a").equals(key(Point.class, "b")));
+    assertFalse(key(Point.class, "a").equals(key(Other.class, "a")));
+  }
+
+  @Test
+  public void unwritableDirectory() throws Exception {
+    File file = new File(directory, "file");
+    Files.write(new byte[0], file);
+    directory = file;
+    try {
+      assertGenerated(isolate(Point.class));
+    } finally {
+      directory = file.getParentFile();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void assertGenerated(Class<?> klass) {
+    Instantiator<?> instantiator = create(klass);
+    assertTrue(((InstantiatorImpl<?>) instantiator).isGenerated());
+    Object point = instantiator.newInstance("3", "4");
+    assertEquals(klass, point.getClass());
+    List<String> parameters = ((Instantiator<Object>) instantiator).fromInstance(point);
+    assertEquals("3", parameters.get(0));
+    assertEquals("4", parameters.get(1));
+  }
+
+  private Instantiator<?> create(Class<?> klass) {
+    return Instantiators.createInstantiator(klass, new AbstractInstantiatorModule() {
+      @Override
+      protected void configure() {
+        instantiateUsing(InstantiationStrategy.BYTECODE);
+        cacheGeneratedClassesIn(directory);
+      }
+    });
+  }
+
+  /* Loads klass again, in a class loader of its own. */
+  private static Class<?> isolate(final Class<?> klass) throws Exception {
+    final byte[] bytes = ConstructorAnalysis.getClassBytes(klass);
+    return new ClassLoader(klass.getClassLoader()) {
+      @Override
+      protected synchronized Class<?> loadClass(String name, boolean resolve)
+          throws ClassNotFoundException {
+        Class<?> loaded = findLoadedClass(name);
+        if (loaded == null && name.equals(klass.getName())) {
+          loaded = defineClass(name, bytes, 0, bytes.length);
+        }
+        return loaded != null ? loaded : super.loadClass(name, resolve);
+      }
+    }.loadClass(klass.getName());
+  }
+
+  public static class Point {
+    final int x;
+    final int y;
+    public Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  public static class Other {
+  }
+
+}
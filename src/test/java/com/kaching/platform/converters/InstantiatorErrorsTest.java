@@ -14,6 +14,7 @@ import static com.kaching.platform.converters.InstantiatorErrors.noSuchField;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.util.List;
 
 import org.junit.Test;
@@ -33,6 +34,15 @@ public class InstantiatorErrorsTest {
             new Errors(), String.class, Converter.class, Integer.class));
   }
 
+  @Test
+  public void unableToCreateInstantiator() {
+    check(
+        "unable to create an instantiator for class java.lang.String " +
+        "due to java.lang.IllegalStateException: the message",
+        InstantiatorErrors.unableToCreateInstantiator(
+            new Errors(), String.class, new IllegalStateException("the message")));
+  }
+
   @Test
   public void incorrectDefaultValue() {
     check(
@@ -84,6 +94,43 @@ public class InstantiatorErrorsTest {
             new Errors(), new TypeLiteral<List<String>>() {}.getType()));
   }
 
+  @Test
+  public void conflictingInjectors() {
+    check(
+        "conflicting injectors to create converters",
+        InstantiatorErrors.conflictingInjectors(new Errors()));
+  }
+
+  @Test
+  public void conflictingExecutors() {
+    check(
+        "conflicting executors to analyse constructors",
+        InstantiatorErrors.conflictingExecutors(new Errors()));
+  }
+
+  @Test
+  public void conflictingCacheDirectories() {
+    check(
+        "conflicting directories to cache generated classes: a and b",
+        InstantiatorErrors.conflictingCacheDirectories(
+            new Errors(), new File("a"), new File("b")));
+  }
+
+  @Test
+  public void conflictingGenerationThresholds() {
+    check(
+        "conflicting numbers of invocations after which to generate code: 2 and 3",
+        InstantiatorErrors.conflictingGenerationThresholds(new Errors(), 2, 3));
+  }
+
+  @Test
+  public void unableToInject() {
+    check(
+        "unable to create class java.lang.String using the injector due to oops",
+        InstantiatorErrors.unableToInject(
+            new Errors(), String.class, new RuntimeException("oops")));
+  }
+
   @Test
   public void addinTwiceTheSameMessageDoesNotDuplicateTheError() {
     check(
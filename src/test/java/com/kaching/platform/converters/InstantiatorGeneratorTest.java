@@ -0,0 +1,433 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.kaching.platform.converters.InstantiationStrategy.BYTECODE;
+import static com.kaching.platform.converters.NativeConverters.C_BOOLEAN;
+import static com.kaching.platform.converters.NativeConverters.C_BYTE;
+import static com.kaching.platform.converters.NativeConverters.C_CHAR;
+import static com.kaching.platform.converters.NativeConverters.C_DOUBLE;
+import static com.kaching.platform.converters.NativeConverters.C_FLOAT;
+import static com.kaching.platform.converters.NativeConverters.C_INT;
+import static com.kaching.platform.converters.NativeConverters.C_LONG;
+import static com.kaching.platform.converters.NativeConverters.C_SHORT;
+import static com.kaching.platform.converters.NativeConverters.C_STRING;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.BitSet;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class InstantiatorGeneratorTest {
+
+  @Test
+  public void natives() throws Exception {
+    GeneratedInstantiator<Natives> instantiator = InstantiatorGenerator.generate(
+        Natives.class.getConstructor(
+            int.class, double.class, short.class, char.class, long.class,
+            boolean.class, float.class, byte.class),
+        new Converter<?>[] {
+            C_INT, C_DOUBLE, C_SHORT, C_CHAR, C_LONG, C_BOOLEAN, C_FLOAT, C_BYTE },
+        fields(Natives.class, "i", "d", "s", "c", "l", "b", "f", "y"),
+        new BitSet(), new BitSet(), null, null).getOrThrow();
+    Natives instance = instantiator.newInstance(
+        asList("1", "2.3", "3", "c", "4", "true", "5.5", "6").iterator());
+    assertEquals(1, instance.i);
+    assertEquals(2.3, instance.d, 0.0);
+    assertEquals(3, instance.s);
+    assertEquals('c', instance.c);
+    assertEquals(4L, instance.l);
+    assertEquals(true, instance.b);
+    assertEquals(5.5f, instance.f, 0.0);
+    assertEquals(6, instance.y);
+
+    assertEquals(
+        asList("1", "2.3", "3", "c", "4", "true", "5.5", "6"),
+        asList(instantiator.fromInstance(instance)));
+  }
+
+  @Test
+  public void newInstanceFromArray() throws Exception {
+    BitSet optionality = new BitSet();
+    optionality.set(0, 3);
+    BitSet wrapInOption = new BitSet();
+    wrapInOption.set(3);
+    GeneratedInstantiator<Optionals> instantiator = InstantiatorGenerator.generate(
+        Optionals.class.getDeclaredConstructor(
+            String.class, int.class, Integer.class, Option.class),
+        new Converter<?>[] { C_STRING, C_INT, C_INT, C_STRING },
+        fields(Optionals.class, "string", "primitive", "boxed", "option"),
+        optionality, wrapInOption, new String[] { null, "42", null, null },
+        null).getOrThrow();
+    Optionals instance = instantiator.newInstance(new String[] { "a", null, "2" });
+    assertEquals("a", instance.string);
+    assertEquals(42, instance.primitive);
+    assertEquals((Integer) 2, instance.boxed);
+    assertTrue(instance.option.isEmpty());
+    try {
+      instantiator.newInstance(new String[5]);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("wrong number of arguments", e.getMessage());
+    }
+  }
+
+  @Test
+  public void newInstanceFromSlices() throws Exception {
+    BitSet optionality = new BitSet();
+    optionality.set(0, 3);
+    BitSet wrapInOption = new BitSet();
+    wrapInOption.set(3);
+    GeneratedInstantiator<Optionals> instantiator = InstantiatorGenerator.generate(
+        Optionals.class.getDeclaredConstructor(
+            String.class, int.class, Integer.class, Option.class),
+        new Converter<?>[] { new NullConverter(), C_INT, C_INT, C_STRING },
+        fields(Optionals.class, "string", "primitive", "boxed", "option"),
+        optionality, wrapInOption, new String[] { null, "42", null, null },
+        null).getOrThrow();
+    String line = "a,-1,2,b";
+    Optionals instance = instantiator.newInstance(
+        line, new int[] { -1, 2, 5, 7 }, new int[] { 0, 2, 1, 1 });
+    assertNull(instance.string);
+    assertEquals(-1, instance.primitive);
+    assertEquals((Integer) 2, instance.boxed);
+    assertEquals("b", instance.option.getOrThrow());
+    instance = instantiator.newInstance(line, new int[] { -1, -1 }, new int[] { 0, 0 });
+    assertEquals(42, instance.primitive);
+    assertNull(instance.boxed);
+    assertTrue(instance.option.isEmpty());
+    try {
+      instantiator.newInstance(line, new int[] { 0 }, new int[] { 1 });
+      fail();
+    } catch (IllegalStateException e) {
+      // NullConverter, which cannot convert slices, produced null
+    }
+    try {
+      instantiator.newInstance(line,
+          new int[] { -1, 2, 5, 7, 0 }, new int[] { 0, 2, 1, 1, 1 });
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("wrong number of arguments", e.getMessage());
+    }
+  }
+
+  @Test
+  public void noParameters() throws Exception {
+    GeneratedInstantiator<NoParameters> instantiator = InstantiatorGenerator.generate(
+        NoParameters.class.getDeclaredConstructor(), null, new Field[0],
+        new BitSet(), new BitSet(), null, null).getOrThrow();
+    assertEquals(NoParameters.class,
+        instantiator.newInstance(Collections.<String> emptyList().iterator()).getClass());
+  }
+
+  static class NoParameters {
+  }
+
+  @Test
+  public void optionality() throws Exception {
+    BitSet optionality = new BitSet();
+    optionality.set(0, 3);
+    BitSet wrapInOption = new BitSet();
+    wrapInOption.set(3);
+    GeneratedInstantiator<Optionals> instantiator = InstantiatorGenerator.generate(
+        Optionals.class.getDeclaredConstructor(
+            String.class, int.class, Integer.class, Option.class),
+        new Converter<?>[] { C_STRING, C_INT, C_INT, C_STRING },
+        fields(Optionals.class, "string", "primitive", "boxed", "option"),
+        optionality, wrapInOption,
+        new String[] { null, "42", null, null },
+        new Object[] { null, null, 7, null }).getOrThrow();
+
+    Optionals defaults = instantiator.newInstance(
+        asList((String) null, null, null, null).iterator());
+    assertNull(defaults.string);
+    assertEquals(42, defaults.primitive);
+    assertEquals((Integer) 7, defaults.boxed);
+    assertTrue(defaults.option.isEmpty());
+
+    Optionals values = instantiator.newInstance(
+        asList("a", "1", "2", "b").iterator());
+    assertEquals("a", values.string);
+    assertEquals(1, values.primitive);
+    assertEquals((Integer) 2, values.boxed);
+    assertEquals("b", values.option.getOrThrow());
+
+    assertEquals(
+        asList(null, "42", "7", null),
+        asList(instantiator.fromInstance(defaults)));
+    assertEquals(
+        asList("a", "1", "2", "b"),
+        asList(instantiator.fromInstance(values)));
+  }
+
+  static class Optionals {
+    final String string;
+    final int primitive;
+    final Integer boxed;
+    final Option<String> option;
+    Optionals(String string, int primitive, Integer boxed, Option<String> option) {
+      this.string = string;
+      this.primitive = primitive;
+      this.boxed = boxed;
+      this.option = option;
+    }
+  }
+
+  @Test
+  public void notOptional() throws Exception {
+    try {
+      stringInstantiator().newInstance(Collections.<String> emptyList().iterator());
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("parameter 1 is not optional but null was provided", e.getMessage());
+    }
+  }
+
+  @Test
+  public void wrongNumberOfArguments() throws Exception {
+    try {
+      stringInstantiator().newInstance(asList("first", "second").iterator());
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("wrong number of arguments", e.getMessage());
+    }
+  }
+
+  @Test
+  public void converterProducingNull() throws Exception {
+    GeneratedInstantiator<HasString> instantiator = InstantiatorGenerator.generate(
+        HasString.class.getDeclaredConstructor(String.class),
+        new Converter<?>[] { new NullConverter() },
+        fields(HasString.class, "value"),
+        new BitSet(), new BitSet(), null, null).getOrThrow();
+    try {
+      instantiator.newInstance(asList("a").iterator());
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals(
+          "converter class com.kaching.platform.converters.InstantiatorGeneratorTest$NullConverter produced a null value",
+          e.getMessage());
+    }
+  }
+
+  static class NullConverter extends NullHandlingConverter<String> {
+    @Override
+    protected String fromNonNullableString(String representation) {
+      return null;
+    }
+    @Override
+    protected String nonNullableToString(String value) {
+      return value;
+    }
+  }
+
+  @Test
+  public void equivalentInstantiatorsShareTheirClass() throws Exception {
+    Class<?> generated = stringInstantiator().getClass();
+    assertSame(generated, stringInstantiator().getClass());
+    assertNotSame(generated, InstantiatorGenerator.generate(
+        HasString.class.getDeclaredConstructor(String.class),
+        new Converter<?>[] { new NullConverter() },
+        fields(HasString.class, "value"),
+        new BitSet(), new BitSet(), null, null).getOrThrow().getClass());
+  }
+
+  private GeneratedInstantiator<HasString> stringInstantiator() throws Exception {
+    return InstantiatorGenerator.generate(
+        HasString.class.getDeclaredConstructor(String.class),
+        new Converter<?>[] { C_STRING },
+        fields(HasString.class, "value"),
+        new BitSet(), new BitSet(), null, null).getOrThrow();
+  }
+
+  static class HasString {
+    final String value;
+    HasString(String value) {
+      this.value = value;
+    }
+  }
+
+  @Test
+  public void privateFields() throws Exception {
+    GeneratedInstantiator<HasPrivateFields> instantiator = InstantiatorGenerator.generate(
+        HasPrivateFields.class.getDeclaredConstructor(String.class, long.class, int.class),
+        new Converter<?>[] { C_STRING, C_LONG, C_INT },
+        fields(HasPrivateFields.class, "name", "id", null),
+        new BitSet(), new BitSet(), null, null).getOrThrow();
+    HasPrivateFields instance = instantiator.newInstance(asList("a", "2", "3").iterator());
+    assertEquals(asList("a", "2", null), asList(instantiator.fromInstance(instance)));
+  }
+
+  static class HasPrivateFields {
+    private final String name;
+    private final long id;
+    HasPrivateFields(String name, long id, int ignored) {
+      this.name = name;
+      this.id = id;
+    }
+  }
+
+  @Test
+  public void fromInstanceToAppendable() throws Exception {
+    GeneratedInstantiator<HasPrivateFields> instantiator = InstantiatorGenerator.generate(
+        HasPrivateFields.class.getDeclaredConstructor(String.class, long.class, int.class),
+        new Converter<?>[] { C_STRING, C_LONG, C_INT },
+        fields(HasPrivateFields.class, "name", "id", null),
+        new BitSet(), new BitSet(), null, null).getOrThrow();
+    StringBuilder out = new StringBuilder();
+    instantiator.fromInstance(new HasPrivateFields("a", 2, 3), out,
+        Delimiting.by(',').withNullAs("-"));
+    assertEquals("a,2,-", out.toString());
+  }
+
+  @Test
+  public void primitiveConvertersAreNotBoxed() throws Exception {
+    BitSet optionality = new BitSet();
+    optionality.set(1);
+    GeneratedInstantiator<HasPrivateFields> instantiator = InstantiatorGenerator.generate(
+        HasPrivateFields.class.getDeclaredConstructor(String.class, long.class, int.class),
+        new Converter<?>[] { C_STRING, new UnboxedLongConverter(), new UnboxedIntConverter() },
+        fields(HasPrivateFields.class, "name", "id", null),
+        optionality, new BitSet(), new String[] { null, "8", null }, null).getOrThrow();
+    HasPrivateFields instance = instantiator.newInstance(asList("a", "2", "3").iterator());
+    assertEquals(2L, instance.id);
+    assertEquals(asList("a", "#2", null), asList(instantiator.fromInstance(instance)));
+    StringBuilder out = new StringBuilder();
+    instantiator.fromInstance(instance, out, Delimiting.by(','));
+    assertEquals("a,#2,", out.toString());
+    assertEquals(8L, instantiator.newInstance(asList("a", null, "3").iterator()).id);
+  }
+
+  static class UnboxedLongConverter implements LongConverter {
+    @Override
+    public Long fromString(String representation) {
+      throw new UnsupportedOperationException();
+    }
+    @Override
+    public String toString(Long value) {
+      throw new UnsupportedOperationException();
+    }
+    @Override
+    public long fromStringAsLong(String representation) {
+      return Long.parseLong(representation);
+    }
+    @Override
+    public String toString(long value) {
+      return "#" + value;
+    }
+    @Override
+    public void appendTo(long value, Appendable out) throws IOException {
+      out.append(toString(value));
+    }
+  }
+
+  static class UnboxedIntConverter implements IntConverter {
+    @Override
+    public Integer fromString(String representation) {
+      throw new UnsupportedOperationException();
+    }
+    @Override
+    public String toString(Integer value) {
+      throw new UnsupportedOperationException();
+    }
+    @Override
+    public int fromStringAsInt(String representation) {
+      return Integer.parseInt(representation);
+    }
+    @Override
+    public String toString(int value) {
+      throw new UnsupportedOperationException();
+    }
+    @Override
+    public void appendTo(int value, Appendable out) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Test
+  public void privateConstructorIsNotGenerated() throws Exception {
+    assertFalse(InstantiatorGenerator.generate(
+        HasPrivateConstructor.class.getDeclaredConstructor(String.class),
+        new Converter<?>[] { C_STRING },
+        fields(HasPrivateConstructor.class, "value"),
+        new BitSet(), new BitSet(), null, null).isDefined());
+  }
+
+  static class HasPrivateConstructor {
+    final String value;
+    private HasPrivateConstructor(String value) {
+      this.value = value;
+    }
+  }
+
+  @Test
+  public void systemClassIsNotGenerated() throws Exception {
+    assertFalse(InstantiatorGenerator.generate(
+        String.class.getConstructor(String.class),
+        new Converter<?>[] { C_STRING },
+        new Field[1],
+        new BitSet(), new BitSet(), null, null).isDefined());
+  }
+
+  private static Field[] fields(Class<?> klass, String... names) throws Exception {
+    Field[] fields = new Field[names.length];
+    for (int i = 0; i < names.length; i++) {
+      if (names[i] != null) {
+        fields[i] = klass.getDeclaredField(names[i]);
+        fields[i].setAccessible(true);
+      }
+    }
+    return fields;
+  }
+
+  @Test
+  public void createInstantiatorUsingBytecode() {
+    Instantiator<Optionals> instantiator = Instantiators.createInstantiator(
+        Optionals.class, new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            instantiateUsing(BYTECODE);
+          }
+        });
+    Optionals instance = instantiator.newInstance(ImmutableMap.of(
+        "string", "a", "primitive", "1", "boxed", "2"));
+    assertEquals("a", instance.string);
+    assertEquals(1, instance.primitive);
+    assertEquals((Integer) 2, instance.boxed);
+    assertTrue(instance.option.isEmpty());
+    assertEquals(asList("a", "1", "2", null), instantiator.fromInstance(instance));
+  }
+
+  @Test
+  public void createInstantiatorUsingBytecodeFallsBack() {
+    HasPrivateConstructor instance = Instantiators.createInstantiator(
+        HasPrivateConstructor.class, new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            instantiateUsing(BYTECODE);
+          }
+        }).newInstance("a");
+    assertEquals("a", instance.value);
+  }
+
+}
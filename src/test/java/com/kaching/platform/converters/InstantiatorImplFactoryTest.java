@@ -13,6 +13,8 @@ package com.kaching.platform.converters;
 import static com.google.common.collect.Lists.newArrayList;
 import static com.kaching.platform.converters.InstantiatorErrors.cannotAnnotateOptionWithOptional;
 import static com.kaching.platform.converters.InstantiatorErrors.cannotSpecifyDefaultValueAndConstant;
+import static com.kaching.platform.converters.InstantiatorErrors.conflictingExecutors;
+import static com.kaching.platform.converters.InstantiatorErrors.conflictingInstantiationStrategies;
 import static com.kaching.platform.converters.InstantiatorErrors.constantHasIncompatibleType;
 import static com.kaching.platform.converters.InstantiatorErrors.duplicateConverterBindingForType;
 import static com.kaching.platform.converters.InstantiatorErrors.enumHasAmbiguousNames;
@@ -40,24 +42,39 @@ import static com.kaching.platform.converters.NativeConverters.C_SHORT;
 import static com.kaching.platform.converters.NativeConverters.C_STRING;
 import static java.lang.String.format;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeNotNull;
 
+import java.io.File;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
 import com.google.inject.BindingAnnotation;
 import com.google.inject.TypeLiteral;
 import com.google.inject.name.Named;
@@ -222,6 +239,125 @@ public class InstantiatorImplFactoryTest {
     }
   }
 
+  @Test
+  public void createConverterIsMemoized() throws Exception {
+    InstantiatorImplFactory<Object> factory = createFactory(actualErrors, null);
+    Type type = new TypeLiteral<List<HasStringConstructor>>() {}.getType();
+    Converter<?> converter = factory.createConverter(type).getOrThrow();
+    assertSame(converter, factory.createConverter(type).getOrThrow());
+    assertSame(
+        factory.createConverter(HasStringConstructor.class).getOrThrow(),
+        factory.createConverter(HasStringConstructor.class).getOrThrow());
+  }
+
+  @Test
+  public void createConverterPrefersExactRegistration() throws Exception {
+    InstantiatorImplFactory<Object> factory = createFactory(actualErrors, null);
+    final Converter<List<Integer>> exact =
+        new CollectionOfElementsConverter<List<Integer>>(List.class, C_INT);
+    new AbstractInstantiatorModule() {
+      @Override
+      protected void configure() {
+        registerFor(new TypeLiteral<List<? extends Number>>() {})
+            .converter(new CollectionOfElementsConverter<List<Number>>(List.class, C_DOUBLE));
+        registerFor(new TypeLiteral<List<Integer>>() {}).converter(exact);
+      }
+    }.configure(factory.binder());
+    assertSame(
+        exact,
+        factory.createConverter(new TypeLiteral<List<Integer>>() {}.getType()).getOrThrow());
+    assertFalse(actualErrors.hasErrors());
+  }
+
+  @Test
+  public void convertersAreCreatedOncePerClass() throws Exception {
+    InstantiatorImplFactory<Object> factory = createFactory(actualErrors, null);
+    new AbstractInstantiatorModule() {
+      @Override
+      protected void configure() {
+        registerFor(new TypeLiteral<List<String>>() {}).converter(AnyListConverter.class);
+        registerFor(new TypeLiteral<List<Integer>>() {}).converter(AnyListConverter.class);
+      }
+    }.configure(factory.binder());
+    Converter<?> converter = factory
+        .createConverter(new TypeLiteral<List<String>>() {}.getType()).getOrThrow();
+    assertEquals(AnyListConverter.class, converter.getClass());
+    assertSame(
+        converter,
+        factory.createConverter(new TypeLiteral<List<Integer>>() {}.getType()).getOrThrow());
+    assertFalse(actualErrors.hasErrors());
+  }
+
+  static class AnyListConverter implements Converter<List<?>> {
+    @Override
+    public String toString(List<?> value) { return null; }
+    @Override
+    public List<?> fromString(String representation) { return null; }
+  }
+
+  @Test
+  public void reflectedParameterNames() throws Exception {
+    assertFalse(InstantiatorImplFactory
+        .getReflectedParameterNames(HasStringConstructor.class.getDeclaredConstructor(String.class))
+        .isDefined());
+    Class<?> klass = compileWithParameters(
+        "TwoFields",
+        "public class TwoFields {" +
+        "  final int first; final String second;" +
+        "  public TwoFields(int first, String second) {" +
+        "    this.first = first; this.second = second;" +
+        "  }" +
+        "}");
+    assertEquals(
+        asList("first", "second"),
+        asList(InstantiatorImplFactory
+            .getReflectedParameterNames(klass.getDeclaredConstructors()[0])
+            .getOrThrow()));
+    @SuppressWarnings("unchecked")
+    Instantiator<Object> instantiator =
+        (Instantiator<Object>) Instantiators.createInstantiator(klass);
+    Object instance = instantiator.newInstance(ImmutableMap.of("first", "4", "second", "foo"));
+    assertEquals(asList("4", "foo"), instantiator.fromInstance(instance));
+  }
+
+  @Test
+  public void analysisIsDeferredWhenParameterNamesAreReflected() throws Exception {
+    Class<?> klass = compileWithParameters(
+        "Doubling",
+        "public class Doubling {" +
+        "  final int value;" +
+        "  public Doubling(int value) {" +
+        "    this.value = value * 2;" +
+        "  }" +
+        "}");
+    @SuppressWarnings("unchecked")
+    Instantiator<Object> instantiator =
+        (Instantiator<Object>) Instantiators.createInstantiator(klass);
+    Object instance = instantiator.newInstance(ImmutableMap.of("value", "4"));
+    Field value = klass.getDeclaredField("value");
+    value.setAccessible(true);
+    assertEquals(8, value.getInt(instance));
+    try {
+      instantiator.fromInstance(instance);
+      fail();
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(
+          "class Doubling has an illegal constructor"));
+    }
+  }
+
+  private static Class<?> compileWithParameters(String name, String source) throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assumeNotNull(compiler);
+    File directory = Files.createTempDir();
+    File file = new File(directory, name + ".java");
+    Files.write(source, file, Charsets.UTF_8);
+    assertEquals(
+        0, compiler.run(
+            null, null, null, "-parameters", "--release", "8", "-d", directory.getPath(), file.getPath()));
+    return new URLClassLoader(new URL[] { directory.toURI().toURL() }).loadClass(name);
+  }
+
   @Test
   public void convertedAnnotatedClass() throws Exception {
     InstantiatorImplFactory<Object> factory = createFactory(actualErrors, null);
@@ -287,6 +423,58 @@ public class InstantiatorImplFactoryTest {
         factory.getErrors());
   }
 
+  @Test
+  public void functionWithHandledTypes() throws Exception {
+    InstantiatorImplFactory<Object> factory = createFactory(actualErrors, null);
+    final List<Type> offered = newArrayList();
+    new AbstractInstantiatorModule() {
+      @Override
+      protected void configure() {
+        register(new Function<Type, Option<? extends Converter<?>>>() {
+          @Override
+          public Option<? extends Converter<?>> apply(Type type) {
+            offered.add(type);
+            return Option.some(new ConverterForAnnotatedClass());
+          }
+        }, Comparable.class, AnnotatedClass.class);
+      }
+    }.configure(factory.binder());
+    assertEquals(
+        ConverterForAnnotatedClass.class,
+        factory.createConverter(AnnotatedClass.class).getOrThrow().getClass());
+    assertEquals(
+        StringConstructorConverter.class,
+        factory.createConverter(NonAnnotatedClass.class).getOrThrow().getClass());
+    assertEquals(
+        ConverterForAnnotatedClass.class,
+        factory.createConverter(Integer.class).getOrThrow().getClass());
+    assertEquals(ImmutableList.of(AnnotatedClass.class, Integer.class), offered);
+    assertFalse(actualErrors.hasErrors());
+  }
+
+  @Test
+  public void functionsWithHandledTypesAreAmbiguous() throws Exception {
+    InstantiatorImplFactory<Object> factory = createFactory(actualErrors, null);
+    new AbstractInstantiatorModule() {
+      @Override
+      protected void configure() {
+        Function<Type, Option<? extends Converter<?>>> function =
+            new Function<Type, Option<? extends Converter<?>>>() {
+              @Override
+              public Option<? extends Converter<?>> apply(Type type) {
+                return Option.some(new ConverterForAnnotatedClass());
+              }
+            };
+        register(function, AnnotatedClass.class);
+        register(function, Object.class);
+      }
+    }.configure(factory.binder());
+    factory.createConverter(AnnotatedClass.class);
+    assertEquals(
+        moreThanOneMatchingFunction(new Errors(), AnnotatedClass.class),
+        factory.getErrors());
+  }
+
   @AnAnnotation
   static class AnnotatedClass {
     String value;
@@ -328,7 +516,102 @@ public class InstantiatorImplFactoryTest {
   public void createInstantiatorWithIllegalConstructor() throws Exception {
     checkErrorCase(
         HasIllegalConstructor.class,
-        illegalConstructor(new Errors(), HasIllegalConstructor.class, null));
+        illegalConstructor(new Errors(), HasIllegalConstructor.class, null),
+        new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            analyseEagerly();
+          }
+        });
+  }
+
+  @Test
+  public void illegalConstructorFailsFirstDestantiation() throws Exception {
+    Instantiator<HasNonIdempotentConstructor> instantiator =
+        Instantiators.createInstantiator(HasNonIdempotentConstructor.class);
+    HasNonIdempotentConstructor instance = instantiator.newInstance("4");
+    assertEquals(5, instance.value);
+    try {
+      instantiator.fromInstance(instance);
+      fail();
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(
+          HasNonIdempotentConstructor.class + " has an illegal constructor"));
+    }
+  }
+
+  static class HasNonIdempotentConstructor {
+    final int value;
+    HasNonIdempotentConstructor(int value) {
+      this.value = value + 1;
+    }
+  }
+
+  @Test
+  public void analyseUsingExecutor() throws Exception {
+    final List<Runnable> tasks = newArrayList();
+    final Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable task) {
+        tasks.add(task);
+      }
+    };
+    Instantiator<HasStringConstructor> instantiator = Instantiators.createInstantiator(
+        HasStringConstructor.class,
+        new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            analyseUsing(executor);
+          }
+        });
+    assertEquals(1, tasks.size());
+    tasks.get(0).run();
+    assertEquals(
+        asList("foo"),
+        instantiator.fromInstance(instantiator.newInstance("foo")));
+  }
+
+  @Test
+  public void analyseUsingRejectingExecutor() throws Exception {
+    Instantiator<HasStringConstructor> instantiator = Instantiators.createInstantiator(
+        HasStringConstructor.class,
+        new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            analyseUsing(new Executor() {
+              @Override
+              public void execute(Runnable task) {
+                throw new RejectedExecutionException();
+              }
+            });
+          }
+        });
+    assertEquals(
+        asList("foo"),
+        instantiator.fromInstance(instantiator.newInstance("foo")));
+  }
+
+  @Test
+  public void analyseUsingConflictingExecutors() throws Exception {
+    checkErrorCase(
+        HasStringConstructor.class,
+        conflictingExecutors(new Errors()),
+        new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            analyseUsing(directExecutor());
+            analyseUsing(directExecutor());
+          }
+        });
+  }
+
+  private static Executor directExecutor() {
+    return new Executor() {
+      @Override
+      public void execute(Runnable task) {
+        task.run();
+      }
+    };
   }
 
   static class HasIllegalConstructor {
@@ -405,6 +688,25 @@ public class InstantiatorImplFactoryTest {
         });
   }
 
+  @Test
+  public void instantiationStrategiesConflict() throws Exception {
+    Errors expected = new Errors();
+    conflictingInstantiationStrategies(
+        expected, InstantiationStrategy.REFLECTION, InstantiationStrategy.BYTECODE);
+    moreThanOneConstructor(expected, String.class);
+
+    checkErrorCase(
+        String.class,
+        expected,
+        new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            instantiateUsing(InstantiationStrategy.REFLECTION);
+            instantiateUsing(InstantiationStrategy.BYTECODE);
+          }
+        });
+  }
+
   static class DefaultValueAndDefaultConstant {
     DefaultValueAndDefaultConstant(@Optional(value = "4", constant = "F") int a) {
     }
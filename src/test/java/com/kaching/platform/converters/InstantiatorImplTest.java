@@ -21,19 +21,37 @@ import static com.kaching.platform.converters.NativeConverters.C_INT;
 import static com.kaching.platform.converters.NativeConverters.C_LONG;
 import static com.kaching.platform.converters.NativeConverters.C_SHORT;
 import static com.kaching.platform.converters.NativeConverters.C_STRING;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+
 public class InstantiatorImplTest {
 
   @Test
@@ -302,6 +320,410 @@ public class InstantiatorImplTest {
     instantiator.newInstance((Map<String, String>) null);
   }
 
+  @Test
+  public void unknownParameterNamesAreSkipped() throws Exception {
+    InstantiatorImpl<TwoNames> instantiator = new InstantiatorImpl<TwoNames>(
+        TwoNames.class.getDeclaredConstructor(String.class, int.class),
+        new Converter<?>[] { C_STRING, C_INT }, null, new BitSet(), new BitSet(),
+        null, null, new String[] { null, "second" });
+    Row row = instantiator.newRow();
+    TwoNames instance = instantiator.newInstance(row.set(0, "a").set("second", "2"));
+    assertEquals("a", instance.first);
+    assertEquals(2, instance.second);
+    try {
+      instantiator.newInstance(ImmutableMap.of("second", "2"));
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("parameter 1 is not optional but null was provided", e.getMessage());
+    }
+  }
+
+  @Test
+  public void newInstanceFromRow() {
+    InstantiatorImpl<TwoNames> instantiator =
+        createFactory(new Errors(), TwoNames.class).build().getOrThrow();
+    Row row = instantiator.newRow();
+    assertEquals(2, row.size());
+    TwoNames instance = instantiator.newInstance(
+        row.set(row.indexOf("second"), "2").set("first", "a"));
+    assertEquals("a", instance.first);
+    assertEquals(2, instance.second);
+    try {
+      instantiator.newInstance(row.clear());
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("parameter 1 is not optional but null was provided", e.getMessage());
+    }
+  }
+
+  @Test
+  public void newInstanceFromMapWithMissingNames() {
+    TwoNames instance = createFactory(new Errors(), TwoNames.class).build().getOrThrow()
+        .newInstance(ImmutableMap.of("first", "a", "unknown", "b"));
+    assertEquals("a", instance.first);
+    assertEquals(0, instance.second);
+  }
+
+  static class TwoNames {
+    final String first;
+    final int second;
+    TwoNames(String first, @Optional("0") int second) {
+      this.first = first;
+      this.second = second;
+    }
+  }
+
+  @Test
+  public void newInstanceFromSlices() {
+    InstantiatorImpl<TwoNames> instantiator =
+        createFactory(new Errors(), TwoNames.class).build().getOrThrow();
+    TwoNames instance = instantiator.newInstance(
+        "hello,12", new int[] { 0, 6 }, new int[] { 5, 2 });
+    assertEquals("hello", instance.first);
+    assertEquals(12, instance.second);
+    assertEquals(0, instantiator.newInstance(
+        "hello", new int[] { 0, -1 }, new int[] { 5, 0 }).second);
+    try {
+      instantiator.newInstance("a,1,c", new int[] { 0, 2, 4 }, new int[] { 1, 1, 1 });
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("wrong number of arguments", e.getMessage());
+    }
+  }
+
+  @Test
+  public void fromInstanceToAppendable() throws Exception {
+    InstantiatorImpl<HasEnumAndOption> instantiator =
+        createFactory(new Errors(), HasEnumAndOption.class).build().getOrThrow();
+    assertEquals("FOO|7|", instantiator.fromInstance(
+        new HasEnumAndOption(IsEnum.FOO, 7, Option.<String> none()),
+        new StringBuilder(), Delimiting.by('|')).toString());
+    StringWriter out = new StringWriter();
+    instantiator.fromInstance(
+        new HasEnumAndOption(IsEnum.BAR, -1, Option.some("a")), out,
+        Delimiting.by(", ").withNullAs("null"));
+    assertEquals("BAR, -1, a", out.toString());
+    assertEquals(
+        "null, 0, null",
+        instantiator.fromInstance(
+            new HasEnumAndOption(null, 0, Option.<String> none()),
+            new StringBuilder(), Delimiting.by(", ").withNullAs("null")).toString());
+  }
+
+  @Test
+  public void estimateLength() {
+    assertEquals(3 + 11 + 16 + 2, createFactory(new Errors(), HasEnumAndOption.class)
+        .build().getOrThrow().estimateLength(Delimiting.by(',')));
+  }
+
+  static class HasEnumAndOption {
+    final IsEnum value;
+    final int number;
+    final Option<String> option;
+    HasEnumAndOption(@Optional IsEnum value, int number, Option<String> option) {
+      this.value = value;
+      this.number = number;
+      this.option = option;
+    }
+  }
+
+  @Test
+  public void newInstances() {
+    Iterator<TwoNames> instances = createFactory(new Errors(), TwoNames.class)
+        .build().getOrThrow().newInstances(records());
+    assertEquals("a", instances.next().first);
+    try {
+      instances.next();
+      fail();
+    } catch (NumberFormatException e) {
+      // expected
+    }
+    TwoNames last = instances.next();
+    assertEquals("c", last.first);
+    assertEquals(3, last.second);
+    assertFalse(instances.hasNext());
+  }
+
+  @Test
+  public void newInstancesWithFailures() {
+    Failures failures = new Failures();
+    List<TwoNames> instances = newArrayList(createFactory(new Errors(), TwoNames.class)
+        .build().getOrThrow().newInstances(records(), failures));
+    assertEquals(2, instances.size());
+    assertEquals("a", instances.get(0).first);
+    assertEquals("c", instances.get(1).first);
+    assertEquals(1, failures.size());
+    assertTrue(failures.asMap().get(1) instanceof NumberFormatException);
+  }
+
+  @Test
+  public void newInstancesIntoArray() {
+    InstantiatorImpl<TwoNames> instantiator =
+        createFactory(new Errors(), TwoNames.class).build().getOrThrow();
+    Iterator<List<String>> records = records();
+    TwoNames[] instances = new TwoNames[2];
+    Failures failures = new Failures();
+    assertEquals(2, instantiator.newInstances(records, instances, failures));
+    assertEquals("a", instances[0].first);
+    assertNull(instances[1]);
+    assertEquals(newArrayList(1), newArrayList(failures.asMap().keySet()));
+    assertEquals(1, instantiator.newInstances(records, instances, new Failures()));
+    assertEquals("c", instances[0].first);
+    assertEquals(0, instantiator.newInstances(records, instances, new Failures()));
+  }
+
+  @Test
+  public void newInstancesFromColumns() {
+    InstantiatorImpl<HasEnumAndOption> instantiator =
+        createFactory(new Errors(), HasEnumAndOption.class).build().getOrThrow();
+    Failures failures = new Failures();
+    HasEnumAndOption[] instances = instantiator.newInstances(new Columns(3, 3)
+        .set(0, new String[] { "FOO", "BAZ", null })
+        .set(1, new int[] { 1, 2, 3 })
+        .set(2, new String[] { "a", null, "c" }), failures);
+    assertEquals(3, instances.length);
+    assertEquals(IsEnum.FOO, instances[0].value);
+    assertEquals(1, instances[0].number);
+    assertEquals("a", instances[0].option.getOrThrow());
+    assertNull(instances[1]);
+    assertEquals(newArrayList(1), newArrayList(failures.asMap().keySet()));
+    assertNull(instances[2].value);
+    assertEquals(3, instances[2].number);
+    assertEquals("c", instances[2].option.getOrThrow());
+  }
+
+  @Test
+  public void newInstancesFromColumnsGenerated() {
+    InstantiatorImplFactory<HasEnumAndOption> factory =
+        createFactory(new Errors(), HasEnumAndOption.class);
+    factory.binder().instantiateUsing(InstantiationStrategy.BYTECODE);
+    InstantiatorImpl<HasEnumAndOption> instantiator = factory.build().getOrThrow();
+    assertTrue(instantiator.isGenerated());
+    Failures failures = new Failures();
+    HasEnumAndOption[] instances = instantiator.newInstances(new Columns(3, 3)
+        .set(0, new String[] { "FOO", "BAZ", null })
+        .set(1, new int[] { 1, 2, 3 })
+        .set(2, new String[] { "a", null, "c" }), failures);
+    assertEquals(IsEnum.FOO, instances[0].value);
+    assertEquals(1, instances[0].number);
+    assertEquals("a", instances[0].option.getOrThrow());
+    assertNull(instances[1]);
+    assertEquals(newArrayList(1), newArrayList(failures.asMap().keySet()));
+    assertEquals(3, instances[2].number);
+  }
+
+  @Test
+  public void columnsOfPrimitivesRoundTrip() {
+    InstantiatorImplFactory<Natives> factory = createFactory(new Errors(), Natives.class);
+    factory.binder().instantiateUsing(InstantiationStrategy.BYTECODE);
+    InstantiatorImpl<Natives> instantiator = factory.build().getOrThrow();
+    assertTrue(instantiator.isGenerated());
+    Columns columns = instantiator.fromInstances(ImmutableList.of(
+        new Natives(2, 3.4, (short) 5, '6', 7l, true, 8.0f, (byte) 9),
+        new Natives(-2, -3.4, (short) -5, 'x', -7l, false, -8.0f, (byte) -9)));
+    Failures failures = new Failures();
+    Natives[] instances = instantiator.newInstances(columns, failures);
+    assertTrue(failures.isEmpty());
+    assertEquals(-2, instances[1].i);
+    assertEquals(3.4, instances[0].d, 0.0);
+    assertEquals(-7l, instances[1].l);
+    assertEquals('x', instances[1].c);
+    assertTrue(instances[0].b);
+    assertEquals((byte) 9, instances[0].y);
+  }
+
+  @Test
+  public void constructorFailuresAreTheSameWhetherGeneratedOrNot() {
+    for (InstantiationStrategy strategy : asList(
+        InstantiationStrategy.REFLECTION, InstantiationStrategy.BYTECODE)) {
+      InstantiatorImplFactory<Failing> factory = createFactory(new Errors(), Failing.class);
+      factory.binder().instantiateUsing(strategy);
+      InstantiatorImpl<Failing> instantiator = factory.build().getOrThrow();
+      assertEquals(strategy == InstantiationStrategy.BYTECODE, instantiator.isGenerated());
+      assertEquals(1, instantiator.newInstance("1").value);
+      try {
+        instantiator.newInstance("-1");
+        fail();
+      } catch (RuntimeException e) {
+        assertConstructorFailure(IllegalStateException.class, e);
+      }
+      try {
+        instantiator.newInstance("0");
+        fail();
+      } catch (RuntimeException e) {
+        assertConstructorFailure(IOException.class, e);
+      }
+      try {
+        instantiator.newInstance("one");
+        fail();
+      } catch (NumberFormatException e) {
+        // converters' exceptions are not wrapped
+      }
+      Failures failures = new Failures();
+      instantiator.newInstances(
+          new Columns(2, 1).set(0, new int[] { -1, 0 }), failures);
+      assertConstructorFailure(IllegalStateException.class, failures.asMap().get(0));
+      assertConstructorFailure(IOException.class, failures.asMap().get(1));
+    }
+  }
+
+  private static void assertConstructorFailure(Class<?> expected, RuntimeException e) {
+    assertEquals(RuntimeException.class, e.getClass());
+    assertEquals(InvocationTargetException.class, e.getCause().getClass());
+    assertEquals(expected, e.getCause().getCause().getClass());
+  }
+
+  static class Failing {
+    final int value;
+    Failing(int value) throws IOException {
+      check(value);
+      this.value = value;
+    }
+    static void check(int value) throws IOException {
+      if (value < 0) {
+        throw new IllegalStateException("negative");
+      } else if (value == 0) {
+        throw new IOException("zero");
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void newInstancesFromColumnOfWrongType() {
+    createFactory(new Errors(), HasEnumAndOption.class).build().getOrThrow()
+        .newInstances(new Columns(1, 3).set(1, new long[] { 1 }), new Failures());
+  }
+
+  @Test
+  public void fromInstancesToColumns() {
+    Columns columns = createFactory(new Errors(), Natives.class).build().getOrThrow()
+        .fromInstances(ImmutableList.of(
+            new Natives(2, 3.4, (short) 5, '6', 7l, true, 8.0f, (byte) 9),
+            new Natives(-2, -3.4, (short) -5, 'x', -7l, false, -8.0f, (byte) -9)));
+    assertEquals(2, columns.size());
+    assertEquals(8, columns.width());
+    assertTrue(Arrays.equals(new int[] { 2, -2 }, columns.getInts(0)));
+    assertTrue(Arrays.equals(new double[] { 3.4, -3.4 }, columns.getDoubles(1)));
+    assertTrue(Arrays.equals(new short[] { 5, -5 }, (short[]) columns.get(2)));
+    assertTrue(Arrays.equals(new long[] { 7, -7 }, columns.getLongs(4)));
+    assertTrue(Arrays.equals(new boolean[] { true, false }, (boolean[]) columns.get(5)));
+  }
+
+  @Test
+  public void columnsRoundTrip() {
+    InstantiatorImpl<HasEnumAndOption> instantiator =
+        createFactory(new Errors(), HasEnumAndOption.class).build().getOrThrow();
+    Columns columns = instantiator.fromInstances(ImmutableList.of(
+        new HasEnumAndOption(IsEnum.BAR, 4, Option.some("x")),
+        new HasEnumAndOption(null, 5, Option.<String> none())));
+    assertTrue(Arrays.equals(new String[] { "BAR", null }, columns.getStrings(0)));
+    assertTrue(Arrays.equals(new int[] { 4, 5 }, columns.getInts(1)));
+    assertTrue(Arrays.equals(new String[] { "x", null }, columns.getStrings(2)));
+    Failures failures = new Failures();
+    HasEnumAndOption[] instances = instantiator.newInstances(columns, failures);
+    assertTrue(failures.isEmpty());
+    assertEquals(IsEnum.BAR, instances[0].value);
+    assertEquals(5, instances[1].number);
+    assertTrue(instances[1].option.isEmpty());
+  }
+
+  @Test
+  public void newInstancesParallel() throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(8);
+    try {
+      for (Instantiator<TwoNames> instantiator : twoNamesInstantiators()) {
+        List<List<String>> records = newArrayList();
+        for (int i = 0; i < 20000; i++) {
+          records.add(newArrayList("n" + i, i % 1000 == 7 ? "error" : Integer.toString(i)));
+        }
+        Failures failures = new Failures();
+        List<TwoNames> instances =
+            instantiator.newInstancesParallel(records, pool, failures);
+        assertEquals(20000, instances.size());
+        assertEquals(20, failures.size());
+        for (int i = 0; i < 20000; i++) {
+          if (i % 1000 == 7) {
+            assertNull(instances.get(i));
+            assertTrue(failures.asMap().get(i) instanceof NumberFormatException);
+          } else {
+            assertEquals("n" + i, instances.get(i).first);
+            assertEquals(i, instances.get(i).second);
+          }
+        }
+
+        Failures destantiationFailures = new Failures();
+        List<TwoNames> nonNull = newArrayList(Iterables.filter(instances, Predicates.notNull()));
+        List<List<String>> values = instantiator.fromInstancesParallel(
+            nonNull, pool, destantiationFailures);
+        assertTrue(destantiationFailures.isEmpty());
+        assertEquals(nonNull.size(), values.size());
+        for (int i = 0; i < nonNull.size(); i++) {
+          assertEquals(instantiator.fromInstance(nonNull.get(i)), values.get(i));
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void sharedAcrossThreads() throws Exception {
+    for (final Instantiator<TwoNames> instantiator : twoNamesInstantiators()) {
+      final CountDownLatch start = new CountDownLatch(1);
+      final Failures failures = new Failures();
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      List<Future<?>> futures = newArrayList();
+      for (int t = 0; t < 8; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            start.await();
+            for (int i = 0; i < 5000; i++) {
+              TwoNames instance = instantiator.newInstance("t" + thread, Integer.toString(i));
+              if (!instance.first.equals("t" + thread) || instance.second != i) {
+                failures.add(thread * 5000 + i, new IllegalStateException());
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      executor.shutdown();
+      assertTrue(failures.toString(), failures.isEmpty());
+    }
+  }
+
+  private static List<Instantiator<TwoNames>> twoNamesInstantiators() {
+    return ImmutableList.<Instantiator<TwoNames>> of(
+        Instantiators.createInstantiator(TwoNames.class),
+        Instantiators.createInstantiator(TwoNames.class, new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            instantiateUsing(InstantiationStrategy.BYTECODE);
+          }
+        }));
+  }
+
+  private static Iterator<List<String>> records() {
+    return ImmutableList.<List<String>> of(
+        newArrayList("a", "1"),
+        newArrayList("b", "not a number"),
+        newArrayList("c", "3")).iterator();
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void rowByNameThrowsIfNoParamaterNames() throws Exception {
+    new InstantiatorImpl<String>(
+        String.class.getConstructor(String.class), new Converter[] { C_STRING },
+        null, new BitSet(), new BitSet(), null, null, null)
+        .newRow().set("value", "a");
+  }
+
   @Test
   public void toString1() throws Exception {
     InstantiatorImpl<Object> instantiator = new InstantiatorImpl<Object>(
@@ -0,0 +1,262 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URISyntaxException;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+
+public class InstantiatorProcessorTest {
+
+  @Test
+  public void generatesInstantiator() throws Exception {
+    Class<?> generated = Class.forName(Point.class.getName() + "$$Instantiator");
+    assertTrue(GeneratedInstantiator.class.isAssignableFrom(generated));
+    assertEquals(
+        asList("x", "label", "weight", "id"),
+        asList((String[]) generated.getField("PARAMETER_NAMES").get(null)));
+    assertEquals(
+        asList("x", "label", null, "id"),
+        asList((String[]) generated.getField("FIELD_NAMES").get(null)));
+  }
+
+  @Test
+  public void createInstantiatorPrefersGeneratedInstantiator() throws Exception {
+    Instantiator<Point> instantiator = Instantiators.createInstantiator(Point.class);
+    assertTrue(((InstantiatorImpl<Point>) instantiator).isGenerated());
+
+    Point point = instantiator.newInstance("3", null, null, "id:8");
+    assertEquals(3, point.x);
+    assertEquals(Option.none(), point.label);
+    assertEquals(8, point.id.value);
+    assertEquals(asList("3", null, null, "id:8"), instantiator.fromInstance(point));
+
+    point = instantiator.newInstance(ImmutableMap.of("x", "4", "label", "a", "id", "id:1"));
+    assertEquals(Option.some("a"), point.label);
+    assertEquals(
+        "4|a||id:1",
+        instantiator.fromInstance(point, new StringBuilder(), Delimiting.by('|')).toString());
+
+    point = instantiator.newInstance("5,b", new int[] { 0, 2, -1, -1 }, new int[] { 1, 1, 0, 0 });
+    assertEquals(5, point.x);
+    assertEquals(Option.some("b"), point.label);
+    assertEquals(null, point.id);
+  }
+
+  @Test
+  public void generatedInstantiatorReadsColumns() throws Exception {
+    Instantiator<Point> instantiator = Instantiators.createInstantiator(Point.class);
+    Failures failures = new Failures();
+    Point[] points = instantiator.newInstances(new Columns(2, 4)
+        .set(0, new int[] { 3, 4 })
+        .set(1, new String[] { "a", null })
+        .set(3, new String[] { null, "id:9" }), failures);
+    assertTrue(failures.isEmpty());
+    assertEquals(3, points[0].x);
+    assertEquals(Option.some("a"), points[0].label);
+    assertEquals(4, points[1].x);
+    assertEquals(Option.none(), points[1].label);
+    assertEquals(9, points[1].id.value);
+  }
+
+  @Test
+  public void generatedInstantiatorChecksParameters() throws Exception {
+    Instantiator<Point> instantiator = Instantiators.createInstantiator(Point.class);
+    try {
+      instantiator.newInstance(null, null, null, null);
+      throw new AssertionError();
+    } catch (IllegalArgumentException e) {
+      assertEquals("parameter 1 is not optional but null was provided", e.getMessage());
+    }
+    try {
+      instantiator.newInstance("1", null, null, null, null);
+      throw new AssertionError();
+    } catch (IllegalArgumentException e) {
+      assertEquals("wrong number of arguments", e.getMessage());
+    }
+  }
+
+  @Test
+  public void generatedInstantiatorWrapsConstructorFailures() throws Exception {
+    Instantiator<Failing> instantiator = Instantiators.createInstantiator(Failing.class);
+    assertTrue(((InstantiatorImpl<Failing>) instantiator).isGenerated());
+    try {
+      instantiator.newInstance("1");
+      throw new AssertionError();
+    } catch (RuntimeException e) {
+      assertEquals(InvocationTargetException.class, e.getCause().getClass());
+      assertEquals("failing", e.getCause().getCause().getMessage());
+    }
+  }
+
+  @GenerateInstantiator
+  static class Failing {
+    final int value;
+    final int failed;
+    Failing(int value) {
+      this.value = value;
+      this.failed = fail();
+    }
+    static int fail() {
+      throw new IllegalStateException("failing");
+    }
+  }
+
+  @GenerateInstantiator
+  static class Point {
+    final int x;
+    private final Option<String> label;
+    final Id id;
+    final List<String> tags = null;
+    Point(int x, Option<String> label, @Optional("7") int weight, @Optional Id id) {
+      super();
+      this.x = x;
+      this.label = label;
+      this.id = id;
+    }
+  }
+
+  @ConvertedBy(IdConverter.class)
+  static class Id {
+    final int value;
+    Id(int value) {
+      this.value = value;
+    }
+  }
+
+  static class IdConverter implements Converter<Id> {
+    @Override
+    public String toString(Id value) {
+      return "id:" + value.value;
+    }
+    @Override
+    public Id fromString(String representation) {
+      return new Id(Integer.parseInt(representation.substring(3)));
+    }
+  }
+
+  @Test
+  public void illegalConstructors() throws Exception {
+    assertProcessingFails(
+        "Doubling has an illegal constructor: " +
+        "can not assign non-idempotent expression value * 2 to field",
+        "class Doubling {",
+        "  final int value;",
+        "  Doubling(int value) {",
+        "    this.value = value * 2;",
+        "  }",
+        "}");
+    assertProcessingFails(
+        "Delegating has an illegal constructor: " +
+        "can not delegate to another constructor",
+        "class Delegating {",
+        "  final int value;",
+        "  @Instantiate Delegating(int value) {",
+        "    this();",
+        "  }",
+        "  Delegating() {",
+        "    this.value = 0;",
+        "  }",
+        "}");
+    assertProcessingFails(
+        "Looping has an illegal constructor",
+        "class Looping {",
+        "  Looping() {",
+        "    for (int i = 0; i < 10; i++) {}",
+        "  }",
+        "}");
+  }
+
+  @Test
+  public void illegalParameters() throws Exception {
+    assertProcessingFails(
+        "cannot specify both a default constant and a default value",
+        "class Both {",
+        "  static final String FOO = \"foo\";",
+        "  final String value;",
+        "  Both(@" + Optional.class.getName() + "(value = \"4\", constant = \"FOO\") String value) {",
+        "    this.value = value;",
+        "  }",
+        "}");
+    assertProcessingFails(
+        "parameter 0: optional literal parameters must have a default value",
+        "class NoDefault {",
+        "  final int value;",
+        "  NoDefault(@" + Optional.class.getName() + " int value) {",
+        "    this.value = value;",
+        "  }",
+        "}");
+  }
+
+  @Test
+  public void privateConstructor() throws Exception {
+    assertProcessingFails(
+        "cannot generate the instantiator of Private whose constructor is private",
+        "class Private {",
+        "  private Private() {",
+        "  }",
+        "}");
+  }
+
+  private static void assertProcessingFails(String message, String... lines)
+      throws Exception {
+    String source = Joiner.on('\n').join(lines);
+    String name = source.substring("class ".length(), source.indexOf(' ', "class ".length()));
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assumeNotNull(compiler);
+    File directory = Files.createTempDir();
+    File file = new File(directory, name + ".java");
+    Files.write(
+        "@" + GenerateInstantiator.class.getName() + "\n" +
+        source.replace("@Instantiate", "@" + Instantiate.class.getName()),
+        file, Charsets.UTF_8);
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+    CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+        asList("-d", directory.getPath(), "-classpath", Joiner.on(File.pathSeparator).join(
+            locationOf(GenerateInstantiator.class), locationOf(Joiner.class))),
+        null, fileManager.getJavaFileObjects(file));
+    task.setProcessors(asList(new InstantiatorProcessor()));
+    assertFalse(task.call());
+    StringBuilder messages = new StringBuilder();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      messages.append(diagnostic.getMessage(null)).append('\n');
+    }
+    assertTrue(messages.toString(), messages.toString().contains(message));
+  }
+
+  private static String locationOf(Class<?> klass) throws URISyntaxException {
+    return new File(klass.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+  }
+
+}
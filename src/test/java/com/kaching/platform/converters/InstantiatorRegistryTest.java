@@ -0,0 +1,204 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class InstantiatorRegistryTest {
+
+  @Test
+  public void cachedPerClassAndConfiguration() {
+    InstantiatorRegistry registry = new InstantiatorRegistry();
+    CountingModule module = new CountingModule();
+    Instantiator<Simple> instantiator = registry.getInstantiator(Simple.class, module);
+    assertSame(instantiator, registry.getInstantiator(Simple.class, module));
+    assertSame(instantiator, registry.getInstantiator(Simple.class, new CountingModule()));
+    assertEquals(2, module.count.get());
+    assertNotSame(instantiator, registry.getInstantiator(Simple.class, bytecode()));
+    assertNotSame(instantiator, new InstantiatorRegistry().getInstantiator(Simple.class, module));
+    assertEquals(3, registry.getInstantiator(Simple.class, module).newInstance("3").value);
+  }
+
+  @Test
+  public void equalModulesCreatedAfreshShareInstantiators() {
+    InstantiatorRegistry registry = new InstantiatorRegistry();
+    Instantiator<Named> instantiator = registry.getInstantiator(Named.class, naming(null));
+    assertSame(instantiator, registry.getInstantiator(Named.class, naming(null)));
+    assertEquals("name", instantiator.newInstance("name").name.value);
+  }
+
+  @Test
+  public void statefulConvertersAreComparedByIdentity() {
+    InstantiatorRegistry registry = new InstantiatorRegistry();
+    Instantiator<Named> a = registry.getInstantiator(Named.class, naming("a"));
+    Instantiator<Named> b = registry.getInstantiator(Named.class, naming("b"));
+    assertNotSame(a, b);
+    assertEquals("aname", a.newInstance("name").name.value);
+    assertEquals("bname", b.newInstance("name").name.value);
+  }
+
+  @Test
+  public void convertersReadingTheirModuleAreComparedByModule() {
+    InstantiatorRegistry registry = new InstantiatorRegistry();
+    Instantiator<Named> a = registry.getInstantiator(Named.class, new PrefixingModule("a"));
+    Instantiator<Named> b = registry.getInstantiator(Named.class, new PrefixingModule("b"));
+    assertNotSame(a, b);
+    assertEquals("aname", a.newInstance("name").name.value);
+    assertEquals("bname", b.newInstance("name").name.value);
+  }
+
+  @Test
+  public void concurrentRequestsBuildOnce() throws Exception {
+    final InstantiatorRegistry registry = new InstantiatorRegistry();
+    final CountingModule module = new CountingModule();
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<Instantiator<Simple>>> futures = newArrayList();
+    for (int i = 0; i < 8; i++) {
+      futures.add(executor.submit(new Callable<Instantiator<Simple>>() {
+        @Override
+        public Instantiator<Simple> call() throws Exception {
+          start.await();
+          return registry.getInstantiator(Simple.class, module);
+        }
+      }));
+    }
+    start.countDown();
+    Instantiator<Simple> instantiator = futures.get(0).get();
+    for (Future<Instantiator<Simple>> future : futures) {
+      assertSame(instantiator, future.get());
+    }
+    executor.shutdown();
+    assertEquals(8, module.count.get());
+  }
+
+  @Test
+  public void failuresAreNotCached() {
+    InstantiatorRegistry registry = new InstantiatorRegistry();
+    CountingModule module = new CountingModule();
+    for (int i = 1; i <= 2; i++) {
+      try {
+        registry.getInstantiator(TwoConstructors.class, module);
+        fail();
+      } catch (RuntimeException e) {
+        assertEquals(i, module.count.get());
+      }
+    }
+  }
+
+  private static InstantiatorModule bytecode() {
+    return new AbstractInstantiatorModule() {
+      @Override
+      protected void configure() {
+        instantiateUsing(InstantiationStrategy.BYTECODE);
+      }
+    };
+  }
+
+  private static InstantiatorModule naming(final String prefix) {
+    return new AbstractInstantiatorModule() {
+      @Override
+      protected void configure() {
+        registerFor(Name.class).converter(
+            prefix == null ? new NameConverter() : new PrefixingNameConverter(prefix));
+      }
+    };
+  }
+
+  static class PrefixingModule extends AbstractInstantiatorModule {
+    private final String prefix;
+    PrefixingModule(String prefix) {
+      this.prefix = prefix;
+    }
+    @Override
+    protected void configure() {
+      registerFor(Name.class).converter(new NameConverter() {
+        @Override
+        public Name fromString(String representation) {
+          return new Name(prefix + representation);
+        }
+      });
+    }
+  }
+
+  static class CountingModule extends AbstractInstantiatorModule {
+    final AtomicInteger count = new AtomicInteger();
+    @Override
+    protected void configure() {
+      count.incrementAndGet();
+    }
+  }
+
+  static class Simple {
+    final int value;
+    Simple(int value) {
+      this.value = value;
+    }
+  }
+
+  static class Named {
+    final Name name;
+    Named(Name name) {
+      this.name = name;
+    }
+  }
+
+  static class Name {
+    final String value;
+    Name(String value) {
+      this.value = value;
+    }
+  }
+
+  static class NameConverter implements Converter<Name> {
+    @Override
+    public String toString(Name value) {
+      return value.value;
+    }
+    @Override
+    public Name fromString(String representation) {
+      return new Name(representation);
+    }
+  }
+
+  static class PrefixingNameConverter extends NameConverter {
+    private final String prefix;
+    PrefixingNameConverter(String prefix) {
+      this.prefix = prefix;
+    }
+    @Override
+    public Name fromString(String representation) {
+      return new Name(prefix + representation);
+    }
+  }
+
+  static class TwoConstructors {
+    TwoConstructors(int value) {
+    }
+    TwoConstructors(String value) {
+    }
+  }
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class NameIndexTest {
+
+  @Test
+  public void indexOf() {
+    NameIndex index = new NameIndex(new String[] { "zeta", "alpha", "mu" });
+    assertEquals(0, index.indexOf("zeta"));
+    assertEquals(1, index.indexOf("alpha"));
+    assertEquals(2, index.indexOf("mu"));
+    assertEquals(-1, index.indexOf("beta"));
+  }
+
+  @Test
+  public void unknownNames() {
+    NameIndex index = new NameIndex(new String[] { null, "alpha", null });
+    assertEquals(1, index.indexOf("alpha"));
+    assertEquals(-1, index.indexOf(null));
+  }
+
+  @Test
+  public void empty() {
+    assertEquals(-1, new NameIndex(new String[0]).indexOf("alpha"));
+  }
+
+}
@@ -10,8 +10,13 @@
  */
 package com.kaching.platform.converters;
 
+import static java.lang.String.format;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringWriter;
 
 import org.junit.Test;
 
@@ -36,4 +41,84 @@ public class NativeConvertersTest {
   public void booleanInvalid() throws Exception {
     NativeConverters.C_BOOLEAN.fromString("invalid");
   }
+
+  @Test
+  public void slices() throws Exception {
+    String line = "x,-42,+7,true ,c,1.5,abc,";
+    assertEquals((Integer) (-42), NativeConverters.C_INT.fromCharSequence(line, 2, 5));
+    assertEquals((Long) 7L, NativeConverters.C_LONG.fromCharSequence(line, 6, 8));
+    assertEquals((Short) (short) -42, NativeConverters.C_SHORT.fromCharSequence(line, 2, 5));
+    assertEquals((Byte) (byte) 7, NativeConverters.C_BYTE.fromCharSequence(line, 6, 8));
+    assertEquals(true, NativeConverters.C_BOOLEAN.fromCharSequence(line, 9, 14));
+    assertEquals((Character) 'c', NativeConverters.C_CHAR.fromCharSequence(line, 15, 16));
+    assertEquals(1.5, NativeConverters.C_DOUBLE.fromCharSequence(line, 17, 20), 0.0);
+    assertEquals(1.5f, NativeConverters.C_FLOAT.fromCharSequence(line, 17, 20), 0.0);
+    assertEquals("abc", NativeConverters.C_STRING.fromCharSequence(line, 21, 24));
+    assertEquals("", NativeConverters.C_STRING.fromCharSequence(line, 25, 25));
+  }
+
+  @Test
+  public void parseLongBounds() throws Exception {
+    assertEquals(Long.MAX_VALUE, NativeConverters.C_LONG.fromCharSequence(
+        Long.toString(Long.MAX_VALUE), 0, 19).longValue());
+    assertEquals(Long.MIN_VALUE, NativeConverters.C_LONG.fromCharSequence(
+        Long.toString(Long.MIN_VALUE), 0, 20).longValue());
+    assertEquals(Integer.MIN_VALUE, NativeConverters.C_INT.fromCharSequence(
+        "-2147483648", 0, 11).intValue());
+    for (String invalid : new String[] {
+        "", "-", "+", "1a", " 1", "2147483648", "-2147483649", "99999999999999999999" }) {
+      try {
+        NativeConverters.C_INT.fromCharSequence(invalid, 0, invalid.length());
+        fail(invalid);
+      } catch (NumberFormatException e) {
+        assertEquals(format("For input string: \"%s\"", invalid), e.getMessage());
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void booleanSliceInvalid() throws Exception {
+    NativeConverters.C_BOOLEAN.fromCharSequence("truefalse", 0, 9);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shortSliceOutOfRange() throws Exception {
+    NativeConverters.C_SHORT.fromCharSequence("32768", 0, 5);
+  }
+
+  @Test
+  public void appendTo() throws Exception {
+    for (Appendable out : new Appendable[] { new StringBuilder(), new StringWriter() }) {
+      NativeConverters.C_INT.appendTo(-4, out);
+      NativeConverters.C_LONG.appendTo(5L, out);
+      NativeConverters.C_DOUBLE.appendTo(1.5, out);
+      NativeConverters.C_FLOAT.appendTo(2.5f, out);
+      NativeConverters.C_SHORT.appendTo((short) 6, out);
+      NativeConverters.C_BYTE.appendTo((byte) 7, out);
+      NativeConverters.C_CHAR.appendTo('c', out);
+      NativeConverters.C_BOOLEAN.appendTo(true, out);
+      NativeConverters.C_STRING.appendTo("s", out);
+      assertEquals("-451.52.567ctrues", out.toString());
+    }
+  }
+
+  @Test
+  public void primitives() throws Exception {
+    assertEquals(4, NativeConverters.C_INT.fromStringAsInt("4"));
+    assertEquals("4", NativeConverters.C_INT.toString(4));
+    assertEquals(5L, NativeConverters.C_LONG.fromStringAsLong("5"));
+    assertEquals("5", NativeConverters.C_LONG.toString(5L));
+    assertEquals(1.5, NativeConverters.C_DOUBLE.fromStringAsDouble("1.5"), 0.0);
+    assertEquals("1.5", NativeConverters.C_DOUBLE.toString(1.5));
+    assertEquals(2.5f, NativeConverters.C_FLOAT.fromStringAsFloat("2.5"), 0.0);
+    assertEquals("2.5", NativeConverters.C_FLOAT.toString(2.5f));
+    assertEquals(6, NativeConverters.C_SHORT.fromStringAsShort("6"));
+    assertEquals("6", NativeConverters.C_SHORT.toString((short) 6));
+    assertEquals(7, NativeConverters.C_BYTE.fromStringAsByte("7"));
+    assertEquals("7", NativeConverters.C_BYTE.toString((byte) 7));
+    assertEquals('c', NativeConverters.C_CHAR.fromStringAsChar("c"));
+    assertEquals("c", NativeConverters.C_CHAR.toString('c'));
+    assertTrue(NativeConverters.C_BOOLEAN.fromStringAsBoolean(" true"));
+    assertEquals("false", NativeConverters.C_BOOLEAN.toString(false));
+  }
 }
@@ -0,0 +1,48 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class RowTest {
+
+  @Test
+  public void setAndGet() {
+    Row row = new Row(new NameIndex(new String[] { "b", "a" }), 2);
+    row.set("a", "1").set(0, "2");
+    assertEquals("2", row.get("b"));
+    assertEquals("1", row.get(1));
+    assertEquals("[2, 1]", row.toString());
+    row.clear();
+    assertNull(row.get(0));
+    assertNull(row.get(1));
+  }
+
+  @Test
+  public void noSuchName() {
+    try {
+      new Row(new NameIndex(new String[] { "a" }), 1).indexOf("b");
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("no parameter named b", e.getMessage());
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void noNames() {
+    new Row(null, 1).set("a", "1");
+  }
+
+}
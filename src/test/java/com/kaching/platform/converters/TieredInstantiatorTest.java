@@ -0,0 +1,160 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.kaching.platform.converters.TieredInstantiator.Tier.FAILED;
+import static com.kaching.platform.converters.TieredInstantiator.Tier.GENERATED;
+import static com.kaching.platform.converters.TieredInstantiator.Tier.GENERATING;
+import static com.kaching.platform.converters.TieredInstantiator.Tier.REFLECTION;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+public class TieredInstantiatorTest {
+
+  private final List<Runnable> tasks = newArrayList();
+
+  private final Executor queuing = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      tasks.add(command);
+    }
+  };
+
+  @Test
+  public void generatesAfterThreshold() {
+    TieredInstantiator<Point> instantiator = create(Point.class, 3, queuing);
+    assertEquals(REFLECTION, instantiator.getTier());
+    assertEquals(3, instantiator.getThreshold());
+
+    assertPoint(instantiator);
+    assertPoint(instantiator);
+    assertEquals(REFLECTION, instantiator.getTier());
+    assertEquals(2, instantiator.getInvocations());
+    assertEquals(0, tasks.size());
+
+    assertPoint(instantiator);
+    assertEquals(GENERATING, instantiator.getTier());
+    assertEquals(1, tasks.size());
+
+    // callers are served reflectively while code is generated
+    assertPoint(instantiator);
+    assertEquals(GENERATING, instantiator.getTier());
+    assertEquals(3, instantiator.getInvocations());
+
+    tasks.get(0).run();
+    assertEquals(GENERATED, instantiator.getTier());
+    assertPoint(instantiator);
+    assertEquals(asList("3", "4"), instantiator.fromInstance(new Point(3, 4)));
+    assertEquals(1, tasks.size());
+  }
+
+  @Test
+  public void codeCannotBeGenerated() {
+    TieredInstantiator<PrivatePoint> instantiator = create(PrivatePoint.class, 1, queuing);
+    assertEquals(3, instantiator.newInstance("3", "4").x);
+    tasks.get(0).run();
+    assertEquals(FAILED, instantiator.getTier());
+    PrivatePoint point = instantiator.newInstance("5", "6");
+    assertEquals(asList("5", "6"), instantiator.fromInstance(point));
+    assertEquals(1, tasks.size());
+  }
+
+  @Test
+  public void rejectingExecutor() {
+    TieredInstantiator<Point> instantiator = create(Point.class, 2, new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        throw new RejectedExecutionException();
+      }
+    });
+    assertPoint(instantiator);
+    assertPoint(instantiator);
+    assertEquals(REFLECTION, instantiator.getTier());
+    assertEquals(0, instantiator.getInvocations());
+  }
+
+  @Test
+  public void defaultThreshold() {
+    Instantiator<Point> instantiator = Instantiators.createInstantiator(Point.class,
+        new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            instantiateUsing(InstantiationStrategy.TIERED);
+          }
+        });
+    assertEquals(
+        TieredInstantiator.DEFAULT_THRESHOLD,
+        ((TieredInstantiator<Point>) instantiator).getThreshold());
+  }
+
+  @Test
+  public void conflictingThresholds() {
+    Errors errors = new Errors();
+    Instantiators.createInstantiator(errors, Point.class, new AbstractInstantiatorModule() {
+      @Override
+      protected void configure() {
+        generateAfter(2);
+        generateAfter(3);
+      }
+    });
+    assertEquals(
+        InstantiatorErrors.conflictingGenerationThresholds(new Errors(), 2, 3).toString(),
+        errors.toString());
+  }
+
+  private static void assertPoint(Instantiator<Point> instantiator) {
+    Point point = instantiator.newInstance("3", "4");
+    assertEquals(3, point.x);
+    assertEquals(4, point.y);
+  }
+
+  private <T> TieredInstantiator<T> create(
+      Class<T> klass, final int threshold, final Executor executor) {
+    TieredInstantiator<T> instantiator = (TieredInstantiator<T>) Instantiators.createInstantiator(klass,
+        new AbstractInstantiatorModule() {
+          @Override
+          protected void configure() {
+            instantiateUsing(InstantiationStrategy.TIERED);
+            generateAfter(threshold);
+            analyseUsing(executor);
+          }
+        });
+    // only keep code generation, not the analysis of the reflective instantiator
+    tasks.clear();
+    return instantiator;
+  }
+
+  static class Point {
+    final int x;
+    final int y;
+    Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  static class PrivatePoint {
+    final int x;
+    final int y;
+    private PrivatePoint(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+}
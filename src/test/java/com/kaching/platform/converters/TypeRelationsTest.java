@@ -0,0 +1,65 @@
+/**
+ * Copyright 2010 Wealthfront Inc. Licensed under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable law
+ * or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package com.kaching.platform.converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.inject.TypeLiteral;
+import com.google.inject.util.Types;
+
+public class TypeRelationsTest {
+
+  @Test
+  public void isInstance() {
+    TypeRelations relations = new TypeRelations();
+    Type listOfNumbers = new TypeLiteral<List<? extends Number>>() {}.getType();
+    assertTrue(relations.isInstance(
+        listOfNumbers, new TypeLiteral<List<Integer>>() {}.getType()));
+    assertFalse(relations.isInstance(
+        listOfNumbers, new TypeLiteral<List<String>>() {}.getType()));
+    assertTrue(relations.isInstance(String.class, String.class));
+    assertFalse(relations.isInstance(String.class, Integer.class));
+    assertEquals(2, relations.size());
+  }
+
+  @Test
+  public void equalTypesShareEntries() {
+    TypeRelations relations = new TypeRelations();
+    Type jdk = new TypeLiteral<Map<String, List<Integer>>>() {}.getType();
+    ParameterizedType guice = Types.mapOf(String.class, Types.listOf(Integer.class));
+    assertTrue(relations.isInstance(jdk, guice));
+    assertTrue(relations.isInstance(guice, jdk));
+    assertTrue(relations.isInstance(guice, guice));
+    assertEquals(1, relations.size());
+  }
+
+  @Test
+  public void bounded() {
+    TypeRelations relations = new TypeRelations(2);
+    Type[] types = {
+        Types.listOf(Integer.class), Types.listOf(Long.class),
+        Types.listOf(Short.class), Types.listOf(Byte.class) };
+    for (Type type : types) {
+      assertTrue(relations.isInstance(type, type));
+    }
+    assertTrue(relations.size() <= 2);
+  }
+
+}
@@ -3,6 +3,8 @@ package com.kaching.platform.converters;
 import static org.junit.Assert.*;
 
 import java.io.Serializable;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedType;
 import java.lang.reflect.GenericDeclaration;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
@@ -156,6 +158,22 @@ public class TypesUtilTest {
     public String getName() {
       throw new UnsupportedOperationException();
     }
+
+    public AnnotatedType[] getAnnotatedBounds() {
+      throw new UnsupportedOperationException();
+    }
+
+    public <T extends Annotation> T getAnnotation(Class<T> annotationClass) {
+      throw new UnsupportedOperationException();
+    }
+
+    public Annotation[] getAnnotations() {
+      throw new UnsupportedOperationException();
+    }
+
+    public Annotation[] getDeclaredAnnotations() {
+      throw new UnsupportedOperationException();
+    }
   }
 
 }
@@ -13,6 +13,7 @@ package com.kaching.platform.converters;
 import static java.util.Arrays.asList;
 import static junit.framework.Assert.fail;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.lang.reflect.Type;
 import java.util.List;
@@ -34,6 +35,14 @@ public class UnificationTest {
         Unification.getActualTypeArgument(IntegerQuery.class, TopLevel.class, 0));
   }
 
+  @Test
+  public void unifiedTypesAreMemoized() throws Exception {
+    Type type = Unification.getActualTypeArgument(IntegerListQuery.class, TopLevel.class, 0);
+    assertSame(
+        type,
+        Unification.getActualTypeArgument(IntegerListQuery.class, TopLevel.class, 0));
+  }
+
   @Test
   public void testGetReturnType2() throws Exception {
     assertEquals(